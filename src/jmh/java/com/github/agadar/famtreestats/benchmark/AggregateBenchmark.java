@@ -0,0 +1,95 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import com.github.agadar.famtreestats.PeriodAggregator;
+import com.github.agadar.famtreestats.PeriodTable;
+import com.github.agadar.famtreestats.PersonHandler;
+import com.github.agadar.famtreestats.YearlyCube;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.domain.Statistics;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks aggregating loaded persons on a single thread: per interval with
+ * a PeriodAggregator, once per year into a YearlyCube, and re-bucketing a 
+ * built cube per interval.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateBenchmark
+{
+    /** The interval (in years) to aggregate per. */
+    @State(Scope.Benchmark)
+    public static class IntervalState
+    {
+        @Param({ "1", "10", "100" })
+        public int interval;
+    }
+
+    /** A cube built from the persons. */
+    @State(Scope.Benchmark)
+    public static class CubeState
+    {
+        public YearlyCube cube;
+
+        @Setup(Level.Trial)
+        public void build(PersonsState persons) throws IOException
+        {
+            cube = handleAll(persons.getStore(), new YearlyCube.Builder()).build();
+        }
+    }
+
+    @Benchmark
+    public List<Statistics> periodAggregator(PersonsState persons, IntervalState interval)
+            throws IOException
+    {
+        return handleAll(persons.getStore(), new PeriodAggregator(1, 3000,
+                interval.interval, null)).getStatistics();
+    }
+
+    @Benchmark
+    public YearlyCube yearlyCube(PersonsState persons) throws IOException
+    {
+        return handleAll(persons.getStore(), new YearlyCube.Builder()).build();
+    }
+
+    @Benchmark
+    public List<Statistics> cubeStatistics(CubeState cube, IntervalState interval)
+    {
+        return cube.cube.getStatistics(PeriodTable.ofInterval(1, 3000, interval.interval));
+    }
+
+    /**
+     * Passes all persons in the given store to the given handler.
+     */
+    private static <H extends PersonHandler> H handleAll(PersonStore store, H handler)
+    {
+        for (int row = 0; row < store.size(); row++)
+        {
+            handler.handle(row, store.getId(row), store.getFatherId(row),
+                    store.getMotherId(row), store.getRelationId(row), store.getPartnerId(row),
+                    store.getRelationType(row), store.getSex(row), store.getMarriageDate(row),
+                    store.getBirthDate(row), store.getDeathDate(row));
+        }
+
+        return handler;
+    }
+}
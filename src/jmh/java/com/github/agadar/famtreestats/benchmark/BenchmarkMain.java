@@ -0,0 +1,34 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that allocation rates are
+ * reported next to the times. Takes the same arguments as JMH's own main, 
+ * e.g. "LoadBenchmark -p persons=10000000" to run only the load benchmarks 
+ * on ten million persons.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class BenchmarkMain
+{
+    private BenchmarkMain()
+    {
+    }
+
+    /**
+     * @param args JMH command line arguments
+     * @throws CommandLineOptionException if the arguments are invalid
+     * @throws RunnerException if running the benchmarks failed
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException
+    {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.misc.DateDecoder;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares DateDecoder with the former LocalDate.parse(...) based path, using
+ * a mix of full, 'N-' prefixed, partial and empty dates as found in exports.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateDecoderBenchmark
+{
+    /** Date formatter for dd-MM-yyyy, as formerly used by the calculator. */
+    private final static DateTimeFormatter DayMonthYearFormat =
+        DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    /** Dates to decode. */
+    private final String[] Dates =
+    {
+        "12-03-1850", "N-01-01-1799", "", "1901", "  28-11-1923 ", "31-02-1850",
+        "07-07-1777", "", "N-", "15-08-1945"
+    };
+
+    @Benchmark
+    public void localDateParse(Blackhole blackhole)
+    {
+        for (String date : Dates)
+        {
+            blackhole.consume(dateStringToEpochDay(date, DayMonthYearFormat));
+        }
+    }
+
+    @Benchmark
+    public void dateDecoder(Blackhole blackhole)
+    {
+        for (String date : Dates)
+        {
+            blackhole.consume(DateDecoder.decodeDayMonthYear(date, 0, date.length()));
+        }
+    }
+
+    /**
+     * The former way of parsing dates.
+     *
+     * @param dateStr the String to parse to an epoch day
+     * @param formatter the formatter to use
+     * @return the parsed epoch day, or PersonStore.NoDate if parsing failed
+     */
+    private static int dateStringToEpochDay(String dateStr, DateTimeFormatter formatter)
+    {
+        try
+        {
+            dateStr = dateStr.trim().replaceAll("N-", "");
+            return (int) LocalDate.parse(dateStr, formatter).toEpochDay();
+        }
+        catch (DateTimeParseException ex)
+        {
+            return PersonStore.NoDate;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import com.github.agadar.famtreestats.FamilyTreeStatsCalculator;
+import com.github.agadar.famtreestats.LoadProgress;
+import com.github.agadar.famtreestats.domain.Statistics;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks loading a file and calculating its statistics, as the GUI does,
+ * both by parsing the file and from its snapshot, and calculating them while
+ * streaming the file.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark
+{
+    /** The interval (in years), or 0 for the statistics of all persons. */
+    @Param({ "0", "10" })
+    public int interval;
+
+    @Benchmark
+    public List<Statistics> loadAndCalculate(PersonsState persons) throws IOException
+    {
+        return calculate(new FamilyTreeStatsCalculator(persons.file, new LoadProgress(), false));
+    }
+
+    @Benchmark
+    public List<Statistics> loadSnapshotAndCalculate(PersonsState persons) throws IOException
+    {
+        // The first invocation writes the snapshot, which warming up absorbs.
+        return calculate(new FamilyTreeStatsCalculator(persons.file, new LoadProgress(), true));
+    }
+
+    @Benchmark
+    public List<Statistics> streaming(PersonsState persons) throws IOException
+    {
+        return interval > 0 ? FamilyTreeStatsCalculator.calculateStreaming(persons.file, 1, 3000,
+                interval) : FamilyTreeStatsCalculator.calculateStreaming(persons.file, 0, 0, 0);
+    }
+
+    private List<Statistics> calculate(FamilyTreeStatsCalculator calculator)
+    {
+        return interval > 0 ? calculator.calculate(interval)
+                : Collections.singletonList(calculator.calculate());
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import com.github.agadar.famtreestats.PersonsCsvReader;
+import com.github.agadar.famtreestats.domain.LoadDiagnostics;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks parsing persons CSV-files: decoding only, on a single thread, and
+ * decoding into a PersonStore in parallel.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark
+{
+    @Benchmark
+    public LoadDiagnostics parse(PersonsState state, Blackhole blackhole) throws IOException
+    {
+        return PersonsCsvReader.read(state.file, (position, id, fatherId, motherId, relationId,
+                partnerId, relationType, sex, marriageDate, birthDate, deathDate) ->
+                blackhole.consume(id ^ marriageDate ^ birthDate ^ deathDate));
+    }
+
+    @Benchmark
+    public PersonStore parseParallel(PersonsState state) throws IOException
+    {
+        final PersonsCsvReader.Result<PersonStore.Builder> result = PersonsCsvReader
+                .readParallel(state.file, PersonsCsvReader.DefaultCharset,
+                        PersonStore.Builder::new, (left, right) ->
+                        {
+                            left.append(right);
+                            return left;
+                        }, ForkJoinPool.commonPool());
+        return result.Handler.build(result.Diagnostics);
+    }
+}
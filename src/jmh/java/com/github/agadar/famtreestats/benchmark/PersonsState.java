@@ -0,0 +1,64 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import com.github.agadar.famtreestats.PersonsCsvReader;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state holding a generated persons CSV-file and, once loaded, its
+ * persons. Loading is only done by the benchmarks that need the persons.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+@State(Scope.Benchmark)
+public class PersonsState
+{
+    /** Seed of the generated files, fixed so that runs are comparable. */
+    private final static long Seed = 20161211L;
+
+    /** Number of persons in the generated file. */
+    @Param({ "10000", "100000", "1000000" })
+    public int persons;
+
+    /** The generated file. */
+    public File file;
+
+    /** The persons of the generated file, if loaded. */
+    private PersonStore store;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException
+    {
+        file = SyntheticPersonsCsv.get(persons, Seed);
+    }
+
+    /**
+     * Gives the persons of the generated file, loading them the first time.
+     *
+     * @return the persons
+     * @throws IOException if loading failed
+     */
+    public PersonStore getStore() throws IOException
+    {
+        if (store == null)
+        {
+            final PersonsCsvReader.Result<PersonStore.Builder> result = PersonsCsvReader
+                    .readParallel(file, PersonsCsvReader.DefaultCharset, PersonStore.Builder::new,
+                            (left, right) ->
+                            {
+                                left.append(right);
+                                return left;
+                            }, ForkJoinPool.commonPool());
+            store = result.Handler.build(result.Diagnostics);
+        }
+
+        return store;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Gives persons CSV-files generated by SyntheticTreeGenerator, for
+ * benchmarking. The same number of persons and seed always give the same file,
+ * so generated files are kept in the temporary directory and reused.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class SyntheticPersonsCsv
+{
+    private SyntheticPersonsCsv()
+    {
+    }
+
+    /**
+     * Gives a generated file of the given number of persons, generating it if
+     * it does not exist yet.
+     *
+     * @param persons the number of persons
+     * @param seed the seed of the generator
+     * @return the file
+     * @throws IOException if generating the file failed
+     */
+    public static File get(int persons, long seed) throws IOException
+    {
+        final File file = new File(System.getProperty("java.io.tmpdir"),
+                "famtreestats-tree-" + persons + "-" + seed + ".csv");
+
+        if (!file.isFile())
+        {
+            // Write to a temporary file first, so no partial file is reused.
+            final File temporary = File.createTempFile("famtreestats-", ".csv");
+            new SyntheticTreeGenerator(seed).write(temporary, persons);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,482 @@
+package com.github.agadar.famtreestats.benchmark;
+
+import com.github.agadar.famtreestats.PersonsCsvReader;
+import com.github.agadar.famtreestats.enums.Column;
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates family trees of any size and writes them as persons CSV-files in
+ * the format exported by Aldfaer, for load and scale testing. The same seed,
+ * settings and number of persons always give the same file.
+ * <p>
+ * Persons are generated generation by generation. The persons of a generation
+ * are paired into couples, whose children form the next generation, so
+ * parents, partners and relations are consistent: both partners' rows hold
+ * the same relation id, type and date and each other's id, and children are
+ * born during their parents' relation and lives. Generations that would become
+ * too small are topped up with persons without parents. Only a single
+ * generation is kept in memory.
+ * <p>
+ * Values are left empty at a configurable rate per column, and dates are
+ * written partially (either 'N-' prefixed or only their year) at a
+ * configurable rate.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class SyntheticTreeGenerator
+{
+    /** Birth year of the first generation. */
+    private final static int FirstYear = 1500;
+
+    /** Number of years between generations. */
+    private final static int GenerationYears = 28;
+
+    /** Number of generations over which the persons are spread. */
+    private final static int Generations = 16;
+
+    /** Persons dying after this day are written as still alive. */
+    private final static long LastDeathDay = LocalDate.of(2016, 12, 31).toEpochDay();
+
+    /** Rate at which persons of marriageable age are paired. */
+    private final static double PairRate = 0.85;
+
+    /** Relation types other than marriage, for a tenth of the relations. */
+    private final static RelationType[] OtherRelationTypes =
+    {
+        RelationType.RegisteredPartnership, RelationType.LivingTogether,
+        RelationType.Relationship
+    };
+
+    /** Columns written, including some that are not read, as in real exports. */
+    private final static String Header = String.join(";", Column.IdSelf.getColumnName(),
+            "Achternaam", "Voornamen", Column.IdFather.getColumnName(),
+            Column.IdMother.getColumnName(), Column.IdRelationship.getColumnName(),
+            Column.IdPartner.getColumnName(), Column.TypeRelationship.getColumnName(),
+            Column.TypeSex.getColumnName(), Column.DateBirth.getColumnName(),
+            Column.DateDeath.getColumnName(), Column.DateMarriage.getColumnName(), "Beroep");
+
+    /** Seed of the generator. */
+    private final long Seed;
+
+    /** Rate at which values are left empty, per Column ordinal. */
+    private final double[] NullRates = new double[Column.values().length];
+
+    /** Rate at which dates are written partially. */
+    private double partialDateRate = 0.03;
+
+    /**
+     * Instantiates a new generator with the default rates: 5% of dates, 2% of
+     * parent id's and relation types, 1% of relation and partner id's and 1%
+     * of sexes empty, 3% of dates partial.
+     *
+     * @param seed seed of the generator
+     */
+    public SyntheticTreeGenerator(long seed)
+    {
+        this.Seed = seed;
+        NullRates[Column.DateBirth.ordinal()] = 0.05;
+        NullRates[Column.DateDeath.ordinal()] = 0.05;
+        NullRates[Column.DateMarriage.ordinal()] = 0.05;
+        NullRates[Column.IdFather.ordinal()] = 0.02;
+        NullRates[Column.IdMother.ordinal()] = 0.02;
+        NullRates[Column.TypeRelationship.ordinal()] = 0.02;
+        NullRates[Column.IdRelationship.ordinal()] = 0.01;
+        NullRates[Column.IdPartner.ordinal()] = 0.01;
+        NullRates[Column.TypeSex.ordinal()] = 0.01;
+    }
+
+    /**
+     * Sets the rate at which values of the given column are left empty.
+     *
+     * @param column the column
+     * @param rate the rate, from 0 to 1
+     */
+    public void setNullRate(Column column, double rate)
+    {
+        NullRates[column.ordinal()] = rate;
+    }
+
+    /**
+     * Sets the rate at which dates that are not left empty are written
+     * partially, either 'N-' prefixed or only their year.
+     *
+     * @param rate the rate, from 0 to 1
+     */
+    public void setPartialDateRate(double rate)
+    {
+        partialDateRate = rate;
+    }
+
+    /**
+     * Writes a generated tree of the given number of persons to the given
+     * file, using the default charset of exports.
+     *
+     * @param file the file to write to
+     * @param persons the number of persons
+     * @throws IOException if writing failed
+     */
+    public void write(File file, int persons) throws IOException
+    {
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file.toPath()), PersonsCsvReader.DefaultCharset), 1 << 16))
+        {
+            write(writer, persons);
+        }
+    }
+
+    /**
+     * Writes a generated tree of the given number of persons to the given
+     * writer.
+     *
+     * @param writer the writer to write to
+     * @param persons the number of persons
+     * @throws IOException if writing failed
+     */
+    public void write(Writer writer, int persons) throws IOException
+    {
+        final Random random = new Random(Seed);
+        final int generationSize = Math.max(2, persons / Generations);
+        final int[] nextIds = { 1, 1 };
+        final StringBuilder line = new StringBuilder(128);
+        Generation generation = new Generation(generationSize);
+        generation.addFounders(generationSize, 0, random, nextIds);
+        int written = 0;
+        writer.write(Header);
+        writer.write("\r\n");
+
+        for (int number = 1; written < persons; number++)
+        {
+            generation.pair(random, nextIds);
+            final Generation children = generation.children(generationSize, random, nextIds);
+
+            for (int i = 0; i < generation.size && written < persons; i++, written++)
+            {
+                appendRow(line, generation, i, random);
+                writer.append(line);
+            }
+
+            children.addFounders(generationSize - children.size, number, random, nextIds);
+            generation = children;
+        }
+    }
+
+    /**
+     * Sets the given line to the row of the given person.
+     */
+    private void appendRow(StringBuilder line, Generation generation, int i, Random random)
+    {
+        line.setLength(0);
+        appendId(line, Column.IdSelf, generation.ids[i], random);
+        line.append("Naam;Voornaam;");
+        appendId(line, Column.IdFather, generation.fatherIds[i], random);
+        appendId(line, Column.IdMother, generation.motherIds[i], random);
+        final int partner = generation.partners[i];
+
+        if (partner >= 0)
+        {
+            appendId(line, Column.IdRelationship, generation.relationIds[i], random);
+            appendId(line, Column.IdPartner, generation.ids[partner], random);
+            line.append(isNull(Column.TypeRelationship, random) ? ""
+                    : generation.relationTypes[i].getUnderlyingString()).append(';');
+        }
+        else
+        {
+            line.append(";;;");
+        }
+
+        line.append(isNull(Column.TypeSex, random) ? ""
+                : generation.sexes[i].getUnderlyingString()).append(';');
+        appendDate(line, Column.DateBirth, generation.births[i], random);
+        appendDate(line, Column.DateDeath, generation.deaths[i] <= LastDeathDay
+                ? generation.deaths[i] : Long.MIN_VALUE, random);
+        appendDate(line, Column.DateMarriage, partner >= 0 ? generation.marriages[i]
+                : Long.MIN_VALUE, random);
+        line.append("Beroep\r\n");
+    }
+
+    /**
+     * Appends the given id and a ';', leaving it empty at the column's rate.
+     */
+    private void appendId(StringBuilder line, Column column, int id, Random random)
+    {
+        if (id > 0 && !isNull(column, random))
+        {
+            line.append(id);
+        }
+
+        line.append(';');
+    }
+
+    /**
+     * Appends the given date and a ';', as yyyy-MM-dd for relation dates and
+     * as dd-MM-yyyy otherwise, leaving it empty at the column's rate and
+     * writing it partially at the partial date rate.
+     */
+    private void appendDate(StringBuilder line, Column column, long epochDay, Random random)
+    {
+        if (epochDay != Long.MIN_VALUE && !isNull(column, random))
+        {
+            final LocalDate date = LocalDate.ofEpochDay(epochDay);
+            final boolean partial = random.nextDouble() < partialDateRate;
+
+            if (partial && random.nextBoolean())
+            {
+                line.append(date.getYear());
+            }
+            else if (column == Column.DateMarriage)
+            {
+                line.append(partial ? "N-" : "").append(date.getYear()).append('-')
+                        .append(date.getMonthValue() < 10 ? "0" : "").append(date.getMonthValue())
+                        .append('-').append(date.getDayOfMonth() < 10 ? "0" : "")
+                        .append(date.getDayOfMonth());
+            }
+            else
+            {
+                line.append(partial ? "N-" : "")
+                        .append(date.getDayOfMonth() < 10 ? "0" : "").append(date.getDayOfMonth())
+                        .append('-').append(date.getMonthValue() < 10 ? "0" : "")
+                        .append(date.getMonthValue()).append('-').append(date.getYear());
+            }
+        }
+
+        line.append(';');
+    }
+
+    /**
+     * Returns whether a value of the given column is to be left empty.
+     */
+    private boolean isNull(Column column, Random random)
+    {
+        return NullRates[column.ordinal()] > 0 && random.nextDouble() < NullRates[column.ordinal()];
+    }
+
+    /**
+     * Gives the number of days in the given number of years.
+     */
+    private static long days(int years)
+    {
+        return (long) (365.25 * years);
+    }
+
+    /**
+     * Gives a random number of days within the given numbers of years.
+     */
+    private static long days(Random random, int fromYears, int toYears)
+    {
+        return (long) (365.25 * (fromYears + random.nextDouble() * (toYears - fromYears)));
+    }
+
+    /**
+     * The persons of a single generation, in order of id.
+     */
+    private final static class Generation
+    {
+        int size = 0;
+        int[] ids = new int[0];
+        int[] fatherIds = new int[0];
+        int[] motherIds = new int[0];
+        Sex[] sexes = new Sex[0];
+        long[] births = new long[0];
+        long[] deaths = new long[0];
+
+        /** Index of the partner in this generation, or -1 if unpaired. */
+        int[] partners = new int[0];
+        int[] relationIds = new int[0];
+        RelationType[] relationTypes = new RelationType[0];
+        long[] marriages = new long[0];
+
+        Generation(int capacity)
+        {
+            resize(Math.max(capacity, 2));
+        }
+
+        /**
+         * Adds the given number of persons without parents, born around the
+         * given generation's years.
+         */
+        void addFounders(int count, int number, Random random, int[] nextIds)
+        {
+            final long start = LocalDate.of(FirstYear + number * GenerationYears, 1, 1)
+                    .toEpochDay();
+
+            for (int i = 0; i < count; i++)
+            {
+                add(nextIds[0]++, 0, 0, start + days(random, -15, 15), random);
+            }
+        }
+
+        /**
+         * Adds a person, choosing its sex and death date.
+         */
+        void add(int id, int fatherId, int motherId, long birth, Random random)
+        {
+            if (size == ids.length)
+            {
+                resize(size << 1);
+            }
+
+            final double sexRoll = random.nextDouble();
+            ids[size] = id;
+            fatherIds[size] = fatherId;
+            motherIds[size] = motherId;
+            sexes[size] = sexRoll < 0.495 ? Sex.Male : sexRoll < 0.99 ? Sex.Female : Sex.Unknown;
+            births[size] = birth;
+            deaths[size] = birth + (random.nextDouble() < 0.2 ? days(random, 0, 5)
+                    : days(random, 5, 95));
+            partners[size] = -1;
+            size++;
+        }
+
+        /**
+         * Pairs men and women that live to marriageable age into couples.
+         */
+        void pair(Random random, int[] nextIds)
+        {
+            final int[] men = new int[size];
+            final int[] women = new int[size];
+            int menCount = 0;
+            int womenCount = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                if (deaths[i] - births[i] < days(18))
+                {
+                    continue;
+                }
+
+                if (sexes[i] == Sex.Male)
+                {
+                    men[menCount++] = i;
+                }
+                else if (sexes[i] == Sex.Female)
+                {
+                    women[womenCount++] = i;
+                }
+            }
+
+            shuffle(men, menCount, random);
+            shuffle(women, womenCount, random);
+
+            for (int i = 0; i < Math.min(menCount, womenCount); i++)
+            {
+                if (random.nextDouble() >= PairRate)
+                {
+                    continue;
+                }
+
+                final int man = men[i];
+                final int woman = women[i];
+                final RelationType type = random.nextDouble() < 0.9 ? RelationType.Marriage
+                        : OtherRelationTypes[random.nextInt(OtherRelationTypes.length)];
+                final long marriage = Math.max(births[man], births[woman])
+                        + days(random, 18, 33);
+                partners[man] = woman;
+                partners[woman] = man;
+                relationIds[man] = relationIds[woman] = nextIds[1]++;
+                relationTypes[man] = relationTypes[woman] = type;
+                marriages[man] = marriages[woman] = marriage;
+            }
+        }
+
+        /**
+         * Creates the next generation from the children of this generation's
+         * couples, aiming for the given number of children in total.
+         */
+        Generation children(int target, Random random, int[] nextIds)
+        {
+            int couples = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                couples += sexes[i] == Sex.Male && partners[i] >= 0 ? 1 : 0;
+            }
+
+            final double mean = couples == 0 ? 0 : (double) target / couples;
+            final Generation children = new Generation(target);
+
+            for (int father = 0; father < size; father++)
+            {
+                final int mother = partners[father];
+
+                if (sexes[father] != Sex.Male || mother < 0)
+                {
+                    continue;
+                }
+
+                // Children are born while both parents live and the mother is
+                // at most 45.
+                final long end = Math.min(Math.min(deaths[father], deaths[mother]),
+                        births[mother] + days(45));
+                final int count = (int) (random.nextDouble() * 2 * mean + 0.5);
+
+                for (int child = 0; child < count; child++)
+                {
+                    final long birth = marriages[father] + days(random, 1, 20);
+
+                    if (birth < end)
+                    {
+                        children.add(nextIds[0]++, ids[father], ids[mother], birth, random);
+                    }
+                }
+            }
+
+            return children;
+        }
+
+        private void resize(int capacity)
+        {
+            ids = Arrays.copyOf(ids, capacity);
+            fatherIds = Arrays.copyOf(fatherIds, capacity);
+            motherIds = Arrays.copyOf(motherIds, capacity);
+            sexes = Arrays.copyOf(sexes, capacity);
+            births = Arrays.copyOf(births, capacity);
+            deaths = Arrays.copyOf(deaths, capacity);
+            partners = Arrays.copyOf(partners, capacity);
+            relationIds = Arrays.copyOf(relationIds, capacity);
+            relationTypes = Arrays.copyOf(relationTypes, capacity);
+            marriages = Arrays.copyOf(marriages, capacity);
+        }
+
+        private static void shuffle(int[] values, int count, Random random)
+        {
+            for (int i = count - 1; i > 0; i--)
+            {
+                final int j = random.nextInt(i + 1);
+                final int value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+    }
+
+    /**
+     * Writes a generated tree to a file. Run from the benchmarks .jar with
+     * 'java -cp target/benchmarks.jar
+     * com.github.agadar.famtreestats.benchmark.SyntheticTreeGenerator'.
+     *
+     * @param args the number of persons, the file to write to and optionally
+     * the seed (0 by default)
+     * @throws IOException if writing failed
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: SyntheticTreeGenerator <persons> <file> [seed]");
+            System.exit(2);
+        }
+
+        new SyntheticTreeGenerator(args.length > 2 ? Long.parseLong(args[2]) : 0)
+                .write(new File(args[1]), Integer.parseInt(args[0]));
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.enums.Column;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Positions of the columns in the header line of a persons CSV-file, resolved
+ * once so that rows can be decoded by field index alone. Also tells which
+ * columns are missing from the header, and which of its names are unknown.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class ColumnMapping
+{
+    private final static Column[] Columns = Column.values();
+
+    /** Index in the header per column, indexed by Column ordinal, or -1 if missing. */
+    private final int[] Indices;
+
+    /** Column ordinal per field index, or -1 if the field belongs to no column. */
+    private final int[] FieldColumns;
+
+    /** Names in the header that belong to no column, in header order. */
+    private final List<String> Unknown;
+
+    /** Names in the header that occur more than once, in header order. */
+    private final List<String> Duplicates;
+
+    private ColumnMapping(int[] indices, int[] fieldColumns, List<String> unknown,
+            List<String> duplicates)
+    {
+        this.Indices = indices;
+        this.FieldColumns = fieldColumns;
+        this.Unknown = Collections.unmodifiableList(unknown);
+        this.Duplicates = Collections.unmodifiableList(duplicates);
+    }
+
+    /**
+     * Resolves the columns in the given column names. Names are matched
+     * exactly, apart from surrounding whitespace. If a column's name occurs
+     * more than once, its last occurrence is used.
+     *
+     * @param names the column names read from the header line
+     * @return the mapping
+     */
+    static ColumnMapping of(String[] names)
+    {
+        final int[] indices = new int[Columns.length];
+        final int[] fieldColumns = new int[names.length];
+        final List<String> unknown = new ArrayList<>();
+        final List<String> duplicates = new ArrayList<>();
+        Arrays.fill(indices, -1);
+        Arrays.fill(fieldColumns, -1);
+
+        for (int i = 0; i < names.length; i++)
+        {
+            final String name = names[i].trim();
+            final Column column = columnNamed(name);
+
+            if (column == null)
+            {
+                unknown.add(name);
+                continue;
+            }
+
+            if (indices[column.ordinal()] >= 0)
+            {
+                fieldColumns[indices[column.ordinal()]] = -1;
+                duplicates.add(name);
+            }
+
+            indices[column.ordinal()] = i;
+            fieldColumns[i] = column.ordinal();
+        }
+
+        return new ColumnMapping(indices, fieldColumns, unknown, duplicates);
+    }
+
+    /**
+     * Gives the index of the given column in the header.
+     *
+     * @param column the column
+     * @return the index, or -1 if the column is missing
+     */
+    int indexOf(Column column)
+    {
+        return Indices[column.ordinal()];
+    }
+
+    /**
+     * Gives the column of each field.
+     *
+     * @return the Column ordinal per field index, or -1 for fields belonging
+     * to no column; not to be modified
+     */
+    int[] getFieldColumns()
+    {
+        return FieldColumns;
+    }
+
+    /**
+     * Gives the columns missing from the header.
+     *
+     * @return the missing columns
+     */
+    Set<Column> getMissing()
+    {
+        final Set<Column> missing = EnumSet.noneOf(Column.class);
+
+        for (Column column : Columns)
+        {
+            if (indexOf(column) < 0)
+            {
+                missing.add(column);
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Gives the names in the header that belong to no column, which are
+     * skipped while reading.
+     *
+     * @return the unknown names, in header order
+     */
+    List<String> getUnknown()
+    {
+        return Unknown;
+    }
+
+    /**
+     * Gives the names of columns that occur more than once in the header, of
+     * which all but the last occurrence are skipped while reading.
+     *
+     * @return the duplicate names, in header order
+     */
+    List<String> getDuplicates()
+    {
+        return Duplicates;
+    }
+
+    /**
+     * Gives the column with the given name, or null if there is none.
+     */
+    private static Column columnNamed(String name)
+    {
+        for (Column column : Columns)
+        {
+            if (column.getColumnName().equals(name))
+            {
+                return column;
+            }
+        }
+
+        return null;
+    }
+}
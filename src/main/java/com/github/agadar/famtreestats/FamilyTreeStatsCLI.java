@@ -0,0 +1,430 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.Statistics;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Command-line entry point, for calculating statistics without the GUI, e.g.
+ * in scheduled jobs on headless servers. Takes a persons CSV-file or a
+ * directory of them, and writes the statistics as ';'-separated rows.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class FamilyTreeStatsCLI
+{
+    /** Usage instructions. */
+    private final static String Usage = String.join(System.lineSeparator(),
+            "Usage: FamilyTreeStatsCLI [options] <persons CSV-file or directory>",
+            "  --from <year>      lower bound of the years, at most 9999 (requires --to)",
+            "  --to <year>        upper bound of the years (requires --from)",
+            "  --interval <years> calculate per interval instead of in total",
+            "  --output <path>    file to write to, or directory if the input is a",
+            "                     directory; defaults to standard output",
+            "  --threads <count>  number of files of a directory processed at once",
+            "  --no-snapshot      neither read nor write snapshots of parsed files",
+            "  --metrics          log the timers and counters of each file as JSON");
+
+    /** Extensions of the files processed when the input is a directory. */
+    private final static List<String> Extensions = Arrays.asList(".csv", ".txt");
+
+    /** Appended to the name of a file for the name of its statistics file. */
+    private final static String OutputSuffix = ".statistics.csv";
+
+    /** Column headers of the written rows. */
+    private final static String Header = "Year from;Year to;Avg. age at marriage (both);"
+            + "Avg. age at marriage (male);Avg. age at marriage (female);"
+            + "Avg. age at death (both);Avg. age at death (male);"
+            + "Avg. age at death (female);Avg. # of children per marriage;Deaths;Births;"
+            + "Median age at marriage (both);P10 age at marriage (both);"
+            + "P90 age at marriage (both);Median age at death (both);"
+            + "P10 age at death (both);P90 age at death (both)";
+
+    private final static Logger Log = Logger.getLogger(FamilyTreeStatsCLI.class.getName());
+
+    /** Lower bound, or 0 if not given. */
+    private final int YearFrom;
+
+    /** Upper bound, or 0 if not given. */
+    private final int YearTo;
+
+    /** The interval (in years), or 0 if not given. */
+    private final int Interval;
+
+    /** Whether to read and write snapshots of the parsed files. */
+    private final boolean UseSnapshots;
+
+    /** Whether to log the metrics of each file. */
+    private final boolean LogMetrics;
+
+    private FamilyTreeStatsCLI(int yearFrom, int yearTo, int interval, boolean useSnapshots,
+            boolean logMetrics)
+    {
+        this.YearFrom = yearFrom;
+        this.YearTo = yearTo;
+        this.Interval = interval;
+        this.UseSnapshots = useSnapshots;
+        this.LogMetrics = logMetrics;
+    }
+
+    /**
+     * @param args the command line arguments, see Usage
+     */
+    public static void main(String[] args)
+    {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the command line with the given arguments.
+     *
+     * @param args the command line arguments, see Usage
+     * @return the exit code: 0 on success, 1 if a file failed, 2 on bad arguments
+     */
+    public static int run(String[] args)
+    {
+        final long startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        int yearFrom = 0;
+        int yearTo = 0;
+        int interval = 0;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        boolean useSnapshots = true;
+        boolean logMetrics = false;
+        File output = null;
+        File input = null;
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--from":
+                        yearFrom = Integer.parseInt(args[++i]);
+                        break;
+                    case "--to":
+                        yearTo = Integer.parseInt(args[++i]);
+                        break;
+                    case "--interval":
+                        interval = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--output":
+                        output = new File(args[++i]);
+                        break;
+                    case "--no-snapshot":
+                        useSnapshots = false;
+                        break;
+                    case "--metrics":
+                        logMetrics = true;
+                        break;
+                    default:
+                        if (input != null || args[i].startsWith("--"))
+                        {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+
+                        input = new File(args[i]);
+                }
+            }
+
+            if (input == null)
+            {
+                throw new IllegalArgumentException("No input given");
+            }
+
+            // No date falls after YearlyCube.LastYear, so neither may the lower bound.
+            if ((yearFrom > 0) != (yearTo > 0) || yearFrom < 0 || yearTo < 0
+                    || yearFrom > Math.min(yearTo, YearlyCube.LastYear) || interval < 0
+                    || threads < 1)
+            {
+                throw new IllegalArgumentException("Invalid option values");
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex)
+        {
+            System.err.println(ex instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing option value" : ex.getMessage());
+            System.err.println(Usage);
+            return 2;
+        }
+
+        Log.log(Level.INFO, "JVM started in {0,number,#} ms", startupMillis);
+        final FamilyTreeStatsCLI cli = new FamilyTreeStatsCLI(yearFrom, yearTo, interval,
+                useSnapshots, logMetrics);
+        final long start = System.nanoTime();
+        final boolean succeeded = input.isDirectory()
+                ? cli.processDirectory(input, output, threads)
+                : cli.processFile(input, output, System.out);
+        Log.log(Level.INFO, "Done in {0,number,#} ms", (System.nanoTime() - start) / 1000000);
+        return succeeded ? 0 : 1;
+    }
+
+    /**
+     * Processes the files in the given directory, at most the given number at
+     * once. If an output directory is given, the statistics of each file are
+     * written to a file of the same name in it, with ".statistics.csv"
+     * appended; such files are skipped as input, so that the output directory
+     * may be the input directory and runs can be repeated. Otherwise they are
+     * written to standard output, in order of file name, each preceded by a
+     * line holding "# " and the file's path.
+     *
+     * @param directory the directory to process the files of
+     * @param output the directory to write to, or null for standard output
+     * @param threads the number of files processed at once
+     * @return whether all files were processed successfully
+     */
+    private boolean processDirectory(File directory, File output, int threads)
+    {
+        final File[] listed = directory.listFiles(file ->
+        {
+            final String name = file.getName().toLowerCase();
+            return file.isFile() && !name.endsWith(OutputSuffix)
+                    && Extensions.stream().anyMatch(name::endsWith);
+        });
+        final List<File> files = listed == null ? Collections.emptyList() : Arrays.asList(listed);
+        Collections.sort(files);
+
+        if (output != null && !output.isDirectory() && !output.mkdirs())
+        {
+            Log.log(Level.SEVERE, "Could not create output directory {0}", output);
+            return false;
+        }
+
+        // Each calculator already reads and aggregates on the common pool, so
+        // this pool only bounds the number of files loaded at once.
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<String>> results = new ArrayList<>();
+
+        for (File file : files)
+        {
+            results.add(pool.submit(() ->
+            {
+                if (output != null)
+                {
+                    return processFile(file, new File(output, file.getName() + OutputSuffix),
+                            null) ? "" : null;
+                }
+
+                final StringWriter writer = new StringWriter();
+                return process(file, writer) ? writer.toString() : null;
+            }));
+        }
+
+        pool.shutdown();
+        boolean succeeded = true;
+
+        for (int i = 0; i < files.size(); i++)
+        {
+            try
+            {
+                final String result = results.get(i).get();
+                succeeded &= result != null;
+
+                if (output == null && result != null)
+                {
+                    System.out.println("# " + files.get(i));
+                    System.out.print(result);
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                return false;
+            }
+            catch (ExecutionException ex)
+            {
+                Log.log(Level.SEVERE, "Failed to process " + files.get(i), ex.getCause());
+                succeeded = false;
+            }
+        }
+
+        return succeeded;
+    }
+
+    /**
+     * Processes the given file, writing its statistics to the given output
+     * file or, if none is given, to the given stream. The output file is
+     * first written under a temporary name and only replaces an existing file
+     * once the statistics were written successfully.
+     *
+     * @param file the persons CSV-file to process
+     * @param output the file to write to, or null to write to the stream
+     * @param stream the stream to write to if no output file is given
+     * @return whether the file was processed successfully
+     */
+    private boolean processFile(File file, File output, PrintStream stream)
+    {
+        if (output == null)
+        {
+            final StringWriter writer = new StringWriter();
+            final boolean succeeded = process(file, writer);
+            stream.print(writer);
+            stream.flush();
+            return succeeded;
+        }
+
+        final Path target = output.getAbsoluteFile().toPath();
+        Path temporary = null;
+
+        try
+        {
+            temporary = Files.createTempFile(target.getParent(), output.getName(), ".tmp");
+            final boolean succeeded;
+
+            try (final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))
+            {
+                succeeded = process(file, writer);
+            }
+
+            if (succeeded)
+            {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return succeeded;
+        }
+        catch (IOException ex)
+        {
+            Log.log(Level.SEVERE, "Failed to write " + output, ex);
+            return false;
+        }
+        finally
+        {
+            // Leave no partial statistics behind.
+            if (temporary != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temporary);
+                }
+                catch (IOException ex)
+                {
+                    Log.log(Level.WARNING, "Failed to delete " + temporary, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the given file, calculates its statistics and writes them to the
+     * given writer, logging the wall time it took.
+     *
+     * @param file the persons CSV-file to process
+     * @param writer the writer to write to
+     * @return whether the file was processed successfully
+     */
+    private boolean process(File file, Writer writer)
+    {
+        final long start = System.nanoTime();
+
+        try
+        {
+            final FamilyTreeStatsCalculator calculator = new FamilyTreeStatsCalculator(file,
+                    new LoadProgress(), UseSnapshots, LogMetrics ? new Metrics() 
+                            : Metrics.Disabled);
+            final long loaded = System.nanoTime();
+            write(calculate(calculator), writer);
+            Log.log(Level.INFO, "Processed {0} in {1,number,#} ms (loading {2,number,#} ms): {3}",
+                    new Object[]
+                    {
+                        file, (System.nanoTime() - start) / 1000000, (loaded - start) / 1000000,
+                        calculator.getDiagnostics()
+                    });
+
+            if (LogMetrics)
+            {
+                Log.log(Level.INFO, "Metrics of {0}: {1}", new Object[]
+                {
+                    file, calculator.getMetrics().toJson()
+                });
+            }
+
+            return true;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            Log.log(Level.SEVERE, "Failed to process " + file, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Calculates the statistics with the given calculator, according to the
+     * options, the same way the GUI does.
+     *
+     * @param calculator the calculator to use
+     * @return the calculated statistics
+     */
+    private List<Statistics> calculate(FamilyTreeStatsCalculator calculator)
+    {
+        final boolean useDates = YearFrom > 0 && YearTo > 0;
+
+        if (Interval > 0)
+        {
+            return useDates ? calculator.calculate(YearFrom, YearTo, Interval)
+                    : calculator.calculate(Interval);
+        }
+
+        return Collections.singletonList(useDates ? calculator.calculate(YearFrom, YearTo)
+                : calculator.calculate());
+    }
+
+    /**
+     * Writes the given statistics as ';'-separated rows, preceded by a header.
+     *
+     * @param statistics the statistics to write
+     * @param writer the writer to write to
+     * @throws IOException if writing failed
+     */
+    private static void write(List<Statistics> statistics, Writer writer) throws IOException
+    {
+        final String lineSeparator = System.lineSeparator();
+        writer.write(Header);
+        writer.write(lineSeparator);
+
+        for (Statistics stat : statistics)
+        {
+            writer.write(String.join(";",
+                    stat.Period.YearFrom < 1 ? "-" : String.valueOf(stat.Period.YearFrom),
+                    stat.Period.YearTo < 1 ? "-" : String.valueOf(stat.Period.YearTo),
+                    String.valueOf(stat.AgeAtMarriageBoth),
+                    String.valueOf(stat.AgeAtMarriageMale),
+                    String.valueOf(stat.AgeAtMarriageFemale),
+                    String.valueOf(stat.AgeAtDeathBoth),
+                    String.valueOf(stat.AgeAtDeathMale),
+                    String.valueOf(stat.AgeAtDeathFemale),
+                    String.valueOf(stat.ChildenPerMarriage),
+                    String.valueOf(stat.Deaths),
+                    String.valueOf(stat.Births),
+                    String.valueOf(stat.MedianAgeAtMarriageBoth),
+                    String.valueOf(stat.P10AgeAtMarriageBoth),
+                    String.valueOf(stat.P90AgeAtMarriageBoth),
+                    String.valueOf(stat.MedianAgeAtDeathBoth),
+                    String.valueOf(stat.P10AgeAtDeathBoth),
+                    String.valueOf(stat.P90AgeAtDeathBoth)));
+            writer.write(lineSeparator);
+        }
+    }
+}
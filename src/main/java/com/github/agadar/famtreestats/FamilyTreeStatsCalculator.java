@@ -1,49 +1,274 @@
 package com.github.agadar.famtreestats;
 
-import com.github.agadar.famtreestats.domain.Cache;
+import com.github.agadar.famtreestats.domain.Average;
+import com.github.agadar.famtreestats.domain.FamilyStatistics;
+import com.github.agadar.famtreestats.domain.LoadDiagnostics;
+import com.github.agadar.famtreestats.domain.Pedigree;
+import com.github.agadar.famtreestats.domain.PedigreeCollapse;
 import com.github.agadar.famtreestats.domain.PeriodYears;
+import com.github.agadar.famtreestats.domain.PersonStore;
 import com.github.agadar.famtreestats.domain.Statistics;
 import com.github.agadar.famtreestats.enums.Column;
-import com.github.agadar.famtreestats.enums.RelationType;
-import com.github.agadar.famtreestats.enums.Sex;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public final class FamilyTreeStatsCalculator 
 {
-    /** Symbol used for splitting values in persons CSV file. */
-    private final static String SplitSymbol = ";";
-
-    /** Date formatter for dd-MM-yyyy. */
-    private final static DateTimeFormatter DayMonthYearFormat = 
-        DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    /** Key to which calculate(...) maps the statistics of custom periods. */
+    public final static int CustomPeriods = -1;
+    
+    private final static Logger Log = Logger.getLogger(FamilyTreeStatsCalculator.class.getName());
+    
+    /** Persons retrieved from the csv file. */
+    private PersonStore persons;
+    
+    /** Persons aggregated per year, from which all statistics are calculated. */
+    private final YearlyCube Cube;
+    
+    /** Couples and children registered per person, made on the first update. */
+    private MarriageRegistrations registrations = null;
+    
+    /** Timers and counters of loading, updating and calculating. */
+    private final Metrics PhaseMetrics;
     
-    /** Date formatter for yyyy-MM-dd. */
-    private final static DateTimeFormatter YearMonthDayFormat = 
-        DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    /** Parent links between the persons, made on first use after each load. */
+    private Pedigree pedigree = null;
     
-    /** Data retrieved from the csv file. */
-    private final List<Map<String, String>> CsvData;
+    /** Engine for pedigree collapse and inbreeding, made along with the pedigree. */
+    private PedigreeCollapse collapse = null;
     
     /**
-     * Constructs a new calculator using data read from the given file.
+     * Constructs a new calculator using data read from the given file. The 
+     * file is parsed and aggregated per year only once, here; calculations 
+     * afterwards only merge years.
      * 
      * @param file
      * @throws IOException 
      */
     public FamilyTreeStatsCalculator(File file) throws IOException
     {
-        this.CsvData = readPersonsFromFile(file);
+        this(file, new LoadProgress());
+    }
+    
+    /**
+     * Same as FamilyTreeStatsCalculator(file), except that the progress of 
+     * reading the file is reported to the given progress, through which 
+     * loading can also be cancelled.
+     * 
+     * @param file
+     * @param progress the progress to report to
+     * @throws IOException 
+     * @throws java.util.concurrent.CancellationException if loading was cancelled
+     */
+    public FamilyTreeStatsCalculator(File file, LoadProgress progress) throws IOException
+    {
+        this(file, progress, true);
+    }
+    
+    /**
+     * Same as FamilyTreeStatsCalculator(file, progress), except that using a
+     * snapshot can be turned off. If turned on, the persons are read from the
+     * snapshot next to the file if it was made from the file as it is now, 
+     * and otherwise the file is parsed and the snapshot (re)written.
+     * 
+     * @param file
+     * @param progress the progress to report to
+     * @param useSnapshot whether to read and write a snapshot of the persons
+     * @throws IOException 
+     * @throws java.util.concurrent.CancellationException if loading was cancelled
+     */
+    public FamilyTreeStatsCalculator(File file, LoadProgress progress, boolean useSnapshot) 
+            throws IOException
+    {
+        this(file, progress, useSnapshot, Metrics.Disabled);
+    }
+    
+    /**
+     * Same as FamilyTreeStatsCalculator(file, progress, useSnapshot), except 
+     * that loading, and updating and calculating afterwards, are recorded to
+     * the given metrics.
+     * 
+     * @param file
+     * @param progress the progress to report to
+     * @param useSnapshot whether to read and write a snapshot of the persons
+     * @param metrics the metrics to record to
+     * @throws IOException 
+     * @throws java.util.concurrent.CancellationException if loading was cancelled
+     */
+    public FamilyTreeStatsCalculator(File file, LoadProgress progress, boolean useSnapshot,
+            Metrics metrics) throws IOException
+    {
+        this.PhaseMetrics = metrics;
+        this.persons = load(file, progress, useSnapshot, metrics);
+        final long start = metrics.start();
+        this.Cube = ForkJoinPool.commonPool().invoke(new AggregateTask<>(persons, 
+                YearlyCube.Builder::new, (left, right) -> 
+                {
+                    left.merge(right);
+                    return left;
+                }, 0, persons.size())).build();
+        metrics.stop(Metrics.Phase.Aggregate, start);
+        metrics.set(Metrics.Counter.UnknownDates, Cube.getUnknownDates());
+    }
+    
+    /**
+     * See update(...). Calls it with a new progress and snapshots turned on.
+     * 
+     * @param file
+     * @return the number of persons that were changed, removed or added
+     * @throws IOException 
+     */
+    public int update(File file) throws IOException
+    {
+        return update(file, new LoadProgress(), true);
+    }
+    
+    /**
+     * Updates this calculator to the given file, usually a newer export of the
+     * file this calculator was made from. The file is loaded like the 
+     * constructor does, then compared to the loaded persons by Intern_nummer.
+     * Only the persons that were changed, removed or added are taken out of 
+     * and put into the aggregates, so that this takes time in proportion to 
+     * the changes rather than to the tree, apart from loading the file. The 
+     * first update also registers the couples and children of all loaded 
+     * persons, once. Calculations done afterwards are the same as those of a
+     * new calculator of the file. Not thread-safe.
+     * 
+     * @param file
+     * @param progress the progress to report to
+     * @param useSnapshot whether to read and write a snapshot of the persons
+     * @return the number of persons that were changed, removed or added
+     * @throws IOException 
+     * @throws java.util.concurrent.CancellationException if loading was 
+     * cancelled, in which case this calculator is left unchanged
+     */
+    public int update(File file, LoadProgress progress, boolean useSnapshot) throws IOException
+    {
+        final PersonStore updated = load(file, progress, useSnapshot, PhaseMetrics);
+        final long start = PhaseMetrics.start();
+        final PersonsDiff diff = PersonsDiff.of(persons, updated);
+        
+        if (registrations == null)
+        {
+            registrations = MarriageRegistrations.of(persons);
+        }
+        
+        Cube.update(persons, diff.RemovedRows, updated, diff.AddedRows, registrations);
+        persons = updated;
+        pedigree = null;
+        collapse = null;
+        PhaseMetrics.stop(Metrics.Phase.Update, start);
+        PhaseMetrics.add(Metrics.Counter.ChangedPersons, diff.Persons);
+        PhaseMetrics.set(Metrics.Counter.UnknownDates, Cube.getUnknownDates());
+        return diff.Persons;
+    }
+    
+    /**
+     * Loads the persons from the given file, or from its snapshot.
+     * 
+     * @param file
+     * @param progress the progress to report to
+     * @param useSnapshot whether to read and write a snapshot of the persons
+     * @param metrics the metrics to record to
+     * @return the loaded persons
+     * @throws IOException 
+     */
+    private static PersonStore load(File file, LoadProgress progress, boolean useSnapshot,
+            Metrics metrics) throws IOException
+    {
+        final long start = metrics.start();
+        final PersonStore persons = read(file, progress, useSnapshot, metrics);
+        metrics.stop(Metrics.Phase.Read, start);
+        metrics.add(Metrics.Counter.Rows, persons.Diagnostics.Rows);
+        metrics.add(Metrics.Counter.MalformedValues, persons.Diagnostics.getMalformedTotal());
+        metrics.add(Metrics.Counter.MalformedDates, 
+                persons.Diagnostics.getMalformed(Column.DateMarriage)
+                + persons.Diagnostics.getMalformed(Column.DateBirth)
+                + persons.Diagnostics.getMalformed(Column.DateDeath));
+        return persons;
+    }
+    
+    /**
+     * Reads the persons from the given file, or from its snapshot.
+     * 
+     * @param file
+     * @param progress the progress to report to
+     * @param useSnapshot whether to read and write a snapshot of the persons
+     * @param metrics the metrics to record to
+     * @return the read persons
+     * @throws IOException 
+     */
+    private static PersonStore read(File file, LoadProgress progress, boolean useSnapshot,
+            Metrics metrics) throws IOException
+    {
+        if (useSnapshot)
+        {
+            final long start = metrics.start();
+            final PersonStore snapshot = PersonStoreSnapshot.read(file);
+            metrics.stop(Metrics.Phase.Snapshot, start);
+            
+            if (snapshot != null)
+            {
+                metrics.add(Metrics.Counter.SnapshotHits, 1);
+                progress.setTotalBytes(file.length());
+                progress.add(file.length(), snapshot.Diagnostics.Rows);
+                return snapshot;
+            }
+        }
+        
+        final PersonStoreSnapshot key = PersonStoreSnapshot.keyOf(file);
+        final PersonsCsvReader.Result<PersonStore.Builder> result = PersonsCsvReader.
+                readParallel(file, PersonsCsvReader.DefaultCharset, PersonStore.Builder::new,
+                        (left, right) -> 
+                        {
+                            left.append(right);
+                            return left;
+                        }, ForkJoinPool.commonPool(), progress, metrics);
+        progress.checkCancelled();
+        final PersonStore persons = result.Handler.build(result.Diagnostics);
+        
+        if (useSnapshot)
+        {
+            final long start = metrics.start();
+            key.write(file, persons);
+            metrics.stop(Metrics.Phase.Snapshot, start);
+        }
+        
+        return persons;
+    }
+    
+    /**
+     * Returns the diagnostics gathered while loading the file, such as the
+     * number of malformed values per column.
+     * 
+     * @return the load diagnostics
+     */
+    public LoadDiagnostics getDiagnostics()
+    {
+        return persons.Diagnostics;
+    }
+    
+    /**
+     * Returns the metrics recorded while loading, updating and calculating, 
+     * which are disabled unless given on construction.
+     * 
+     * @return the metrics
+     */
+    public Metrics getMetrics()
+    {
+        return PhaseMetrics;
     }
     
     /**
@@ -65,21 +290,24 @@ public final class FamilyTreeStatsCalculator
      */
     public Statistics calculate(int yearFrom, int yearTo)
     {        
-        final Cache cache = new Cache(yearFrom, yearTo);
-        final boolean ignoreDates = yearFrom < 1 || yearTo < 1;
-        final List<Statistics> stats = calculate(yearFrom, yearTo, 0, cache);
-        
-        if (ignoreDates)
+        if (yearFrom < 1 || yearTo < 1)
         {
-            return cache.calculateStatistics();
+            final long start = PhaseMetrics.start();
+            final Statistics stats = Cube.getStatistics(new PeriodYears(yearFrom, yearTo));
+            PhaseMetrics.stop(Metrics.Phase.Calculate, start);
+            return stats;
         }
-        else if (stats.size() > 0)
+        
+        final List<Statistics> stats = calculate(yearFrom, yearTo, 0);
+        
+        if (stats.size() > 0)
         {
             return stats.get(0);
         }
         else
         {
-            return new Statistics(yearFrom, yearTo, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+            return new Statistics(yearFrom, yearTo, Average.None, Average.None, Average.None, 
+                    Average.None, Average.None, Average.None, Average.None, 0, 0);
         }
     }
     
@@ -104,232 +332,250 @@ public final class FamilyTreeStatsCalculator
      */
     public List<Statistics> calculate(int yearFrom, int yearTo, int interval)
     {
-        return calculate(yearFrom, yearTo, interval, new Cache(null));
+        final long start = PhaseMetrics.start();
+        final List<Statistics> stats = Cube.getStatistics(PeriodTable.ofInterval(yearFrom, 
+                yearTo, interval));
+        PhaseMetrics.stop(Metrics.Phase.Calculate, start);
+        return stats;
     }
     
     /**
-     * Uses the persons list to calculate several statistics, returned in a list.
+     * See calculate(...). Calls it without custom periods.
      * 
-     * @param yearFrom
-     * @param yearTo
-     * @param interval
-     * @param defaultCache
-     * @return
+     * @param yearFrom lower bound
+     * @param yearTo upper bound
+     * @param intervals the intervals (in years)
+     * @return the calculated statistics, mapped to their intervals
      */
-    private List<Statistics> calculate(int yearFrom, int yearTo, int interval, 
-            Cache defaultCache)
+    public Map<Integer, List<Statistics>> calculate(int yearFrom, int yearTo, 
+            Collection<Integer> intervals)
     {
-        // Create cache map.
-        final Map<PeriodYears, Cache> cacheYears = new TreeMap<>();
-        
-        // Iterate over retrieved data.
-        for (Map<String, String> map : CsvData)
-        {
-            // Retrieve and parse values.
-            final LocalDate marriageDate = dateStringToDate(map.get(
-                    Column.DateMarriage.getColumnName()), YearMonthDayFormat);
-            final LocalDate birthDate = dateStringToDate(map.get(
-                    Column.DateBirth.getColumnName()), DayMonthYearFormat);
-            final LocalDate deathDate = dateStringToDate(map.get(
-                    Column.DateDeath.getColumnName()), DayMonthYearFormat);
-            final RelationType relationType = relationshipStringToEnum(map.get(
-                    Column.TypeRelationship.getColumnName()));
-            final Sex sexType = Sex.getByUnderlyingString(map.get(Column.TypeSex.getColumnName()));
-            final int id = idStringToInt(map.get(Column.IdSelf.getColumnName()));
-            final int fatherId = idStringToInt(map.get(Column.IdFather.getColumnName()));
-            final int motherId = idStringToInt(map.get(Column.IdMother.getColumnName()));
-            final int relationId = idStringToInt(map.get(Column.IdRelationship.getColumnName()));
-            final int partnerId = idStringToInt(map.get(Column.IdPartner.getColumnName()));
-            
-            // Process avg children at marriate and avg age at marriage.
-            Cache curCache = getOrCreateCache(marriageDate, cacheYears,
-                yearFrom, yearTo, interval, defaultCache);
-            curCache.processChildrenAtMarriage(id, fatherId, motherId, relationId, partnerId, 
-                    relationType);
-            curCache.processAgeAtMarriage(birthDate, marriageDate, relationType, sexType);
-            
-            // Process avg age at death and number of deaths.
-            curCache = getOrCreateCache(deathDate, cacheYears,
-                yearFrom, yearTo, interval, defaultCache);
-            curCache.processAgeAtDeath(birthDate, deathDate, sexType);
-            curCache.processDeath(deathDate);
-            
-            // Process births.
-            curCache = getOrCreateCache(birthDate, cacheYears,
-                yearFrom, yearTo, interval, defaultCache);
-            curCache.processBirth(birthDate);
-        }
-
-        // Calculate statistics from caches and return them.
-        List<Statistics> stats = new ArrayList<>();
-        cacheYears.forEach((k, v) -> stats.add(v.calculateStatistics()));
-        return stats;
+        return calculate(yearFrom, yearTo, intervals, Collections.emptyList());
     }
     
     /**
-     * Gets or creates a cache from/in the given map, using a period calculated
-     * from the given year, yearFrom, yearTo, and interval, and returns it.
+     * Uses the persons list to calculate the statistics of several intervals
+     * and custom periods at once. The statistics of each interval are the 
+     * same as calculate(yearFrom, yearTo, interval) gives. The statistics of 
+     * the custom periods are mapped to CustomPeriods.
      * 
-     * @param year
-     * @param cacheYears
-     * @param yearFrom
-     * @param yearTo
-     * @param interval
-     * @param defaultCache
-     * @return 
+     * @param yearFrom lower bound
+     * @param yearTo upper bound
+     * @param intervals the intervals (in years), each 0 or more
+     * @param periods custom periods, which may not overlap
+     * @return the calculated statistics, mapped to their intervals
+     * @throws IllegalArgumentException if an interval is negative, or if the
+     * custom periods overlap or are invalid
      */
-    private static Cache getOrCreateCache(LocalDate date, Map<PeriodYears, Cache> cacheYears, 
-            int yearFrom, int yearTo, int interval, Cache defaultCache)
+    public Map<Integer, List<Statistics>> calculate(int yearFrom, int yearTo, 
+            Collection<Integer> intervals, List<PeriodYears> periods)
     {
-        // If the given date is null, just return default cache.
-        if (date == null)
-        {
-            return defaultCache;
-        }
+        final Map<Integer, List<Statistics>> stats = new TreeMap<>();
         
-        final int year = date.getYear();
-        
-        // Just return the given default if year < yearFrom or year > yearTo or
-        // yearFrom and yearTo aren't given.
-        if (year < yearFrom || year > yearTo || yearFrom < 1 || yearTo < 1)
+        for (int interval : intervals)
         {
-            return defaultCache;
-        }
-
-        // Set the period bounds to the given yearFrom and yearTo.
-        int periodStart = yearFrom;
-        int periodEnd = yearTo;
-
-        // If interval is given, calculate new values for periodStart and periodEnd.
-        if (interval > 0)
-        {
-            periodStart = year - ((year - yearFrom) % interval);
-            periodEnd = Math.min(periodStart + interval - 1, yearTo);
+            if (interval < 0)
+            {
+                throw new IllegalArgumentException("Interval may not be negative: " + interval);
+            }
+            
+            stats.put(interval, calculate(yearFrom, yearTo, interval));
         }
-
-        // Instantiate a period, attempt to retrieve existing cache.
-        final PeriodYears period = new PeriodYears(periodStart, periodEnd);
-        Cache cache = cacheYears.get(period);
-
-        // If no cache exists mapped to the period, create and add it.
-        if (cache == null)
+        
+        if (!periods.isEmpty())
         {
-            cache = new Cache(period);
-            cacheYears.put(period, cache);
+            final long start = PhaseMetrics.start();
+            stats.put(CustomPeriods, Cube.getStatistics(PeriodTable.ofPeriods(periods)));
+            PhaseMetrics.stop(Metrics.Phase.Calculate, start);
         }
         
-        return cache;   // Return retrieved/created cache.
+        return stats;
     }
     
     /**
-     * Attempts to parse the given String to a LocalDate using the supplied
-     * formatter, or null if parsing failed.
+     * Calculates the statistics spanning several persons, such as the age of
+     * parents at the birth of their children, over all persons. Unlike the 
+     * other statistics these are not aggregated per year, but calculated in a
+     * single pass over the persons each time.
      * 
-     * @param dateStr the String to parse to LocalDate
-     * @param formatter the formatter to use
-     * @return the parsed LocalDate, or null if parsing failed
+     * @return the calculated statistics
      */
-    private static LocalDate dateStringToDate(String dateStr, DateTimeFormatter formatter)
+    public FamilyStatistics calculateFamily()
     {
-        try
+        final long start = PhaseMetrics.start();
+        final FamilyStatistics stats = FamilyStatistics.of(persons);
+        PhaseMetrics.stop(Metrics.Phase.Calculate, start);
+        return stats;
+    }
+    
+    /**
+     * Returns the graph of the parent links between the persons, along with
+     * per-person metrics such as their generation and number of descendants.
+     * The graph is built on the first call after loading or updating, and 
+     * kept until the next update. Persons that are their own ancestor, through
+     * bad data, are logged.
+     * 
+     * @return the pedigree graph
+     */
+    public Pedigree getPedigree()
+    {
+        if (pedigree == null)
         {
-            if (dateStr == null)
+            final long start = PhaseMetrics.start();
+            pedigree = Pedigree.of(persons, ForkJoinPool.commonPool());
+            PhaseMetrics.stop(Metrics.Phase.Pedigree, start);
+            
+            if (pedigree.getCyclic() > 0)
             {
-                return null;
+                Log.log(Level.WARNING, "{0} persons are their own ancestor or descend from "
+                        + "one, so their generation and number of relatives are unknown", 
+                        pedigree.getCyclic());
             }
-
-            // Some dates are prefixed with 'N-', so that needs to be removed.
-            dateStr = dateStr.trim().replaceAll("N-", "");
-            return LocalDate.parse(dateStr, formatter);
-        }
-        catch (DateTimeParseException ex)
-        {
-            return null;
         }
+        
+        return pedigree;
     }
     
     /**
-     * Attempts to parse the given id value from String to integer. If the given
-     * id value is null, empty, or otherwise couldn't be parsed to an integer,
-     * then '-1' is returned.
+     * Calculates the pedigree collapse and inbreeding coefficient of the 
+     * persons with the given id's, in parallel. Each person gets at most the
+     * given time; if it runs out, its result is incomplete. Inbreeding 
+     * coefficients found along the way are kept for later calls, until the
+     * next update.
      * 
-     * @param idStr the id String to parse to integer
-     * @return the parsed id value, or -1 if parsing failed
+     * @param ids the id's of the persons
+     * @param budgetMillis the time each person may take, in milliseconds
+     * @return the results, in the order of the id's
+     * @throws IllegalArgumentException if there is no person with one of the id's
      */
-    private static int idStringToInt(String idStr)
+    public List<PedigreeCollapse.Result> calculateCollapse(int[] ids, long budgetMillis)
     {
-        try
+        final Pedigree graph = getPedigree();
+        final int[] nodes = new int[ids.length];
+        
+        for (int i = 0; i < ids.length; i++)
         {
-            if (idStr == null)
+            nodes[i] = graph.nodeOf(ids[i]);
+            
+            if (nodes[i] == Pedigree.NoNode)
             {
-                return -1;
+                throw new IllegalArgumentException("No person with id " + ids[i]);
             }
-
-            return Integer.parseInt(idStr.trim());
         }
-        catch (NumberFormatException ex)
+        
+        if (collapse == null)
         {
-            return -1;
+            collapse = new PedigreeCollapse(graph);
         }
+        
+        final long start = PhaseMetrics.start();
+        final List<PedigreeCollapse.Result> results = collapse.calculate(nodes, budgetMillis, 
+                ForkJoinPool.commonPool());
+        PhaseMetrics.stop(Metrics.Phase.Calculate, start);
+        return results;
     }
     
     /**
-     * Returns the RelationshipType to which the given String is mapped, or
-     * RelationshipType.Unknown if there exists no type to which the given String
-     * is mapped.
+     * Streams the persons from the given file straight into per-period caches,
+     * without keeping the persons in memory. Memory use therefore depends only 
+     * on the number of periods and marriages, not on the number of persons. 
+     * The file is split into ranges that are read and aggregated in parallel.
+     * Meant for one-shot runs where the periods are known up front; use an 
+     * instance instead to calculate several times over the same file.
+     * <p>
+     * Same as calculate(yearFrom, yearTo, interval), except that if yearFrom 
+     * or yearTo is below 1, the returned list holds a single statistic over 
+     * all persons, like calculate() does.
      * 
-     * @param relationshipStr the String to find the corresponding RelationshipType of
-     * @return the corresponding RelationshipType, or RelationshipType.Unknown
+     * @param file the persons CSV-file
+     * @param yearFrom lower bound
+     * @param yearTo upper bound
+     * @param interval the interval (in years)
+     * @return the calculated statistics, ordered by period
+     * @throws IOException if something went wrong while finding/reading the file
      */
-    private static RelationType relationshipStringToEnum(String relationshipStr)
+    public static List<Statistics> calculateStreaming(File file, int yearFrom, 
+            int yearTo, int interval) throws IOException
     {
-        if (relationshipStr == null)
+        final PeriodAggregator settings = new PeriodAggregator(yearFrom, yearTo, 
+                interval, new PeriodYears(yearFrom, yearTo));
+        final PeriodAggregator aggregator = PersonsCsvReader.readParallel(file, 
+                PersonsCsvReader.DefaultCharset, () -> new PeriodAggregator(settings), 
+                (left, right) -> 
+                {
+                    left.merge(right);
+                    return left;
+                }, ForkJoinPool.commonPool()).Handler;
+        
+        if (yearFrom < 1 || yearTo < 1)
         {
-            return RelationType.Unknown;
+            final List<Statistics> stats = new ArrayList<>();
+            stats.add(aggregator.getDefaultStatistics());
+            return stats;
         }
-
-        return RelationType.getByUnderlyingString(relationshipStr.trim());
+        
+        return aggregator.getStatistics();
     }
     
     /**
-     * Reads the persons CSV-file found on the specified path, and returns the
-     * retrieved persons.
+     * Task aggregating a range of rows of a person store, splitting it over 
+     * subtasks if it is large.
      * 
-     * @param file the persons CSV-file
-     * @return list of maps, each map holding a person's data
-     * @throws IOException if something went wrong while finding/reading the file
+     * @param <H> the type of handler to aggregate with
      */
-    private static List<Map<String, String>> readPersonsFromFile(File file) throws IOException
+    private final static class AggregateTask<H extends PersonHandler> extends RecursiveTask<H>
     {
-        final List<Map<String, String>> results = new ArrayList<>();
- 
-        try (final BufferedReader reader = new BufferedReader(new FileReader(file));)
+        /** Ranges with at most this many rows are not split further. */
+        private final static int Threshold = 1 << 16;
+        
+        private final PersonStore Persons;
+        private final Supplier<H> Handlers;
+        private final BinaryOperator<H> Merger;
+        private final int From;
+        private final int To;
+        
+        /**
+         * Instantiates a new task.
+         * 
+         * @param persons the persons to aggregate
+         * @param handlers supplier of empty handlers
+         * @param merger merges two handlers of consecutive ranges
+         * @param from first row to aggregate (inclusive)
+         * @param to last row to aggregate (exclusive)
+         */
+        AggregateTask(PersonStore persons, Supplier<H> handlers, BinaryOperator<H> merger,
+                int from, int to)
         {
-            String line;
-            
-            // Read column names.
-            if ((line = reader.readLine()) == null)
-            {
-                throw new IOException("Selected file is empty!");
-            }
-            
-            final String[] columns = line.split(SplitSymbol);
-            
-            // Read column values.          
-            while ((line = reader.readLine()) != null)
+            this.Persons = persons;
+            this.Handlers = handlers;
+            this.Merger = merger;
+            this.From = from;
+            this.To = to;
+        }
+        
+        @Override
+        protected H compute()
+        {
+            if (To - From <= Threshold)
             {
-                final String[] values = line.split(SplitSymbol);
-                final Map entry = new HashMap<>();
+                final H handler = Handlers.get();
                 
-                for (int i = 0; i < columns.length && i < values.length; i++)
+                for (int row = From; row < To; row++)
                 {
-                    entry.put(columns[i], values[i]);
+                    Persons.handle(row, handler);
                 }
                 
-                results.add(entry);
+                return handler;
             }
+            
+            // Aggregate both halves, then merge them in order.
+            final int middle = (From + To) >>> 1;
+            final AggregateTask<H> right = new AggregateTask<>(Persons, Handlers, Merger, 
+                    middle, To);
+            right.fork();
+            final H left = new AggregateTask<>(Persons, Handlers, Merger, From, middle)
+                    .compute();
+            return Merger.apply(left, right.join());
         }
-        
-        return results;
     }
 }
@@ -3,21 +3,25 @@ package com.github.agadar.famtreestats;
 import com.github.agadar.famtreestats.domain.Statistics;
 import com.github.agadar.famtreestats.misc.MultiLineHeaderRenderer;
 import com.github.agadar.famtreestats.misc.RegexDocumentFilter;
+import java.awt.EventQueue;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
-import javax.swing.table.TableModel;
 import javax.swing.text.AbstractDocument;
 
 /**
@@ -32,11 +36,47 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
      */
     private final JFileChooser fileChooser = new JFileChooser();
 
+    /**
+     * Model of the table, showing the calculated statistics.
+     */
+    private final StatisticsTableModel tableModel = new StatisticsTableModel();
+
     /**
      * The calculator that is currently being used.
      */
     private FamilyTreeStatsCalculator calculator;
 
+    /**
+     * The file the current calculator was loaded from.
+     */
+    private File file;
+
+    /**
+     * The worker that is currently or was last loading and/or calculating.
+     */
+    private CalculationWorker worker;
+
+    /**
+     * Timer showing the progress of the current worker while it runs.
+     */
+    private final Timer progressTimer = new Timer(100, e -> showProgress());
+
+    /**
+     * Time (in ms) the loaded file must be left alone before it is refreshed.
+     */
+    private final static long WatchQuietMillis = 1500;
+
+    /**
+     * Watcher of the loaded file, or null if it is not being watched.
+     */
+    private FileWatcher watcher;
+
+    /**
+     * Whether the loaded file changed while the current worker was running,
+     * so that it should be refreshed once the worker is done.
+     */
+    private boolean refreshPending;
+
     /**
      * Creates new form FamilyTreeStatsGUI.
      */
@@ -58,6 +98,17 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
                 "CSV file (*.csv;*.txt)", "csv", "txt");
         fileChooser.addChoosableFileFilter(csvFilter);
         fileChooser.setFileFilter(csvFilter);
+
+        // Set the table model and multi-line column headers, once.
+        TableStatistics.setModel(tableModel);
+        TableStatistics.setDefaultRenderer(Integer.class, new StatisticsTableModel.Renderer());
+        final MultiLineHeaderRenderer renderer = new MultiLineHeaderRenderer();
+        final Enumeration<TableColumn> columns = TableStatistics.getColumnModel().getColumns();
+
+        while (columns.hasMoreElements())
+        {
+            columns.nextElement().setHeaderRenderer(renderer);
+        }
     }
 
     /**
@@ -80,6 +131,9 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
         BtnReCalculate = new javax.swing.JButton();
         TextFieldFromDate = new javax.swing.JTextField();
         TextFieldToDate = new javax.swing.JTextField();
+        LabelStatus = new javax.swing.JLabel();
+        BtnCancel = new javax.swing.JButton();
+        ChkBxWatch = new javax.swing.JCheckBox();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Family Tree Statistics for Aldfaer 1.2.0");
@@ -150,6 +204,29 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
         TextFieldToDate.setEditable(false);
         TextFieldToDate.setText("2100");
 
+        LabelStatus.setText("No file loaded.");
+
+        BtnCancel.setText("Cancel");
+        BtnCancel.setEnabled(false);
+        BtnCancel.setFocusPainted(false);
+        BtnCancel.addActionListener(new java.awt.event.ActionListener()
+        {
+            public void actionPerformed(java.awt.event.ActionEvent evt)
+            {
+                BtnCancelActionPerformed(evt);
+            }
+        });
+
+        ChkBxWatch.setText("Watch file for changes");
+        ChkBxWatch.setFocusPainted(false);
+        ChkBxWatch.addActionListener(new java.awt.event.ActionListener()
+        {
+            public void actionPerformed(java.awt.event.ActionEvent evt)
+            {
+                ChkBxWatchActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -158,6 +235,12 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                     .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 730, Short.MAX_VALUE)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(LabelStatus, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                        .addGap(18, 18, 18)
+                        .addComponent(ChkBxWatch)
+                        .addGap(18, 18, 18)
+                        .addComponent(BtnCancel))
                     .addGroup(layout.createSequentialGroup()
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addGroup(layout.createSequentialGroup()
@@ -198,6 +281,11 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
                     .addComponent(BtnReCalculate, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 260, Short.MAX_VALUE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(LabelStatus)
+                    .addComponent(ChkBxWatch)
+                    .addComponent(BtnCancel))
                 .addContainerGap())
         );
 
@@ -207,26 +295,13 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
     private void BtnReadFileActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_BtnReadFileActionPerformed
     {//GEN-HEADEREND:event_BtnReadFileActionPerformed
 
-        // Show open file dialog.
+        // Show open file dialog, then read from the file and do calculations.
+        // Reading the loaded file again only updates the changed persons.
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
         {
-            try
-            {
-                // Read from the file and do calculations.
-                final File file = fileChooser.getSelectedFile();
-                calculator = new FamilyTreeStatsCalculator(file);
-                BtnReCalculateActionPerformed(evt);
-
-                // Enable re-calculate button.
-                BtnReCalculate.setEnabled(true);
-            }
-            catch (IOException ex)
-            {
-                JOptionPane.showMessageDialog(this,
-                                              "Failed to read the selected file.",
-                                              "An error occured",
-                                              JOptionPane.ERROR_MESSAGE);
-            }
+            final File selected = fileChooser.getSelectedFile();
+            startWorker(new CalculationWorker(selected, selected.equals(file) ? calculator 
+                    : null, readCalculation(), false));
         }
     }//GEN-LAST:event_BtnReadFileActionPerformed
 
@@ -243,113 +318,186 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
 
     private void BtnReCalculateActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_BtnReCalculateActionPerformed
     {//GEN-HEADEREND:event_BtnReCalculateActionPerformed
-        // According to selected options, calculate statistics.
-        List<Statistics> stats;
+        startWorker(new CalculationWorker(null, calculator, readCalculation(), false));
+    }//GEN-LAST:event_BtnReCalculateActionPerformed
 
-        if (ChkBxInterval.isSelected())
-        {
-            int interval = Integer.valueOf((String) ComboBoxInterval.
-                    getSelectedItem());
+    private void BtnCancelActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_BtnCancelActionPerformed
+    {//GEN-HEADEREND:event_BtnCancelActionPerformed
+        worker.cancel();
+    }//GEN-LAST:event_BtnCancelActionPerformed
 
-            if (ChkBxUseDates.isSelected())
+    private void ChkBxWatchActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_ChkBxWatchActionPerformed
+    {//GEN-HEADEREND:event_ChkBxWatchActionPerformed
+        updateWatcher();
+    }//GEN-LAST:event_ChkBxWatchActionPerformed
+
+    /**
+     * Watches the loaded file if watching is selected, else stops watching.
+     */
+    private void updateWatcher()
+    {
+        if (watcher != null)
+        {
+            try
             {
-                final String yearFromStr = TextFieldFromDate.getText().trim();
-                final String yearToStr = TextFieldToDate.getText().trim();               
-                final int yearFrom = yearFromStr.isEmpty() ? 1 : Integer.valueOf(yearFromStr);
-                final int yearTo = yearToStr.isEmpty() ? 1 : Integer.valueOf(yearToStr);
-                stats = calculator.calculate(yearFrom, yearTo, interval);
+                watcher.close();
             }
-            else
+            catch (IOException ex)
             {
-                stats = calculator.calculate(interval);
+                Logger.getLogger(FamilyTreeStatsGUI.class.getName()).log(Level.WARNING, null, ex);
             }
+
+            watcher = null;
         }
-        else
+
+        if (!ChkBxWatch.isSelected() || file == null)
         {
-            stats = new ArrayList<>();
+            return;
+        }
 
-            if (ChkBxUseDates.isSelected())
-            {
-                final String yearFromStr = TextFieldFromDate.getText().trim();
-                final String yearToStr = TextFieldToDate.getText().trim();               
-                final int yearFrom = yearFromStr.isEmpty() ? 1 : Integer.valueOf(yearFromStr);
-                final int yearTo = yearToStr.isEmpty() ? 1 : Integer.valueOf(yearToStr);
-                stats.add(calculator.calculate(yearFrom, yearTo));
-            }
-            else
-            {
-                stats.add(calculator.calculate());
-            }
+        try
+        {
+            watcher = new FileWatcher(file, WatchQuietMillis,
+                    () -> EventQueue.invokeLater(this::refresh));
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(FamilyTreeStatsGUI.class.getName()).log(Level.SEVERE, null, ex);
+            ChkBxWatch.setSelected(false);
+            LabelStatus.setText("Failed to watch " + file.getName() + ".");
         }
+    }
 
-        // Show results in the table and enable re-calculate button.
-        updateTable(stats);
-    }//GEN-LAST:event_BtnReCalculateActionPerformed
+    /**
+     * Updates the calculator to the changed loaded file in the background, 
+     * or once the current worker is done. The table keeps showing the 
+     * current statistics until the new ones are ready.
+     */
+    private void refresh()
+    {
+        if (watcher == null)
+        {
+            return;
+        }
+
+        if (worker != null && !worker.isDone())
+        {
+            refreshPending = true;
+            return;
+        }
+
+        refreshPending = false;
+        startWorker(new CalculationWorker(file, calculator, readCalculation(), true));
+    }
 
     /**
-     * Updates the table, using the given statistics.
+     * Reads the selected options into the calculation to do, so that it can 
+     * be done off the event dispatch thread.
      *
-     * @param statistics
+     * @return the calculation to do with a calculator
      */
-    private void updateTable(List<Statistics> statistics)
+    private Function<FamilyTreeStatsCalculator, List<Statistics>> readCalculation()
     {
-        List<String> columns = new ArrayList<>();
-        List<String[]> values = new ArrayList<>();
-
-        // Add column headers.
-        columns.add("Year\nFrom");
-        columns.add("Year\nTo");
-        columns.add("Avg. age\nat marriage\n(both)");
-        columns.add("Avg. age\nat marriage\n(male)");
-        columns.add("Avg. age\nat marriage\n(female)");
-        columns.add("Avg. age\nat death\n(both)");
-        columns.add("Avg. age\nat death\n(male)");
-        columns.add("Avg. age\nat death\n(female)");
-        columns.add("Avg. # of\nchildren per\nmarriage");
-        columns.add("Deaths");
-        columns.add("Births");
-
-        // Add values
-        for (Statistics stat : statistics)
+        final String yearFromStr = TextFieldFromDate.getText().trim();
+        final String yearToStr = TextFieldToDate.getText().trim();
+        final int yearFrom = yearFromStr.isEmpty() ? 1 : Integer.valueOf(yearFromStr);
+        final int yearTo = yearToStr.isEmpty() ? 1 : Integer.valueOf(yearToStr);
+        final boolean useDates = ChkBxUseDates.isSelected();
+
+        // According to selected options, calculate statistics.
+        if (ChkBxInterval.isSelected())
         {
-            final String yearFrom = stat.Period.YearFrom < 1 ? "-" : String.
-                    valueOf(stat.Period.YearFrom);
-            final String yearTo = stat.Period.YearTo < 1 ? "-" : String.valueOf(
-                    stat.Period.YearTo);
-            values.add(new String[]
-            {
-                yearFrom, yearTo, String.valueOf(stat.AgeAtMarriageBoth),
-                String.valueOf(stat.AgeAtMarriageMale), String.valueOf(
-                stat.AgeAtMarriageFemale),
-                String.valueOf(stat.AgeAtDeathBoth), String.valueOf(
-                stat.AgeAtDeathMale),
-                String.valueOf(stat.AgeAtDeathFemale), String.valueOf(
-                stat.ChildenPerMarriage),
-                String.valueOf(stat.Deaths), String.valueOf(stat.Births)
-            });
+            final int interval = Integer.valueOf((String) ComboBoxInterval.
+                    getSelectedItem());
+            return useDates ? calc -> calc.calculate(yearFrom, yearTo, interval)
+                    : calc -> calc.calculate(interval);
         }
 
-        // Create and set table model.
-        TableModel tableModel = new DefaultTableModel(values.toArray(
-                new Object[][]
-                {
-                }), columns.toArray());
-        TableStatistics.setModel(tableModel);
+        return useDates ? calc -> Collections.singletonList(calc.calculate(yearFrom, yearTo))
+                : calc -> Collections.singletonList(calc.calculate());
+    }
+
+    /**
+     * Starts the given worker, disabling the buttons until it is done and 
+     * clearing the table unless the worker runs in the background.
+     *
+     * @param newWorker the worker to start
+     */
+    private void startWorker(CalculationWorker newWorker)
+    {
+        worker = newWorker;
+        BtnReadFile.setEnabled(false);
+        BtnReCalculate.setEnabled(false);
+        BtnCancel.setEnabled(true);
+
+        if (!worker.Background)
+        {
+            clearTable();
+        }
+
+        showProgress();
+        progressTimer.start();
+        worker.execute();
+    }
+
+    /**
+     * Shows the progress of the current worker in the status label.
+     */
+    private void showProgress()
+    {
+        final LoadProgress progress = worker.Progress;
 
-        // Set multi-line column headers.
-        MultiLineHeaderRenderer renderer = new MultiLineHeaderRenderer();
-        Enumeration e = TableStatistics.getColumnModel().getColumns();
-        while (e.hasMoreElements())
+        if (worker.Loaded == null)
+        {
+            LabelStatus.setText("Calculating...");
+        }
+        else if (worker.Background)
+        {
+            LabelStatus.setText("Refreshing " + worker.Loaded.getName() + "...");
+        }
+        else if (progress.getTotalBytes() == 0)
+        {
+            LabelStatus.setText("Opening " + worker.Loaded.getName() + "...");
+        }
+        else
         {
-            ((TableColumn) e.nextElement()).setHeaderRenderer(renderer);
+            LabelStatus.setText(String.format("Reading %s: %,d of %,d bytes, %,d rows...",
+                    worker.Loaded.getName(), progress.getBytes(), progress.getTotalBytes(),
+                    progress.getRows()));
         }
     }
 
     /**
-     * @param args the command line arguments
+     * Shows the loaded file and its diagnostics in the status label.
+     */
+    private void showLoaded()
+    {
+        LabelStatus.setText(calculator == null ? "No file loaded." 
+                : file.getName() + ": " + calculator.getDiagnostics());
+        LabelStatus.setToolTipText(calculator == null ? null 
+                : calculator.getMetrics().toString());
+    }
+
+    /**
+     * Clears the table, leaving only the column headers.
+     */
+    private void clearTable()
+    {
+        tableModel.set(Collections.emptyList());
+    }
+
+    /**
+     * @param args the command line arguments; if any are given, the program
+     * runs headless through FamilyTreeStatsCLI instead
      */
     public static void main(String args[])
     {
+        if (args.length > 0)
+        {
+            FamilyTreeStatsCLI.main(args);
+            return;
+        }
+
         try
         {
             // Just use the windows look and feel, because that's what we see in
@@ -372,13 +520,185 @@ public class FamilyTreeStatsGUI extends javax.swing.JFrame
         }
     }
 
+    /**
+     * Loads a file (if given) or updates the given calculator to it, and 
+     * calculates statistics off the event dispatch thread. While loading, only
+     * the progress is shown. The calculator gives the statistics of all periods
+     * at once, after which they are published to the table. A worker running 
+     * in the background instead replaces the rows of the table, and reports 
+     * failures in the status label only.
+     */
+    private final class CalculationWorker extends SwingWorker<FamilyTreeStatsCalculator, Statistics>
+    {
+        /** The file to load, or null to use the given calculator. */
+        final File Loaded;
+
+        /** Progress of loading the file. */
+        final LoadProgress Progress = new LoadProgress();
+
+        /** The calculator to use, or to update if a file is given; may be null. */
+        private final FamilyTreeStatsCalculator Calculator;
+
+        /** The calculation to do. */
+        private final Function<FamilyTreeStatsCalculator, List<Statistics>> Calculation;
+
+        /** Whether this worker runs in the background. */
+        final boolean Background;
+
+        /** The calculated statistics, set in the background only. */
+        private List<Statistics> statistics = Collections.emptyList();
+
+        /**
+         * Instantiates a new worker.
+         *
+         * @param file the file to load, or null to use the given calculator
+         * @param calculator the calculator to use, or to update to the given
+         * file; may be null if a file is given
+         * @param calculation the calculation to do
+         * @param background whether to run in the background
+         */
+        CalculationWorker(File file, FamilyTreeStatsCalculator calculator,
+                Function<FamilyTreeStatsCalculator, List<Statistics>> calculation,
+                boolean background)
+        {
+            this.Loaded = file;
+            this.Calculator = calculator;
+            this.Calculation = calculation;
+            this.Background = background;
+        }
+
+        /**
+         * Cancels this worker, also stopping it from loading any further.
+         */
+        void cancel()
+        {
+            Progress.cancel();
+            cancel(false);
+        }
+
+        @Override
+        protected FamilyTreeStatsCalculator doInBackground() throws IOException
+        {
+            final FamilyTreeStatsCalculator calc = Loaded == null || Calculator != null 
+                    ? Calculator : new FamilyTreeStatsCalculator(Loaded, Progress, true, 
+                            new Metrics());
+
+            if (Loaded != null && Calculator != null)
+            {
+                final int changed = Calculator.update(Loaded, Progress, true);
+                Logger.getLogger(FamilyTreeStatsGUI.class.getName()).log(Level.INFO,
+                        "Updated {0}: {1} persons changed", new Object[] { Loaded, changed });
+            }
+
+            if (Background)
+            {
+                statistics = Calculation.apply(calc);
+                return calc;
+            }
+
+            for (Statistics stat : Calculation.apply(calc))
+            {
+                if (isCancelled())
+                {
+                    break;
+                }
+
+                publish(stat);
+            }
+
+            return calc;
+        }
+
+        @Override
+        protected void process(List<Statistics> chunks)
+        {
+            if (!isCancelled())
+            {
+                tableModel.add(chunks);
+            }
+        }
+
+        @Override
+        protected void done()
+        {
+            progressTimer.stop();
+
+            try
+            {
+                final FamilyTreeStatsCalculator calc = get();
+
+                if (Loaded != null)
+                {
+                    final boolean newFile = !Loaded.equals(file);
+                    calculator = calc;
+                    file = Loaded;
+                    Logger.getLogger(FamilyTreeStatsGUI.class.getName()).log(Level.INFO,
+                            "Loaded {0}: {1}, metrics {2}", new Object[] { Loaded, 
+                                calc.getDiagnostics(), calc.getMetrics().toJson() });
+
+                    if (newFile)
+                    {
+                        updateWatcher();
+                    }
+                }
+
+                if (Background)
+                {
+                    tableModel.set(statistics);
+                }
+
+                showLoaded();
+            }
+            catch (CancellationException ex)
+            {
+                LabelStatus.setText("Cancelled.");
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ex)
+            {
+                Logger.getLogger(FamilyTreeStatsGUI.class.getName()).log(Level.SEVERE, null, ex);
+                showLoaded();
+
+                if (Background)
+                {
+                    LabelStatus.setText("Failed to refresh " + Loaded.getName() 
+                            + ", showing the last statistics.");
+                }
+                else
+                {
+                    JOptionPane.showMessageDialog(FamilyTreeStatsGUI.this,
+                                                  "Failed to read the selected file.",
+                                                  "An error occured",
+                                                  JOptionPane.ERROR_MESSAGE);
+                }
+            }
+
+            // Enable the buttons again, re-calculate only if a file is loaded.
+            BtnCancel.setEnabled(false);
+            BtnReadFile.setEnabled(true);
+            BtnReCalculate.setEnabled(calculator != null);
+
+            // Refresh the loaded file if it changed in the meantime.
+            if (refreshPending)
+            {
+                refresh();
+            }
+        }
+    }
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton BtnCancel;
     protected javax.swing.JButton BtnReCalculate;
     protected javax.swing.JButton BtnReadFile;
     private javax.swing.JCheckBox ChkBxInterval;
     private javax.swing.JCheckBox ChkBxUseDates;
+    private javax.swing.JCheckBox ChkBxWatch;
     private javax.swing.JComboBox<String> ComboBoxInterval;
     private javax.swing.JLabel LabelDateAnd;
+    private javax.swing.JLabel LabelStatus;
     private javax.swing.JTable TableStatistics;
     private javax.swing.JTextField TextFieldFromDate;
     private javax.swing.JTextField TextFieldToDate;
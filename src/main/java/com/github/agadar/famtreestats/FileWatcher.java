@@ -0,0 +1,168 @@
+package com.github.agadar.famtreestats;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches a file for changes, through a WatchService on its directory. Bursts
+ * of changes, such as those of an export being written, are debounced: the
+ * listener is only notified once the file has not changed for a while, and
+ * has kept the same size and last modified time meanwhile. The listener is
+ * notified on the watching thread.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class FileWatcher implements Closeable
+{
+    private final static Logger Log = Logger.getLogger(FileWatcher.class.getName());
+
+    /** The watched file. */
+    private final File Watched;
+
+    /** Time the file must be left alone before the listener is notified. */
+    private final long QuietMillis;
+
+    /** Notified of changes of the file. */
+    private final Runnable Listener;
+
+    private final WatchService Service;
+
+    /**
+     * Starts watching the given file.
+     *
+     * @param file the file to watch
+     * @param quietMillis time (in ms) the file must be left alone before the
+     * listener is notified
+     * @param listener notified of changes of the file, on the watching thread
+     * @throws IOException if the file's directory could not be watched
+     */
+    FileWatcher(File file, long quietMillis, Runnable listener) throws IOException
+    {
+        this.Watched = file.getAbsoluteFile();
+        this.QuietMillis = quietMillis;
+        this.Listener = listener;
+        this.Service = FileSystems.getDefault().newWatchService();
+
+        try
+        {
+            Watched.getParentFile().toPath().register(Service,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            Service.close();
+            throw ex;
+        }
+
+        final Thread thread = new Thread(this::watch, "Watching " + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file. The listener may still be notified once, if it
+     * is about to be.
+     *
+     * @throws IOException if the watch service could not be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        Service.close();
+    }
+
+    /**
+     * Waits for changes of the file, notifying the listener of each burst.
+     */
+    private void watch()
+    {
+        try
+        {
+            while (true)
+            {
+                if (!isAboutFile(Service.take()))
+                {
+                    continue;
+                }
+
+                // Wait until the file is left alone.
+                long stamp = stampOf(Watched);
+
+                while (true)
+                {
+                    final WatchKey key = Service.poll(QuietMillis, TimeUnit.MILLISECONDS);
+
+                    if (key != null)
+                    {
+                        if (isAboutFile(key))
+                        {
+                            stamp = stampOf(Watched);
+                        }
+
+                        continue;
+                    }
+
+                    final long current = stampOf(Watched);
+
+                    if (current == stamp)
+                    {
+                        break;
+                    }
+
+                    stamp = current;
+                }
+
+                if (Watched.isFile())
+                {
+                    Listener.run();
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ex)
+        {
+            // Stopped watching.
+        }
+        catch (RuntimeException ex)
+        {
+            Log.log(Level.SEVERE, "Stopped watching " + Watched, ex);
+        }
+    }
+
+    /**
+     * Returns whether any of the key's events is about the file, then resets
+     * the key.
+     */
+    private boolean isAboutFile(WatchKey key)
+    {
+        boolean aboutFile = false;
+
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            // Events may have been lost on overflow, so assume the file changed.
+            aboutFile |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || Watched.getName().equals(((Path) event.context()).toString());
+        }
+
+        key.reset();
+        return aboutFile;
+    }
+
+    /**
+     * Combines the size and last modified time of the given file.
+     */
+    private static long stampOf(File file)
+    {
+        return file.length() * 31 + file.lastModified();
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.agadar.famtreestats;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of loading a persons CSV-file, which may be read from another
+ * thread while loading, and through which loading can be cancelled.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class LoadProgress
+{
+    /** Number of bytes read so far. */
+    private final AtomicLong Bytes = new AtomicLong();
+
+    /** Number of rows read so far. */
+    private final AtomicLong Rows = new AtomicLong();
+
+    /** Size of the file in bytes, or 0 if not known yet. */
+    private volatile long totalBytes = 0;
+
+    /** Whether loading is cancelled. */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Gives the number of bytes read so far.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytes()
+    {
+        return Bytes.get();
+    }
+
+    /**
+     * Gives the number of rows read so far.
+     *
+     * @return the number of rows read
+     */
+    public long getRows()
+    {
+        return Rows.get();
+    }
+
+    /**
+     * Gives the size of the file being loaded.
+     *
+     * @return the size in bytes, or 0 if not known yet
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * Cancels loading. Loading stops soon after, with a CancellationException.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether loading is cancelled.
+     *
+     * @return whether loading is cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Sets the size of the file being loaded.
+     *
+     * @param bytes the size in bytes
+     */
+    void setTotalBytes(long bytes)
+    {
+        totalBytes = bytes;
+    }
+
+    /**
+     * Adds the given numbers of bytes and rows to those read so far, then
+     * stops loading if it is cancelled.
+     *
+     * @param bytes number of bytes read
+     * @param rows number of rows read
+     * @throws CancellationException if loading is cancelled
+     */
+    void add(long bytes, long rows)
+    {
+        Bytes.addAndGet(bytes);
+        Rows.addAndGet(rows);
+        checkCancelled();
+    }
+
+    /**
+     * Stops loading if it is cancelled.
+     *
+     * @throws CancellationException if loading is cancelled
+     */
+    void checkCancelled()
+    {
+        if (cancelled)
+        {
+            throw new CancellationException("Loading was cancelled");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.MarriedWithChildrenIndex.Registration;
+import com.github.agadar.famtreestats.domain.Cache;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.misc.LongMultiMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The couples and children registered by persons, counted per row so that
+ * persons can be unregistered again. Gives the registrations of a relation and
+ * the children of a couple the same way the yearly MarriedWithChildren helpers
+ * of a YearlyCube give them to MarriedWithChildrenIndex.of(...), so that the
+ * index can be updated one relation at a time.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class MarriageRegistrations implements MarriedWithChildrenIndex.Children
+{
+    /**
+     * Registered couples packed by MarriedWithChildren.pairOf(...) per
+     * relation id, tagged with their year and counted per row.
+     */
+    private final LongMultiMap Relations = new LongMultiMap();
+
+    /**
+     * Registered child id's per couple packed by MarriedWithChildren.pairOf(...),
+     * tagged with their year and counted per row.
+     */
+    private final LongMultiMap Children = new LongMultiMap();
+
+    /**
+     * Relation id's per couple packed by MarriedWithChildren.pairOf(...),
+     * counted per registration of the couple to the relation.
+     */
+    private final LongMultiMap RelationsOfCouples = new LongMultiMap();
+
+    /**
+     * Registers the couples and children of all given persons.
+     *
+     * @param persons the persons
+     * @return the registrations
+     */
+    static MarriageRegistrations of(PersonStore persons)
+    {
+        final MarriageRegistrations registrations = new MarriageRegistrations();
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            registrations.register(persons, row);
+        }
+
+        return registrations;
+    }
+
+    /**
+     * Adds the id's of the relations whose registrations or children are
+     * changed by registering or unregistering the given person to the given
+     * set.
+     *
+     * @param persons the persons
+     * @param row the row of the person
+     * @param relations the set to add the relation id's to
+     */
+    void collectRelations(PersonStore persons, int row, Set<Integer> relations)
+    {
+        if (Cache.registersCouple(persons.getId(row), persons.getRelationId(row),
+                persons.getPartnerId(row), persons.getRelationType(row)))
+        {
+            relations.add(persons.getRelationId(row));
+        }
+
+        if (Cache.registersChild(persons.getId(row), persons.getFatherId(row),
+                persons.getMotherId(row)))
+        {
+            RelationsOfCouples.forEach(MarriedWithChildren.pairOf(persons.getFatherId(row),
+                    persons.getMotherId(row)), (relationId, tag, count) ->
+                    relations.add((int) relationId));
+        }
+    }
+
+    /**
+     * Registers the couple and child of the given person, the same way
+     * Cache.processChildrenAtMarriage(...) does.
+     *
+     * @param persons the persons
+     * @param row the row of the person
+     */
+    void register(PersonStore persons, int row)
+    {
+        update(persons, row, 1);
+    }
+
+    /**
+     * Unregisters the couple and child of the given person, which must have
+     * been registered.
+     *
+     * @param persons the persons
+     * @param row the row of the person
+     */
+    void unregister(PersonStore persons, int row)
+    {
+        update(persons, row, -1);
+    }
+
+    /**
+     * Gives the registrations of the given relations: per year the couple of
+     * the first row registering the relation, like MarriedWithChildren keeps.
+     * The rows are only looked up for relations registered to several
+     * couples, which only happens with bad data, in a single pass over the
+     * given persons. The registrations of other relations are given position
+     * 0, as their positions do not matter.
+     *
+     * @param relationIds id's of the relations
+     * @param persons the persons whose couples are registered
+     * @return the registrations, per relation id
+     */
+    Map<Integer, List<Registration>> registrationsOf(Set<Integer> relationIds,
+            PersonStore persons)
+    {
+        final Map<Integer, List<Registration>> registrations = new HashMap<>();
+        final Set<Integer> conflicting = new HashSet<>();
+
+        for (int relationId : relationIds)
+        {
+            final List<Registration> relation = new ArrayList<>(1);
+            Relations.forEach(relationId, (couple, year, rows) ->
+            {
+                if (!relation.isEmpty() && relation.get(0).Couple != couple)
+                {
+                    conflicting.add(relationId);
+                }
+
+                relation.add(new Registration(year, couple, 0));
+            });
+            registrations.put(relationId, relation);
+        }
+
+        if (conflicting.isEmpty())
+        {
+            return registrations;
+        }
+
+        // Find the first row of each year of the conflicting relations.
+        final Map<Long, Registration> firstRows = new HashMap<>();
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            final int relationId = persons.getRelationId(row);
+
+            if (conflicting.contains(relationId) && Cache.registersCouple(persons.getId(row),
+                    relationId, persons.getPartnerId(row), persons.getRelationType(row)))
+            {
+                final int year = YearlyCube.yearIndexOf(persons.getMarriageDate(row));
+                firstRows.putIfAbsent(((long) relationId << 32) | year, new Registration(year,
+                        MarriedWithChildren.pairOf(persons.getId(row), persons.getPartnerId(row)),
+                        row));
+            }
+        }
+
+        conflicting.forEach(relationId -> registrations.get(relationId).clear());
+        firstRows.forEach((key, registration) -> registrations.get((int) (key >>> 32))
+                .add(registration));
+        return registrations;
+    }
+
+    @Override
+    public Map<Integer, List<Integer>> of(long couple)
+    {
+        if (!Children.contains(couple))
+        {
+            return Collections.emptyMap();
+        }
+
+        final Map<Integer, List<Integer>> children = new HashMap<>();
+        Children.forEach(couple, (childId, year, rows) -> children.computeIfAbsent(
+                (int) childId, k -> new ArrayList<>(1)).add(year));
+        return children;
+    }
+
+    /**
+     * Adds the given number of rows to the registrations of the given person.
+     */
+    private void update(PersonStore persons, int row, int rows)
+    {
+        final int id = persons.getId(row);
+        final int year = YearlyCube.yearIndexOf(persons.getMarriageDate(row));
+
+        if (Cache.registersChild(id, persons.getFatherId(row), persons.getMotherId(row)))
+        {
+            Children.add(MarriedWithChildren.pairOf(persons.getFatherId(row),
+                    persons.getMotherId(row)), id, year, rows);
+        }
+
+        if (Cache.registersCouple(id, persons.getRelationId(row), persons.getPartnerId(row),
+                persons.getRelationType(row)))
+        {
+            final int relationId = persons.getRelationId(row);
+            final long couple = MarriedWithChildren.pairOf(id, persons.getPartnerId(row));
+            final int previous = Relations.add(relationId, couple, year, rows);
+
+            // Count the couple's relation once per year it is registered in.
+            if (previous == 0)
+            {
+                RelationsOfCouples.add(couple, relationId, 0, 1);
+            }
+            else if (previous + rows <= 0)
+            {
+                RelationsOfCouples.add(couple, relationId, 0, -1);
+            }
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.github.agadar.famtreestats;
 
-import com.github.agadar.famtreestats.domain.Tuple;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.github.agadar.famtreestats.domain.Average;
+import com.github.agadar.famtreestats.misc.IntLongHashMap;
+import com.github.agadar.famtreestats.misc.LongIntHashMap;
+import com.github.agadar.famtreestats.misc.LongIntPairHashSet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Helper for calculating the number of children per marriage.
@@ -13,11 +15,47 @@ import java.util.Map;
  */
 public final class MarriedWithChildren 
 {
-    /** Partners id's mapped to relation id's. */
-    private final Map<Integer, Tuple<Integer, Integer>> Couples = new HashMap<>();
+    /** Receives registered couples. */
+    public interface CoupleVisitor
+    {
+        /**
+         * Receives a registered couple.
+         * 
+         * @param relationId id of the relationship
+         * @param partner1Id id of one of the partners
+         * @param partner2Id id of the other partner
+         * @param position position of the row that registered the couple
+         */
+        void visit(int relationId, int partner1Id, int partner2Id, long position);
+    }
+    
+    /** Receives registered children. */
+    public interface ChildVisitor
+    {
+        /**
+         * Receives a registered child.
+         * 
+         * @param childId id of the child
+         * @param parent1Id id of one of the parents
+         * @param parent2Id id of the other parent
+         */
+        void visit(int childId, int parent1Id, int parent2Id);
+    }
     
-    /** Children id's mapped to parents' id's. */
-    private final Map<Tuple<Integer, Integer>, List<Integer>> ParentsWithChildren = new HashMap<>();
+    /** Value of Couples for relation id's that are not registered. */
+    private final static long NoCouple = Long.MAX_VALUE;
+    
+    /** Partners id's, packed by pairOf(...), mapped to relation id's. */
+    private final IntLongHashMap Couples = new IntLongHashMap();
+    
+    /** Positions of the rows that registered the couples, mapped to relation id's. */
+    private final IntLongHashMap Positions = new IntLongHashMap();
+    
+    /** Children id's paired with their parents' id's, packed by pairOf(...). */
+    private final LongIntPairHashSet ParentsWithChildren = new LongIntPairHashSet();
+    
+    /** Number of children mapped to parents' id's, packed by pairOf(...). */
+    private final LongIntHashMap ChildrenPerParents = new LongIntHashMap();
     
     /**
      * Registers a child id to two parent id's, but only if the child id isn't
@@ -29,55 +67,202 @@ public final class MarriedWithChildren
      */
     public void registerChild(int childId, int parent1Id, int parent2Id)
     {
-        final Tuple<Integer, Integer> parents = new Tuple(parent1Id, parent2Id);
-        List<Integer> children = ParentsWithChildren.get(parents);
+        final long parents = pairOf(parent1Id, parent2Id);
         
-        if (children == null)
-        {
-            children = new ArrayList<>();
-            children.add(childId);
-            ParentsWithChildren.put(parents, children);
-        }
-        else
+        if (ParentsWithChildren.add(parents, childId))
         {
-            if (!children.contains(childId))
-            {
-                children.add(childId);
-            }
+            ChildrenPerParents.add(parents, 1);
         }
     }
     
     /**
-     * Registers a married couple, but only if the relation id isn't already registered.
+     * Registers a married couple, but only if the relation id isn't already 
+     * registered. If it is already registered to another couple (which only
+     * happens with bad data), the couple of the first row in the file is kept.
+     * That is decided by the rows' positions rather than by the order of 
+     * registration, so that partial helpers can be merged in any order.
      * 
      * @param relationId id of the relationship
      * @param partner1Id id of one of the partners
      * @param partner2Id id of the other partner
+     * @param position position of the row registering the couple, increasing
+     * in file order
      */
-    public void registerCouple(int relationId, int partner1Id, int partner2Id)
+    public void registerCouple(int relationId, int partner1Id, int partner2Id, long position)
     {
-        if (!Couples.containsKey(relationId))
+        final long couple = pairOf(partner1Id, partner2Id);
+        final long existing = Couples.get(relationId, NoCouple);
+        
+        if (existing == NoCouple || compareRegistrations(position, couple, 
+                Positions.get(relationId, 0), existing) < 0)
         {
-            Couples.put(relationId, new Tuple(partner1Id, partner2Id));
+            Couples.put(relationId, couple);
+            Positions.put(relationId, position);
         }
     }
     
     /**
-     * Gives the average number of children per marriage.
+     * Merges the couples and children registered with the given helper into 
+     * this one, deduplicating them the same way registering does. Merging is
+     * associative and commutative, so partial helpers can be merged in any order.
      * 
-     * @return the average number of children per marriage
+     * @param other the helper to merge into this one
      */
-    public int averageNumberOfChildren()
+    public void merge(MarriedWithChildren other)
+    {
+        other.forEachCouple(this::registerCouple);
+        other.forEachChild(this::registerChild);
+    }
+    
+    /**
+     * Passes each registered couple to the given visitor.
+     * 
+     * @param visitor the visitor to pass the couples to
+     */
+    public void forEachCouple(CoupleVisitor visitor)
+    {
+        Couples.forEach((relationId, couple) -> visitor.visit(relationId, 
+                (int) (couple >>> 32), (int) couple, Positions.get(relationId, 0)));
+    }
+    
+    /**
+     * Passes each registered child to the given visitor.
+     * 
+     * @param visitor the visitor to pass the children to
+     */
+    public void forEachChild(ChildVisitor visitor)
+    {
+        ParentsWithChildren.forEach((parents, childId) -> visitor.visit(childId, 
+                (int) (parents >>> 32), (int) parents));
+    }
+    
+    /**
+     * Writes the registered couples and children to the given output, so that 
+     * they can be read again by readFrom(...), possibly in another JVM.
+     * 
+     * @param out the output to write to
+     * @throws IOException if writing failed
+     */
+    public void writeTo(DataOutput out) throws IOException
     {
-        int totalChildren = 0;
+        // Visitors cannot throw IOExceptions, so gather the id's first.
+        final int[] couples = new int[Couples.size() * 3];
+        final long[] positions = new long[Couples.size()];
+        final int[] children = new int[ParentsWithChildren.size() * 3];
+        final int[] index = { 0, 0 };
+        forEachCouple((relationId, partner1Id, partner2Id, position) -> 
+        {
+            positions[index[0] / 3] = position;
+            couples[index[0]++] = relationId;
+            couples[index[0]++] = partner1Id;
+            couples[index[0]++] = partner2Id;
+        });
+        forEachChild((childId, parent1Id, parent2Id) -> 
+        {
+            children[index[1]++] = childId;
+            children[index[1]++] = parent1Id;
+            children[index[1]++] = parent2Id;
+        });
+        out.writeInt(Couples.size());
         
-        for (Map.Entry<Integer, Tuple<Integer, Integer>> coupleEntry : Couples.entrySet())
+        for (int i = 0; i < positions.length; i++)
         {
-            final Tuple<Integer, Integer> couple = coupleEntry.getValue();
-            final List<Integer> children = ParentsWithChildren.getOrDefault(couple, new ArrayList<>());
-            totalChildren += children.size();
+            out.writeInt(couples[i * 3]);
+            out.writeInt(couples[i * 3 + 1]);
+            out.writeInt(couples[i * 3 + 2]);
+            out.writeLong(positions[i]);
         }
         
-        return Math.round((float) totalChildren / (float) Couples.size());
+        out.writeInt(ParentsWithChildren.size());
+        
+        for (int id : children)
+        {
+            out.writeInt(id);
+        }
+    }
+    
+    /**
+     * Reads couples and children written by writeTo(...).
+     * 
+     * @param in the input to read from
+     * @return a helper holding the read couples and children
+     * @throws IOException if reading failed
+     */
+    public static MarriedWithChildren readFrom(DataInput in) throws IOException
+    {
+        final MarriedWithChildren mwc = new MarriedWithChildren();
+        final int couples = in.readInt();
+        
+        for (int i = 0; i < couples; i++)
+        {
+            mwc.registerCouple(in.readInt(), in.readInt(), in.readInt(), in.readLong());
+        }
+        
+        final int children = in.readInt();
+        
+        for (int i = 0; i < children; i++)
+        {
+            mwc.registerChild(in.readInt(), in.readInt(), in.readInt());
+        }
+        
+        return mwc;
+    }
+    
+    /**
+     * Gives the average number of children per marriage.
+     * 
+     * @return the average number of children per marriage
+     */
+    public int averageNumberOfChildren()
+    {
+        return numberOfChildren().rounded();
+    }
+    
+    /**
+     * Gives the number of children per marriage, exactly.
+     * 
+     * @return the number of children of the marriages, and of marriages
+     */
+    public Average numberOfChildren()
+    {
+        final long[] totalChildren = { 0 };
+        Couples.forEach((relationId, couple) -> 
+                totalChildren[0] += ChildrenPerParents.get(couple, 0));
+        return new Average(totalChildren[0], Couples.size());
+    }
+    
+    /**
+     * Packs two id's into a single key that does not depend on their order,
+     * the lowest id in the high half. MarriedWithChildrenIndex and
+     * MarriageRegistrations key couples the same way.
+     * 
+     * @param id1 the one id
+     * @param id2 the other id
+     * @return the packed id's
+     */
+    static long pairOf(int id1, int id2)
+    {
+        return ((long) Math.min(id1, id2) << 32) | (Math.max(id1, id2) & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Compares two registrations of a relation by the positions of their 
+     * rows, then by their couples' lowest partner id's, then by their highest.
+     * Of a relation registered to several couples, the lowest registration is 
+     * kept, here and in MarriedWithChildrenIndex.
+     * 
+     * @param position1 position of the row of the first registration
+     * @param couple1 couple of the first registration, packed by pairOf(...)
+     * @param position2 position of the row of the second registration
+     * @param couple2 couple of the second registration, packed by pairOf(...)
+     * @return negative, zero or positive if the first registration is lower 
+     * than, equal to or higher than the second
+     */
+    static int compareRegistrations(long position1, long couple1, long position2, long couple2)
+    {
+        int result = Long.compare(position1, position2);
+        result = result != 0 ? result 
+                : Integer.compare((int) (couple1 >>> 32), (int) (couple2 >>> 32));
+        return result != 0 ? result : Integer.compare((int) couple1, (int) couple2);
     }
 }
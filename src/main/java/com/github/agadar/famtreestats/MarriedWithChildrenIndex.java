@@ -0,0 +1,393 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.Average;
+import com.github.agadar.famtreestats.misc.LongIntHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact, mergeable form of the number of children per marriage of yearly
+ * MarriedWithChildren helpers. Merging the helpers of a period's years and
+ * averaging their children gives the same as numberOfChildren(...) of
+ * this index, but the index does not need to copy any couple or child.
+ * <p>
+ * A couple and a child only count towards a period if both were registered in
+ * one of the period's years. Almost every relation and child is registered in
+ * a single year, so for those it suffices to count the children per pair of
+ * registration years. The rare relations and children registered in several
+ * years are kept apart and resolved per period.
+ * <p>
+ * The index is the sum of what each relation adds to it, so a relation whose
+ * registrations or children changed can be removed and added again without
+ * rebuilding the index.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class MarriedWithChildrenIndex
+{
+    /** Gives the children of couples. */
+    interface Children
+    {
+        /**
+         * Gives the children of the given couple.
+         *
+         * @param couple the partner id's of the couple, packed by
+         * MarriedWithChildren.pairOf(...)
+         * @return the distinct registration years per child id, empty if none
+         */
+        Map<Integer, List<Integer>> of(long couple);
+    }
+
+    /** Registration of a relation to a couple in a year. */
+    final static class Registration
+    {
+        /** Registration year. */
+        final int Year;
+
+        /** Registered couple, packed by MarriedWithChildren.pairOf(...). */
+        final long Couple;
+
+        /** Position of the first row registering the couple in the year. */
+        final long Position;
+
+        Registration(int year, long couple, long position)
+        {
+            this.Year = year;
+            this.Couple = couple;
+            this.Position = position;
+        }
+    }
+
+    /** Relations registered in a single year, counted per year. */
+    private final int[] Couples;
+
+    /** Number of children per years of couple and child registration, packed. */
+    private final LongIntHashMap YearPairChildren = new LongIntHashMap();
+
+    /** Children registered in several years, per relation id. */
+    private final Map<Integer, ScatteredChild[]> ScatteredChildren = new HashMap<>();
+
+    /** Relations registered in several years, per relation id. */
+    private final Map<Integer, ScatteredRelation> ScatteredRelations = new HashMap<>();
+
+    private MarriedWithChildrenIndex(int years)
+    {
+        this.Couples = new int[years];
+    }
+
+    /**
+     * Creates the index of the given yearly helpers.
+     *
+     * @param years the helpers, indexed by year, with null for years without
+     * helper
+     * @return the index
+     */
+    static MarriedWithChildrenIndex of(MarriedWithChildren[] years)
+    {
+        // Gather the registrations of each relation and child over all years.
+        final Map<Integer, List<Registration>> relations = new HashMap<>();
+        final Map<Long, Map<Integer, List<Integer>>> children = new HashMap<>();
+
+        for (int year = 0; year < years.length; year++)
+        {
+            if (years[year] == null)
+            {
+                continue;
+            }
+
+            final int registrationYear = year;
+            years[year].forEachCouple((relationId, partner1Id, partner2Id, position) ->
+                    relations.computeIfAbsent(relationId, k -> new ArrayList<>(1))
+                            .add(new Registration(registrationYear,
+                                    MarriedWithChildren.pairOf(partner1Id, partner2Id),
+                                    position)));
+            years[year].forEachChild((childId, parent1Id, parent2Id) ->
+                    children.computeIfAbsent(MarriedWithChildren.pairOf(parent1Id, parent2Id),
+                            k -> new HashMap<>())
+                            .computeIfAbsent(childId, k -> new ArrayList<>(1))
+                            .add(registrationYear));
+        }
+
+        final MarriedWithChildrenIndex index = new MarriedWithChildrenIndex(years.length);
+        final Children childrenOf = couple -> children.getOrDefault(couple,
+                Collections.emptyMap());
+        relations.forEach((relationId, registrations) ->
+                index.add(relationId, registrations, childrenOf));
+        return index;
+    }
+
+    /**
+     * Adds a relation and the children of its couples to this index.
+     *
+     * @param relationId id of the relation
+     * @param registrations the relation's registrations, at most one per year
+     * @param children gives the children of the relation's couples
+     */
+    void add(int relationId, List<Registration> registrations, Children children)
+    {
+        // A relation is registered at most once per year.
+        if (registrations.size() > 1)
+        {
+            ScatteredRelations.put(relationId, new ScatteredRelation(registrations, children));
+            return;
+        }
+
+        if (registrations.isEmpty())
+        {
+            return;
+        }
+
+        final int coupleYear = registrations.get(0).Year;
+        final List<ScatteredChild> scattered = new ArrayList<>();
+        Couples[coupleYear]++;
+        children.of(registrations.get(0).Couple).values().forEach(childYears ->
+        {
+            if (childYears.size() == 1)
+            {
+                YearPairChildren.add(((long) coupleYear << 32) | childYears.get(0), 1);
+            }
+            else
+            {
+                scattered.add(new ScatteredChild(coupleYear, toArray(childYears)));
+            }
+        });
+
+        if (!scattered.isEmpty())
+        {
+            ScatteredChildren.put(relationId,
+                    scattered.toArray(new ScatteredChild[scattered.size()]));
+        }
+    }
+
+    /**
+     * Removes a relation and the children of its couples from this index. The
+     * registrations and children must be the same as when it was added.
+     *
+     * @param relationId id of the relation
+     * @param registrations the relation's registrations, as given to add(...)
+     * @param children gives the children of the relation's couples, as given
+     * to add(...)
+     */
+    void remove(int relationId, List<Registration> registrations, Children children)
+    {
+        if (registrations.size() > 1)
+        {
+            ScatteredRelations.remove(relationId);
+            return;
+        }
+
+        if (registrations.isEmpty())
+        {
+            return;
+        }
+
+        final int coupleYear = registrations.get(0).Year;
+        Couples[coupleYear]--;
+        ScatteredChildren.remove(relationId);
+        children.of(registrations.get(0).Couple).values().forEach(childYears ->
+        {
+            if (childYears.size() == 1)
+            {
+                YearPairChildren.add(((long) coupleYear << 32) | childYears.get(0), -1);
+            }
+        });
+    }
+
+    /**
+     * Gives the number of children per marriage of each period, the periods
+     * being given as the period index of each year.
+     *
+     * @param periodOfYear period index per year, or -1 if the year is in no period
+     * @param periods the number of periods
+     * @return the number of children and of marriages, per period
+     */
+    Average[] numberOfChildren(int[] periodOfYear, int periods)
+    {
+        final int[] couples = new int[periods];
+        final long[] children = new long[periods];
+
+        for (int year = 0; year < Couples.length; year++)
+        {
+            if (periodOfYear[year] >= 0)
+            {
+                couples[periodOfYear[year]] += Couples[year];
+            }
+        }
+
+        YearPairChildren.forEach((years, count) ->
+        {
+            final int period = periodOfYear[(int) (years >>> 32)];
+
+            if (period >= 0 && period == periodOfYear[(int) years])
+            {
+                children[period] += count;
+            }
+        });
+
+        for (ScatteredChild[] relationChildren : ScatteredChildren.values())
+        {
+            for (ScatteredChild child : relationChildren)
+            {
+                final int period = periodOfYear[child.CoupleYear];
+
+                if (period >= 0 && isInPeriod(child.Years, periodOfYear, period))
+                {
+                    children[period]++;
+                }
+            }
+        }
+
+        for (ScatteredRelation relation : ScatteredRelations.values())
+        {
+            relation.count(periodOfYear, couples, children);
+        }
+
+        final Average[] averages = new Average[periods];
+
+        for (int period = 0; period < periods; period++)
+        {
+            averages[period] = new Average(children[period], couples[period]);
+        }
+
+        return averages;
+    }
+
+    /**
+     * Returns whether any of the given years falls in the given period.
+     */
+    private static boolean isInPeriod(int[] years, int[] periodOfYear, int period)
+    {
+        for (int year : years)
+        {
+            if (periodOfYear[year] == period)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int[] toArray(List<Integer> values)
+    {
+        final int[] array = new int[values.size()];
+
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = values.get(i);
+        }
+
+        return array;
+    }
+
+    /**
+     * A child registered in several years, of a relation registered in one.
+     */
+    private final static class ScatteredChild
+    {
+        /** Registration year of the couple. */
+        private final int CoupleYear;
+
+        /** Registration years of the child. */
+        private final int[] Years;
+
+        ScatteredChild(int coupleYear, int[] years)
+        {
+            this.CoupleYear = coupleYear;
+            this.Years = years;
+        }
+    }
+
+    /**
+     * A relation registered in several years, possibly to different couples,
+     * with the registration years of the children of each of its couples.
+     */
+    private final static class ScatteredRelation
+    {
+        /** Registration years. */
+        private final int[] Years;
+
+        /** Registered couple per registration year. */
+        private final long[] Couples;
+
+        /** Position of the registration per registration year. */
+        private final long[] Positions;
+
+        /** Registration years per child, per registered couple. */
+        private final int[][][] ChildYears;
+
+        ScatteredRelation(List<Registration> registrations, Children children)
+        {
+            this.Years = new int[registrations.size()];
+            this.Couples = new long[registrations.size()];
+            this.Positions = new long[registrations.size()];
+            this.ChildYears = new int[registrations.size()][][];
+
+            for (int i = 0; i < Years.length; i++)
+            {
+                final Registration registration = registrations.get(i);
+                Years[i] = registration.Year;
+                Couples[i] = registration.Couple;
+                Positions[i] = registration.Position;
+                final Map<Integer, List<Integer>> coupleChildren = children.of(Couples[i]);
+                ChildYears[i] = new int[coupleChildren.size()][];
+                int j = 0;
+
+                for (List<Integer> childYears : coupleChildren.values())
+                {
+                    ChildYears[i][j++] = toArray(childYears);
+                }
+            }
+        }
+
+        /**
+         * Counts this relation and its children towards each period it is
+         * registered in, using the lowest registration in the period, the
+         * same as MarriedWithChildren keeps.
+         */
+        void count(int[] periodOfYear, int[] couples, long[] children)
+        {
+            for (int i = 0; i < Years.length; i++)
+            {
+                final int period = periodOfYear[Years[i]];
+                boolean counted = period < 0;
+                int lowest = i;
+
+                for (int j = 0; j < Years.length && !counted; j++)
+                {
+                    if (periodOfYear[Years[j]] != period)
+                    {
+                        continue;
+                    }
+
+                    // Only count the period once, at its first registration.
+                    counted = j < i;
+
+                    if (MarriedWithChildren.compareRegistrations(Positions[j], Couples[j],
+                            Positions[lowest], Couples[lowest]) < 0)
+                    {
+                        lowest = j;
+                    }
+                }
+
+                if (counted)
+                {
+                    continue;
+                }
+
+                couples[period]++;
+
+                for (int[] childYears : ChildYears[lowest])
+                {
+                    if (isInPeriod(childYears, periodOfYear, period))
+                    {
+                        children[period]++;
+                    }
+                }
+            }
+        }
+    }
+}
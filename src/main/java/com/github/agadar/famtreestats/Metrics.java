@@ -0,0 +1,238 @@
+package com.github.agadar.famtreestats;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timers and counters of the phases of loading a persons CSV-file and
+ * calculating statistics from it, which may be read from another thread.
+ * Timers add up the time spent in a phase over all threads, so phases run in
+ * parallel may take longer in total than the wall time they took. Disabled
+ * metrics record nothing, and cost no more than a check per phase.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class Metrics
+{
+    /** Timed phases. */
+    public enum Phase
+    {
+        /** Loading the persons, from the file or its snapshot. */
+        Read,
+        /** Splitting the file into ranges to parse in parallel. */
+        Split,
+        /** Parsing the ranges, over all threads. */
+        Parse,
+        /** Reading and writing snapshots. */
+        Snapshot,
+        /** Aggregating the persons per year. */
+        Aggregate,
+        /** Updating the aggregates to a changed file. */
+        Update,
+        /** Calculating statistics from the aggregates. */
+        Calculate,
+        /** Building the pedigree graph and calculating its metrics. */
+        Pedigree
+    }
+
+    /** Counted quantities. */
+    public enum Counter
+    {
+        /** Rows loaded. */
+        Rows,
+        /** Values that were present, but could not be parsed. */
+        MalformedValues,
+        /** Dates that were present, but could not be parsed. */
+        MalformedDates,
+        /** Dates of the aggregated persons that are unknown, so in no year. */
+        UnknownDates,
+        /** Loads served from a snapshot instead of the file. */
+        SnapshotHits,
+        /** Persons changed, removed or added by updates. */
+        ChangedPersons
+    }
+
+    private final static Phase[] Phases = Phase.values();
+    private final static Counter[] Counters = Counter.values();
+
+    /** Metrics that record nothing. */
+    public final static Metrics Disabled = new Metrics(false);
+
+    /** Whether these metrics record anything. */
+    private final boolean Enabled;
+
+    /** Nanoseconds spent per phase, indexed by Phase ordinal. */
+    private final AtomicLongArray Nanos = new AtomicLongArray(Phases.length);
+
+    /** Number of times each phase was timed, indexed by Phase ordinal. */
+    private final AtomicLongArray Calls = new AtomicLongArray(Phases.length);
+
+    /** Value per counter, indexed by Counter ordinal. */
+    private final AtomicLongArray Values = new AtomicLongArray(Counters.length);
+
+    /**
+     * Instantiates new, enabled metrics.
+     */
+    public Metrics()
+    {
+        this(true);
+    }
+
+    private Metrics(boolean enabled)
+    {
+        this.Enabled = enabled;
+    }
+
+    /**
+     * Returns whether these metrics record anything.
+     *
+     * @return whether these metrics are enabled
+     */
+    public boolean isEnabled()
+    {
+        return Enabled;
+    }
+
+    /**
+     * Gives the time spent in the given phase.
+     *
+     * @param phase the phase
+     * @return the time spent, in nanoseconds
+     */
+    public long getNanos(Phase phase)
+    {
+        return Nanos.get(phase.ordinal());
+    }
+
+    /**
+     * Gives the number of times the given phase was timed.
+     *
+     * @param phase the phase
+     * @return the number of times
+     */
+    public long getCalls(Phase phase)
+    {
+        return Calls.get(phase.ordinal());
+    }
+
+    /**
+     * Gives the value of the given counter.
+     *
+     * @param counter the counter
+     * @return the value
+     */
+    public long get(Counter counter)
+    {
+        return Values.get(counter.ordinal());
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return the start time, to pass to stop(...)
+     */
+    long start()
+    {
+        return Enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing the given phase, adding the time since the given start.
+     *
+     * @param phase the phase
+     * @param start the start time, as given by start()
+     */
+    void stop(Phase phase, long start)
+    {
+        if (Enabled)
+        {
+            Nanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+            Calls.incrementAndGet(phase.ordinal());
+        }
+    }
+
+    /**
+     * Adds the given amount to the given counter.
+     *
+     * @param counter the counter
+     * @param amount the amount to add
+     */
+    void add(Counter counter, long amount)
+    {
+        if (Enabled)
+        {
+            Values.addAndGet(counter.ordinal(), amount);
+        }
+    }
+
+    /**
+     * Sets the given counter to the given value.
+     *
+     * @param counter the counter
+     * @param value the value
+     */
+    void set(Counter counter, long value)
+    {
+        if (Enabled)
+        {
+            Values.set(counter.ordinal(), value);
+        }
+    }
+
+    /**
+     * Gives these metrics as a JSON object, with the calls and milliseconds
+     * per phase under "phases" and the values under "counters".
+     *
+     * @return the JSON object
+     */
+    public String toJson()
+    {
+        final StringBuilder builder = new StringBuilder("{\"phases\":{");
+
+        for (Phase phase : Phases)
+        {
+            builder.append(phase.ordinal() > 0 ? "," : "").append('"').append(phase)
+                    .append("\":{\"calls\":").append(getCalls(phase)).append(",\"millis\":")
+                    .append(String.format(Locale.ROOT, "%.3f", getNanos(phase) / 1e6))
+                    .append('}');
+        }
+
+        builder.append("},\"counters\":{");
+
+        for (Counter counter : Counters)
+        {
+            builder.append(counter.ordinal() > 0 ? "," : "").append('"').append(counter)
+                    .append("\":").append(get(counter));
+        }
+
+        return builder.append("}}").toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        if (!Enabled)
+        {
+            return "Metrics disabled";
+        }
+
+        final StringBuilder builder = new StringBuilder();
+
+        for (Phase phase : Phases)
+        {
+            if (getCalls(phase) > 0)
+            {
+                builder.append(builder.length() > 0 ? ", " : "").append(phase).append(' ')
+                        .append(String.format("%,d ms", getNanos(phase) / 1000000));
+            }
+        }
+
+        for (Counter counter : Counters)
+        {
+            builder.append(builder.length() > 0 ? ", " : "").append(counter).append(' ')
+                    .append(String.format("%,d", get(counter)));
+        }
+
+        return builder.toString();
+    }
+}
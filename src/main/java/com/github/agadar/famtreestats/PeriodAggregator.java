@@ -0,0 +1,270 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.Cache;
+import com.github.agadar.famtreestats.domain.PeriodYears;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.domain.Statistics;
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+import com.github.agadar.famtreestats.misc.DateDecoder;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates persons into per-period caches. Only the caches are kept, never
+ * the persons themselves, so persons can be pushed straight from a reader.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class PeriodAggregator implements PersonHandler
+{
+    /** Caches mapped to their periods. */
+    private final Map<PeriodYears, Cache> CacheYears = new TreeMap<>();
+
+    /** Cache for persons that do not fall in any period. */
+    private final Cache DefaultCache;
+
+    /** Lower bound. */
+    private final int YearFrom;
+
+    /** Upper bound. */
+    private final int YearTo;
+
+    /** The interval (in years). */
+    private final int Interval;
+
+    /**
+     * Instantiates a new aggregator.
+     *
+     * @param yearFrom lower bound
+     * @param yearTo upper bound
+     * @param interval the interval (in years)
+     * @param defaultPeriod period of the cache for persons that do not fall in 
+     * any period, may be null
+     */
+    public PeriodAggregator(int yearFrom, int yearTo, int interval, PeriodYears defaultPeriod)
+    {
+        this.YearFrom = yearFrom;
+        this.YearTo = yearTo;
+        this.Interval = interval;
+        this.DefaultCache = new Cache(defaultPeriod);
+    }
+    
+    /**
+     * Instantiates a new, empty aggregator with the same settings as the given one.
+     * 
+     * @param other the aggregator to copy the settings of
+     */
+    public PeriodAggregator(PeriodAggregator other)
+    {
+        this(other.YearFrom, other.YearTo, other.Interval, other.DefaultCache.Period);
+    }
+
+    @Override
+    public void handle(long position, int id, int fatherId, int motherId, int relationId,
+            int partnerId, RelationType relationType, Sex sex, int marriageDate, int birthDate,
+            int deathDate)
+    {
+        process(getOrCreateCache(marriageDate), getOrCreateCache(deathDate), 
+                getOrCreateCache(birthDate), position, id, fatherId, motherId, relationId, 
+                partnerId, relationType, sex, marriageDate, birthDate, deathDate);
+    }
+    
+    /**
+     * Processes a person's data into the caches of the periods its marriage,
+     * death and birth dates fall in. Null caches are skipped.
+     * 
+     * @param marriageCache cache of the marriage date's period, or null
+     * @param deathCache cache of the death date's period, or null
+     * @param birthCache cache of the birth date's period, or null
+     * @param position position of the person's row, see PersonHandler
+     * @param id person's id
+     * @param fatherId person's father's id
+     * @param motherId person's mother's id
+     * @param relationId person's relation id
+     * @param partnerId person's partner's id
+     * @param relationType type of the relation
+     * @param sex person's sex
+     * @param marriageDate person's marriage date, as epoch day
+     * @param birthDate person's birth date, as epoch day
+     * @param deathDate person's death date, as epoch day
+     */
+    static void process(Cache marriageCache, Cache deathCache, Cache birthCache, 
+            long position, int id, int fatherId, int motherId, int relationId, int partnerId,
+            RelationType relationType, Sex sex, int marriageDate, int birthDate, int deathDate)
+    {
+        // Process avg children at marriate and avg age at marriage.
+        if (marriageCache != null)
+        {
+            marriageCache.processChildrenAtMarriage(position, id, fatherId, motherId, 
+                    relationId, partnerId, relationType);
+            marriageCache.processAgeAtMarriage(birthDate, marriageDate, relationType, sex);
+        }
+
+        // Process avg age at death and number of deaths.
+        if (deathCache != null)
+        {
+            deathCache.processAgeAtDeath(birthDate, deathDate, sex);
+            deathCache.processDeath(deathDate);
+        }
+
+        // Process births.
+        if (birthCache != null)
+        {
+            birthCache.processBirth(birthDate);
+        }
+    }
+
+    /**
+     * Merges the caches of the given aggregator into this one, as if the 
+     * persons handled by the given aggregator had been handled by this one. 
+     * Both aggregators must have the same settings. Merging is associative and
+     * commutative, so aggregators of separate threads, file shards or JVMs
+     * can be merged in any order.
+     * 
+     * @param other the aggregator to merge into this one
+     */
+    public void merge(PeriodAggregator other)
+    {
+        other.CacheYears.forEach((period, cache) -> 
+        {
+            final Cache existing = CacheYears.get(period);
+            
+            if (existing == null)
+            {
+                CacheYears.put(period, cache);
+            }
+            else
+            {
+                existing.merge(cache);
+            }
+        });
+        DefaultCache.merge(other.DefaultCache);
+    }
+    
+    /**
+     * Writes this aggregator's settings and caches to the given output, so 
+     * that it can be read again by readFrom(...), possibly in another JVM.
+     * 
+     * @param out the output to write to
+     * @throws IOException if writing failed
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(YearFrom);
+        out.writeInt(YearTo);
+        out.writeInt(Interval);
+        DefaultCache.writeTo(out);
+        out.writeInt(CacheYears.size());
+        
+        for (Cache cache : CacheYears.values())
+        {
+            cache.writeTo(out);
+        }
+    }
+    
+    /**
+     * Reads an aggregator written by writeTo(...).
+     * 
+     * @param in the input to read from
+     * @return the read aggregator
+     * @throws IOException if reading failed
+     * @throws IllegalArgumentException if the input holds caches written in
+     * another version of their format, see Cache.readFrom(...)
+     */
+    public static PeriodAggregator readFrom(DataInput in) throws IOException
+    {
+        final int yearFrom = in.readInt();
+        final int yearTo = in.readInt();
+        final int interval = in.readInt();
+        final Cache defaultCache = Cache.readFrom(in);
+        final PeriodAggregator aggregator = new PeriodAggregator(yearFrom, yearTo, interval, 
+                defaultCache.Period);
+        aggregator.DefaultCache.merge(defaultCache);
+        final int caches = in.readInt();
+        
+        for (int i = 0; i < caches; i++)
+        {
+            final Cache cache = Cache.readFrom(in);
+            aggregator.CacheYears.put(cache.Period, cache);
+        }
+        
+        return aggregator;
+    }
+    
+    /**
+     * Calculates the statistics of the per-period caches, ordered by period.
+     *
+     * @return the calculated statistics
+     */
+    public List<Statistics> getStatistics()
+    {
+        final List<Statistics> stats = new ArrayList<>();
+        CacheYears.forEach((k, v) -> stats.add(v.calculateStatistics()));
+        return stats;
+    }
+
+    /**
+     * Calculates the statistics of the default cache.
+     *
+     * @return the calculated statistics
+     */
+    public Statistics getDefaultStatistics()
+    {
+        return DefaultCache.calculateStatistics();
+    }
+
+    /**
+     * Gets or creates the cache of the period the given date falls in. If the
+     * date does not fall in any period, the default cache is returned.
+     *
+     * @param date the date, as epoch day
+     * @return the retrieved/created cache
+     */
+    private Cache getOrCreateCache(int date)
+    {
+        // If the given date is unknown, just return default cache.
+        if (date == PersonStore.NoDate)
+        {
+            return DefaultCache;
+        }
+
+        final int year = DateDecoder.yearOf(date);
+
+        // Just return the default if year < yearFrom or year > yearTo or
+        // yearFrom and yearTo aren't given.
+        if (year < YearFrom || year > YearTo || YearFrom < 1 || YearTo < 1)
+        {
+            return DefaultCache;
+        }
+
+        // Set the period bounds to the given yearFrom and yearTo.
+        int periodStart = YearFrom;
+        int periodEnd = YearTo;
+
+        // If interval is given, calculate new values for periodStart and periodEnd.
+        if (Interval > 0)
+        {
+            periodStart = year - ((year - YearFrom) % Interval);
+            periodEnd = Math.min(periodStart + Interval - 1, YearTo);
+        }
+
+        // Instantiate a period, attempt to retrieve existing cache.
+        final PeriodYears period = new PeriodYears(periodStart, periodEnd);
+        Cache cache = CacheYears.get(period);
+
+        // If no cache exists mapped to the period, create and add it.
+        if (cache == null)
+        {
+            cache = new Cache(period);
+            CacheYears.put(period, cache);
+        }
+
+        return cache;   // Return retrieved/created cache.
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.PeriodYears;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordered, non-overlapping periods with a look-up array indexed by year, so
+ * that finding the period a year falls in needs no PeriodYears instance or map
+ * look-up. The array ends at YearlyCube.LastYear, as no date falls in a later
+ * year, so periods may end at any year without the array growing with them.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class PeriodTable
+{
+    /** Year mapped to index 0 of the look-up array. */
+    private final int FirstYear;
+
+    /** Period index per year, or -1 if the year is in no period. */
+    private final int[] Slots;
+
+    /** The periods, ordered. */
+    private final PeriodYears[] Periods;
+
+    private PeriodTable(int firstYear, int[] slots, PeriodYears[] periods)
+    {
+        this.FirstYear = firstYear;
+        this.Slots = slots;
+        this.Periods = periods;
+    }
+
+    /**
+     * Creates a table of the periods calculate(yearFrom, yearTo, interval)
+     * uses: consecutive periods of interval years starting at yearFrom, the
+     * last one ending at yearTo. If interval is 0 or less, there is a single
+     * period from yearFrom to yearTo. If yearFrom or yearTo is below 1, there
+     * are no periods. Periods starting after YearlyCube.LastYear are left out,
+     * as no date falls in them.
+     *
+     * @param yearFrom lower bound
+     * @param yearTo upper bound
+     * @param interval the interval (in years)
+     * @return the table
+     */
+    public static PeriodTable ofInterval(int yearFrom, int yearTo, int interval)
+    {
+        final int lastYear = Math.min(yearTo, YearlyCube.LastYear);
+
+        if (yearFrom < 1 || lastYear < yearFrom)
+        {
+            return new PeriodTable(0, new int[0], new PeriodYears[0]);
+        }
+
+        final int step = interval > 0 ? interval : yearTo - yearFrom + 1;
+        final int[] slots = new int[lastYear - yearFrom + 1];
+        final List<PeriodYears> periods = new ArrayList<>();
+
+        for (int start = yearFrom; start <= lastYear; start += step)
+        {
+            final int end = (int) Math.min((long) start + step - 1, yearTo);
+            Arrays.fill(slots, start - yearFrom, Math.min(end, lastYear) - yearFrom + 1,
+                    periods.size());
+            periods.add(new PeriodYears(start, end));
+
+            if (end >= lastYear)
+            {
+                break;
+            }
+        }
+
+        return new PeriodTable(yearFrom, slots, periods.toArray(new PeriodYears[periods.size()]));
+    }
+
+    /**
+     * Creates a table of the given periods.
+     *
+     * @param periods the periods, which may not overlap
+     * @return the table
+     * @throws IllegalArgumentException if periods overlap or are invalid
+     */
+    public static PeriodTable ofPeriods(List<PeriodYears> periods)
+    {
+        final PeriodYears[] sorted = periods.toArray(new PeriodYears[periods.size()]);
+        Arrays.sort(sorted);
+
+        if (sorted.length == 0)
+        {
+            return new PeriodTable(0, new int[0], sorted);
+        }
+
+        final int firstYear = sorted[0].YearFrom;
+        int lastYear = firstYear;
+
+        for (int i = 0; i < sorted.length; i++)
+        {
+            if (sorted[i].YearFrom < 1 || sorted[i].YearTo < sorted[i].YearFrom)
+            {
+                throw new IllegalArgumentException("Invalid period " + sorted[i].YearFrom
+                        + "-" + sorted[i].YearTo);
+            }
+
+            if (i > 0 && sorted[i].YearFrom <= sorted[i - 1].YearTo)
+            {
+                throw new IllegalArgumentException("Overlapping periods " + sorted[i - 1].YearFrom
+                        + "-" + sorted[i - 1].YearTo + " and " + sorted[i].YearFrom + "-"
+                        + sorted[i].YearTo);
+            }
+
+            lastYear = Math.max(lastYear, sorted[i].YearTo);
+        }
+
+        final int[] slots = new int[Math.max(0, Math.min(lastYear, YearlyCube.LastYear)
+                - firstYear + 1)];
+        Arrays.fill(slots, -1);
+
+        for (int i = 0; i < sorted.length && sorted[i].YearFrom <= YearlyCube.LastYear; i++)
+        {
+            Arrays.fill(slots, sorted[i].YearFrom - firstYear,
+                    Math.min(sorted[i].YearTo, YearlyCube.LastYear) - firstYear + 1, i);
+        }
+
+        return new PeriodTable(firstYear, slots, sorted);
+    }
+
+    /**
+     * Gives the number of periods.
+     *
+     * @return the number of periods
+     */
+    public int size()
+    {
+        return Periods.length;
+    }
+
+    /**
+     * Gives the period at the given index.
+     *
+     * @param index the index, from 0 to size() (exclusive)
+     * @return the period
+     */
+    public PeriodYears getPeriod(int index)
+    {
+        return Periods[index];
+    }
+
+    /**
+     * Gives the index of the period the given year falls in.
+     *
+     * @param year the year
+     * @return the index of the period, or -1 if the year is in no period
+     */
+    public int indexOf(int year)
+    {
+        final int index = year - FirstYear;
+        return index < 0 || index >= Slots.length ? -1 : Slots[index];
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+
+/**
+ * Receives the persons read from a persons CSV-file, one row at a time.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public interface PersonHandler
+{
+    /**
+     * Handles a single person.
+     *
+     * @param position position of the person's row, increasing in file order:
+     * its byte offset when read from a file, or its row in a PersonStore
+     * @param id person's id
+     * @param fatherId person's father's id
+     * @param motherId person's mother's id
+     * @param relationId person's relation id
+     * @param partnerId person's partner's id
+     * @param relationType type of the relation
+     * @param sex person's sex
+     * @param marriageDate person's marriage date, as epoch day
+     * @param birthDate person's birth date, as epoch day
+     * @param deathDate person's death date, as epoch day
+     */
+    void handle(long position, int id, int fatherId, int motherId, int relationId,
+            int partnerId, RelationType relationType, Sex sex, int marriageDate, int birthDate,
+            int deathDate);
+}
@@ -0,0 +1,254 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.PersonStore;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the persons parsed from a persons CSV-file, kept next to
+ * that file, so that reloading an unchanged file skips parsing it.
+ * <p>
+ * A snapshot holds the size, last modified time and CRC-32 of the CSV-file it
+ * was made from, then the persons as written by PersonStore.writeTo(...), then
+ * the CRC-32 of everything before it. A snapshot is only used if it was made
+ * from the CSV-file as it is now and its own checksum is right; otherwise the
+ * CSV-file is parsed and the snapshot replaced.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class PersonStoreSnapshot
+{
+    /** Marks a snapshot file: "FTSS". */
+    private final static int Magic = 0x46545353;
+
+    /** Version of the format, to be raised whenever it changes. */
+    private final static int Version = 2;
+
+    /** Extension appended to the name of a CSV-file to get its snapshot's. */
+    private final static String Extension = ".snapshot";
+
+    /** Size of the key preceding the persons. */
+    private final static int KeyBytes = 2 * Integer.BYTES + 3 * Long.BYTES;
+
+    /** Size of the chunks in which CSV-files are mapped for hashing. */
+    private final static int HashChunkBytes = 1 << 30;
+
+    private final static Logger Log = Logger.getLogger(PersonStoreSnapshot.class.getName());
+
+    /** Size of the CSV-file, as when the key was made. */
+    private final long Size;
+
+    /** Last modified time of the CSV-file, as when the key was made. */
+    private final long LastModified;
+
+    private PersonStoreSnapshot(long size, long lastModified)
+    {
+        this.Size = size;
+        this.LastModified = lastModified;
+    }
+
+    /**
+     * Takes the size and last modified time of the given CSV-file, to be
+     * compared by write(...) before the snapshot is written, so that a file
+     * changed while it was parsed is not written a snapshot of.
+     *
+     * @param csv the CSV-file
+     * @return the file's size and last modified time
+     */
+    static PersonStoreSnapshot keyOf(File csv)
+    {
+        return new PersonStoreSnapshot(csv.length(), csv.lastModified());
+    }
+
+    /**
+     * Reads the persons from the snapshot of the given CSV-file.
+     *
+     * @param csv the CSV-file
+     * @return the persons, or null if there is no usable snapshot
+     */
+    static PersonStore read(File csv)
+    {
+        final File file = snapshotOf(csv);
+
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if (channel.size() < KeyBytes + Integer.BYTES || channel.size() > Integer.MAX_VALUE)
+            {
+                Log.log(Level.WARNING, "Ignoring corrupt snapshot {0}", file);
+                return null;
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+
+            if (buffer.getInt() != Magic || buffer.getInt() != Version
+                    || buffer.getLong() != csv.length() || buffer.getLong() != csv.lastModified()
+                    || buffer.getLong() != hashOf(csv))
+            {
+                Log.log(Level.INFO, "Ignoring stale snapshot {0}", file);
+                return null;
+            }
+
+            final int end = buffer.limit() - Integer.BYTES;
+            final CRC32 crc = new CRC32();
+            final ByteBuffer content = buffer.duplicate();
+            content.position(0).limit(end);
+            crc.update(content);
+
+            if ((int) crc.getValue() != buffer.getInt(end))
+            {
+                Log.log(Level.WARNING, "Ignoring corrupt snapshot {0}", file);
+                return null;
+            }
+
+            buffer.limit(end);
+            final PersonStore persons = PersonStore.readFrom(buffer);
+
+            if (buffer.hasRemaining())
+            {
+                Log.log(Level.WARNING, "Ignoring corrupt snapshot {0}", file);
+                return null;
+            }
+
+            return persons;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            Log.log(Level.WARNING, "Ignoring unreadable snapshot " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given persons, parsed from the given CSV-file,
+     * next to that file. Nothing is written if the file changed since this key
+     * was made. Failures are logged, as a snapshot is only an optimization.
+     *
+     * @param csv the CSV-file the persons were parsed from
+     * @param persons the persons
+     */
+    void write(File csv, PersonStore persons)
+    {
+        final File file = snapshotOf(csv);
+        File temporary = null;
+
+        try
+        {
+            final long hash = hashOf(csv);
+
+            if (csv.length() != Size || csv.lastModified() != LastModified)
+            {
+                return;
+            }
+
+            // Write to a temporary file first, so no partial snapshot is read.
+            temporary = File.createTempFile(csv.getName(), Extension, csv.getAbsoluteFile()
+                    .getParentFile());
+
+            try (final FileChannel channel = FileChannel.open(temporary.toPath(),
+                    StandardOpenOption.WRITE))
+            {
+                final CRC32 crc = new CRC32();
+                final WritableByteChannel out = new WritableByteChannel()
+                {
+                    @Override
+                    public int write(ByteBuffer source) throws IOException
+                    {
+                        final ByteBuffer content = source.duplicate();
+                        final int written = channel.write(source);
+                        content.limit(content.position() + written);
+                        crc.update(content);
+                        return written;
+                    }
+
+                    @Override
+                    public boolean isOpen()
+                    {
+                        return channel.isOpen();
+                    }
+
+                    @Override
+                    public void close()
+                    {
+                    }
+                };
+                final ByteBuffer key = ByteBuffer.allocate(KeyBytes);
+                key.putInt(Magic).putInt(Version).putLong(Size).putLong(LastModified)
+                        .putLong(hash).flip();
+                write(key, out);
+                persons.writeTo(out);
+
+                final ByteBuffer checksum = ByteBuffer.allocate(Integer.BYTES);
+                checksum.putInt((int) crc.getValue()).flip();
+                write(checksum, channel);
+            }
+
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            Log.log(Level.WARNING, "Failed to write snapshot " + file, ex);
+        }
+        finally
+        {
+            if (temporary != null && !temporary.delete())
+            {
+                temporary.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Gives the snapshot file of the given CSV-file.
+     */
+    private static File snapshotOf(File csv)
+    {
+        return new File(csv.getAbsoluteFile().getParentFile(), csv.getName() + Extension);
+    }
+
+    /**
+     * Writes all of the given buffer to the given channel.
+     */
+    private static void write(ByteBuffer buffer, WritableByteChannel channel) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Gives the CRC-32 of the given file's contents, mapping it in chunks.
+     */
+    private static long hashOf(File file) throws IOException
+    {
+        final CRC32 crc = new CRC32();
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            for (long position = 0; position < channel.size(); position += HashChunkBytes)
+            {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(HashChunkBytes, channel.size() - position)));
+            }
+        }
+
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,989 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.LoadDiagnostics;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.enums.Column;
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+import com.github.agadar.famtreestats.misc.DateDecoder;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads persons CSV-files exported from Aldfaer. The file is memory-mapped
+ * and the ';' and line delimiters are found directly in the mapped bytes. Only
+ * the values of the columns listed in the Column enum are decoded, without
+ * creating Strings; all other values are skipped.
+ * <p>
+ * Because delimiters and values are matched as bytes, the file's charset must
+ * be ASCII-compatible. A UTF-8 byte order mark is recognized and skipped.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class PersonsCsvReader
+{
+    /** Charset Aldfaer uses for its exports, unless a byte order mark says otherwise. */
+    public final static Charset DefaultCharset = Charset.forName("windows-1252");
+
+    /** Symbol used for splitting values in persons CSV file. */
+    private final static byte SplitSymbol = ';';
+
+    /** Maximum number of bytes mapped at once. */
+    private final static int MaxSegmentSize = 1 << 30;
+
+    /** Minimum number of bytes in a range read in parallel. */
+    private final static int MinRangeSize = 1 << 20;
+
+    /** Number of ranges per thread when reading in parallel, for balancing. */
+    private final static int RangesPerThread = 4;
+
+    /** Number of bytes read at once when looking for range bounds. */
+    private final static int BoundWindowSize = 4096;
+
+    /** Number of rows after which progress is reported. */
+    private final static int ProgressRows = 1 << 14;
+
+    /** The UTF-8 byte order mark. */
+    private final static byte[] Utf8Bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    /** Characters that must be encoded as ASCII for the charset to be supported. */
+    private final static String AsciiProbe = ";\r\n -+0123456789NMV?abcdefghijklmnopqrstuvwxyz";
+
+    /** Cached enum values, so that look-ups do not clone the values array. */
+    private final static RelationType[] RelationTypes = RelationType.values();
+    private final static Sex[] Sexes = Sex.values();
+
+    private final static Logger Log = Logger.getLogger(PersonsCsvReader.class.getName());
+
+    private PersonsCsvReader()
+    {
+    }
+
+    /**
+     * Reads the persons CSV-file found on the specified path using the default
+     * charset, passing each retrieved person to the given handler.
+     *
+     * @param file the persons CSV-file
+     * @param handler the handler to pass the persons to
+     * @return diagnostics gathered while reading the file
+     * @throws IOException if something went wrong while finding/reading the file
+     */
+    public static LoadDiagnostics read(File file, PersonHandler handler) throws IOException
+    {
+        return read(file, DefaultCharset, handler);
+    }
+
+    /**
+     * Reads the persons CSV-file found on the specified path, passing each
+     * retrieved person to the given handler. If the file starts with a UTF-8
+     * byte order mark, UTF-8 is used instead of the given charset.
+     *
+     * @param file the persons CSV-file
+     * @param charset the file's charset, which must be ASCII-compatible
+     * @param handler the handler to pass the persons to
+     * @return diagnostics gathered while reading the file
+     * @throws IOException if something went wrong while finding/reading the file
+     */
+    public static LoadDiagnostics read(File file, Charset charset, PersonHandler handler)
+            throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final RowDecoder decoder = readHeader(channel, charset, handler, new LoadProgress(),
+                    Metrics.Disabled);
+            readRange(channel, decoder.DataStart, channel.size(), decoder);
+            return decoder.diagnostics();
+        }
+    }
+
+    /**
+     * Reads the persons CSV-file found on the specified path in parallel. The
+     * rows are split into line-aligned byte ranges, and each range is read on 
+     * the given pool by its own handler, created by the given supplier. The 
+     * handlers are then merged in file order using the given merger, which 
+     * merges its second argument into its first and returns the result.
+     *
+     * @param <H> the type of handler
+     * @param file the persons CSV-file
+     * @param charset the file's charset, which must be ASCII-compatible
+     * @param handlers supplier of empty handlers
+     * @param merger merges two handlers of consecutive ranges
+     * @param pool the pool to read on
+     * @return the merged handler and the diagnostics gathered while reading
+     * @throws IOException if something went wrong while finding/reading the file
+     */
+    public static <H extends PersonHandler> Result<H> readParallel(File file, Charset charset,
+            Supplier<H> handlers, BinaryOperator<H> merger, ForkJoinPool pool) throws IOException
+    {
+        return readParallel(file, charset, handlers, merger, pool, new LoadProgress());
+    }
+
+    /**
+     * Same as readParallel(file, charset, handlers, merger, pool), except that
+     * the numbers of bytes and rows read are reported to the given progress,
+     * through which reading can also be cancelled.
+     *
+     * @param <H> the type of handler
+     * @param file the persons CSV-file
+     * @param charset the file's charset, which must be ASCII-compatible
+     * @param handlers supplier of empty handlers
+     * @param merger merges two handlers of consecutive ranges
+     * @param pool the pool to read on
+     * @param progress the progress to report to
+     * @return the merged handler and the diagnostics gathered while reading
+     * @throws IOException if something went wrong while finding/reading the file
+     * @throws java.util.concurrent.CancellationException if reading was cancelled
+     */
+    public static <H extends PersonHandler> Result<H> readParallel(File file, Charset charset,
+            Supplier<H> handlers, BinaryOperator<H> merger, ForkJoinPool pool, 
+            LoadProgress progress) throws IOException
+    {
+        return readParallel(file, charset, handlers, merger, pool, progress, Metrics.Disabled);
+    }
+
+    /**
+     * Same as readParallel(file, charset, handlers, merger, pool, progress),
+     * except that splitting the file and parsing its ranges are timed in the
+     * given metrics.
+     *
+     * @param <H> the type of handler
+     * @param file the persons CSV-file
+     * @param charset the file's charset, which must be ASCII-compatible
+     * @param handlers supplier of empty handlers
+     * @param merger merges two handlers of consecutive ranges
+     * @param pool the pool to read on
+     * @param progress the progress to report to
+     * @param metrics the metrics to record to
+     * @return the merged handler and the diagnostics gathered while reading
+     * @throws IOException if something went wrong while finding/reading the file
+     * @throws java.util.concurrent.CancellationException if reading was cancelled
+     */
+    public static <H extends PersonHandler> Result<H> readParallel(File file, Charset charset,
+            Supplier<H> handlers, BinaryOperator<H> merger, ForkJoinPool pool, 
+            LoadProgress progress, Metrics metrics) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final RowDecoder header = readHeader(channel, charset, null, progress, metrics);
+            final long start = metrics.start();
+            final long[] bounds = rangeBounds(channel, header.DataStart,
+                    pool.getParallelism() * RangesPerThread);
+            metrics.stop(Metrics.Phase.Split, start);
+            return pool.invoke(new ReadTask<>(channel, header, bounds, 0, bounds.length - 1,
+                    handlers, merger));
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Reads the column names from the given channel and creates a row decoder
+     * for the rows after them.
+     *
+     * @param channel the channel to read from
+     * @param charset the file's charset, which must be ASCII-compatible
+     * @param handler the handler to pass the persons to
+     * @param progress the progress to report to
+     * @param metrics the metrics to record to
+     * @return the row decoder
+     * @throws IOException if something went wrong while reading
+     */
+    private static RowDecoder readHeader(FileChannel channel, Charset charset,
+            PersonHandler handler, LoadProgress progress, Metrics metrics) throws IOException
+    {
+        final long size = channel.size();
+        progress.setTotalBytes(size);
+
+        if (size == 0)
+        {
+            throw new IOException("Selected file is empty!");
+        }
+
+        final MappedByteBuffer buffer = map(channel, 0, size);
+        int start = 0;
+
+        if (startsWith(buffer, 0, buffer.limit(), Utf8Bom))
+        {
+            charset = StandardCharsets.UTF_8;
+            start = Utf8Bom.length;
+        }
+        else if (startsWithUtf16Bom(buffer))
+        {
+            throw new IOException("UTF-16 encoded files are not supported!");
+        }
+
+        final int headerEnd = lineEnd(buffer, start, buffer.limit());
+
+        if (headerEnd == buffer.limit() && buffer.limit() < size)
+        {
+            throw new IOException("Header line is too long!");
+        }
+
+        final int dataStart = nextLineStart(buffer, headerEnd, buffer.limit());
+        final ColumnMapping mapping = ColumnMapping.of(decode(buffer, start, headerEnd, charset)
+                .split(String.valueOf((char) SplitSymbol)));
+        reportColumns(mapping);
+        progress.add(dataStart, 0);
+        return new RowDecoder(charset, mapping, dataStart, handler, progress, metrics);
+    }
+
+    /**
+     * Reports the missing, duplicate and unknown columns of the given mapping,
+     * before any row is read.
+     *
+     * @param mapping the columns of the header line
+     * @throws IOException if none of the columns are present
+     */
+    private static void reportColumns(ColumnMapping mapping) throws IOException
+    {
+        final Set<Column> missing = mapping.getMissing();
+
+        if (missing.size() == Column.values().length)
+        {
+            throw new IOException("None of the expected columns were found!");
+        }
+
+        if (!missing.isEmpty())
+        {
+            final StringBuilder names = new StringBuilder();
+            missing.forEach(column -> names.append(names.length() > 0 ? ", " : "")
+                    .append(column.getColumnName()));
+            Log.log(Level.WARNING, "Missing columns, read as unknown values: {0}", names);
+        }
+
+        if (!mapping.getDuplicates().isEmpty())
+        {
+            Log.log(Level.WARNING, "Duplicate columns, of which only the last is read: {0}",
+                    String.join(", ", mapping.getDuplicates()));
+        }
+
+        Log.log(Level.FINE, "Skipped columns: {0}", String.join(", ", mapping.getUnknown()));
+    }
+
+    /**
+     * Reads the lines in the given byte range of the given channel, segment by 
+     * segment. The range must start at the start of a line.
+     *
+     * @param channel the channel to read from
+     * @param start start of the range (inclusive)
+     * @param end end of the range (exclusive), either the end of the channel 
+     * or the start of a line
+     * @param decoder the row decoder to use
+     * @throws IOException if something went wrong while reading
+     */
+    private static void readRange(FileChannel channel, long start, long end,
+            RowDecoder decoder) throws IOException
+    {
+        long position = start;
+
+        while (position < end)
+        {
+            final MappedByteBuffer buffer = map(channel, position, end);
+            final boolean lastSegment = position + buffer.limit() == end;
+            final int segmentEnd = lastSegment ? buffer.limit() : lastLineStart(buffer);
+
+            if (segmentEnd == 0)
+            {
+                throw new IOException("Line at byte " + position + " is too long!");
+            }
+
+            decoder.decodeLines(buffer, position, segmentEnd);
+            position += segmentEnd;
+        }
+    }
+
+    /**
+     * Splits the given channel from the given start into about the given number
+     * of ranges, each starting at the start of a line.
+     *
+     * @param channel the channel to split
+     * @param start the start of the first range
+     * @param ranges the desired number of ranges
+     * @return the bounds of the ranges, so range i is [bounds[i], bounds[i + 1])
+     * @throws IOException if something went wrong while reading
+     */
+    private static long[] rangeBounds(FileChannel channel, long start, int ranges)
+            throws IOException
+    {
+        final long size = channel.size();
+        final long rangeSize = Math.max(MinRangeSize, (size - start) / ranges + 1);
+        final List<Long> bounds = new ArrayList<>();
+        final ByteBuffer window = ByteBuffer.allocate(BoundWindowSize);
+        bounds.add(start);
+
+        for (long bound = start + rangeSize; bound < size; )
+        {
+            bound = nextLineStart(channel, bound, window);
+
+            if (bound < size)
+            {
+                bounds.add(bound);
+            }
+
+            bound += rangeSize;
+        }
+
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Returns the start of the first line starting at or after the given 
+     * position, or the channel's size if there is none.
+     *
+     * @param channel the channel to search
+     * @param position the position to start searching at, greater than 0
+     * @param window buffer to read through
+     * @return the start of the line
+     * @throws IOException if something went wrong while reading
+     */
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer window)
+            throws IOException
+    {
+        // Start at the previous byte, so that a position that already is the 
+        // start of a line is returned as is.
+        long windowStart = position - 1;
+
+        while (true)
+        {
+            window.clear();
+
+            if (channel.read(window, windowStart) <= 0)
+            {
+                return channel.size();
+            }
+
+            window.flip();
+
+            for (int i = 0; i < window.limit(); i++)
+            {
+                final byte b = window.get(i);
+
+                if (b == '\n')
+                {
+                    return windowStart + i + 1;
+                }
+                else if (b == '\r')
+                {
+                    // Look ahead for '\n', which may be outside the window.
+                    final ByteBuffer next = ByteBuffer.allocate(1);
+                    final boolean crlf = channel.read(next, windowStart + i + 1) == 1 
+                            && next.get(0) == '\n';
+                    return windowStart + i + (crlf ? 2 : 1);
+                }
+            }
+
+            windowStart += window.limit();
+        }
+    }
+
+    /**
+     * Maps the segment of the given channel starting at the given position.
+     *
+     * @param channel the channel
+     * @param position the position to start at
+     * @param size the channel's size
+     * @return the mapped segment
+     * @throws IOException if mapping failed
+     */
+    private static MappedByteBuffer map(FileChannel channel, long position, long size)
+            throws IOException
+    {
+        final long segmentSize = Math.min(MaxSegmentSize, size - position);
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, segmentSize);
+    }
+
+    /**
+     * Returns the index of the line delimiter ending the line that starts at
+     * the given index, or end if there is none.
+     *
+     * @param buffer the buffer
+     * @param start the start of the line
+     * @param end the end of the range to search
+     * @return the index of the line delimiter, or end
+     */
+    private static int lineEnd(ByteBuffer buffer, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            final byte b = buffer.get(i);
+
+            if (b == '\n' || b == '\r')
+            {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Returns the start of the line after the line delimiter at the given index.
+     * A line delimiter is '\n', '\r' or '\r\n'.
+     *
+     * @param buffer the buffer
+     * @param lineEnd the index of the line delimiter
+     * @param end the end of the range
+     * @return the start of the next line
+     */
+    private static int nextLineStart(ByteBuffer buffer, int lineEnd, int end)
+    {
+        if (lineEnd < end && buffer.get(lineEnd) == '\r' && lineEnd + 1 < end
+                && buffer.get(lineEnd + 1) == '\n')
+        {
+            return lineEnd + 2;
+        }
+
+        return Math.min(lineEnd + 1, end);
+    }
+
+    /**
+     * Returns the start of the last line in the given buffer, which may be
+     * incomplete. A '\r' at the very end does not count as a delimiter, as it
+     * may be followed by a '\n' in the next segment.
+     *
+     * @param buffer the buffer
+     * @return the start of the last line, or 0 if there is no line delimiter
+     */
+    private static int lastLineStart(ByteBuffer buffer)
+    {
+        final int limit = buffer.limit();
+
+        for (int i = limit - 1; i >= 0; i--)
+        {
+            final byte b = buffer.get(i);
+
+            if (b == '\n' || (b == '\r' && i < limit - 1))
+            {
+                return i + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns whether the range of the given buffer equals the given bytes.
+     *
+     * @param buffer the buffer
+     * @param start start of the range (inclusive)
+     * @param end end of the range (exclusive)
+     * @param bytes the bytes
+     * @return true if the range equals the bytes
+     */
+    private static boolean rangeEquals(ByteBuffer buffer, int start, int end, byte[] bytes)
+    {
+        return end - start == bytes.length && startsWith(buffer, start, end, bytes);
+    }
+
+    /**
+     * Returns whether the range of the given buffer starts with the given bytes.
+     *
+     * @param buffer the buffer
+     * @param start start of the range (inclusive)
+     * @param end end of the range (exclusive)
+     * @param bytes the bytes
+     * @return true if the range starts with the bytes
+     */
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] bytes)
+    {
+        if (end - start < bytes.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < bytes.length; i++)
+        {
+            if (buffer.get(start + i) != bytes[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the given buffer starts with a UTF-16 byte order mark.
+     *
+     * @param buffer the buffer
+     * @return true if it starts with a UTF-16 byte order mark
+     */
+    private static boolean startsWithUtf16Bom(ByteBuffer buffer)
+    {
+        if (buffer.limit() < 2)
+        {
+            return false;
+        }
+
+        final int first = buffer.get(0) & 0xFF;
+        final int second = buffer.get(1) & 0xFF;
+        return (first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE);
+    }
+
+    /**
+     * Decodes the given range of the given buffer to a String.
+     *
+     * @param buffer the buffer
+     * @param start start of the range (inclusive)
+     * @param end end of the range (exclusive)
+     * @param charset the charset to use
+     * @return the decoded String
+     */
+    private static String decode(ByteBuffer buffer, int start, int end, Charset charset)
+    {
+        final byte[] bytes = new byte[end - start];
+
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = buffer.get(start + i);
+        }
+
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Decodes rows into persons and passes them to a handler, keeping track of
+     * diagnostics. The decoded values of a row are held in a single reused
+     * array, so decoding a row allocates nothing.
+     */
+    private final static class RowDecoder
+    {
+        /** Column ordinal for each field index, or -1 if the field is skipped. */
+        private final int[] FieldColumns;
+
+        /** Columns missing from the header. */
+        private final Set<Column> Missing;
+
+        /** Underlying strings of the relation types, encoded, by ordinal. */
+        private final byte[][] RelationTypeBytes;
+
+        /** Underlying strings of the sexes, encoded, by ordinal. */
+        private final byte[][] SexBytes;
+
+        /** The handler to pass the persons to. */
+        private final PersonHandler Handler;
+
+        /** Position of the first row, right after the column names. */
+        final long DataStart;
+
+        /** The progress to report to. */
+        private final LoadProgress Progress;
+
+        /** The metrics to record to. */
+        final Metrics PhaseMetrics;
+
+        /** Decoded values of the current row, indexed by Column ordinal. */
+        private final int[] Values = new int[Column.values().length];
+
+        /** Number of malformed values per column, indexed by Column ordinal. */
+        private final int[] Malformed = new int[Column.values().length];
+
+        /** Number of rows decoded. */
+        private int rows = 0;
+
+        /**
+         * Instantiates a new row decoder.
+         *
+         * @param charset the file's charset
+         * @param mapping the columns of the header line
+         * @param dataStart position of the first row
+         * @param handler the handler to pass the persons to
+         * @param progress the progress to report to
+         * @param metrics the metrics to record to
+         * @throws IOException if the charset is not ASCII-compatible
+         */
+        RowDecoder(Charset charset, ColumnMapping mapping, long dataStart, PersonHandler handler, 
+                LoadProgress progress, Metrics metrics) throws IOException
+        {
+            if (!Arrays.equals(AsciiProbe.getBytes(charset),
+                    AsciiProbe.getBytes(StandardCharsets.US_ASCII)))
+            {
+                throw new IOException("Charset " + charset + " is not supported!");
+            }
+
+            this.FieldColumns = mapping.getFieldColumns();
+            this.Missing = mapping.getMissing();
+            this.RelationTypeBytes = new byte[RelationTypes.length][];
+
+            for (RelationType relationType : RelationTypes)
+            {
+                RelationTypeBytes[relationType.ordinal()] =
+                        relationType.getUnderlyingString().getBytes(charset);
+            }
+
+            this.SexBytes = new byte[Sexes.length][];
+
+            for (Sex sex : Sexes)
+            {
+                SexBytes[sex.ordinal()] = sex.getUnderlyingString().getBytes(charset);
+            }
+
+            this.Handler = handler;
+            this.DataStart = dataStart;
+            this.Progress = progress;
+            this.PhaseMetrics = metrics;
+        }
+
+        /**
+         * Instantiates a new row decoder for the same columns as the given one,
+         * passing the persons to the given handler.
+         *
+         * @param other the row decoder to copy the columns of
+         * @param handler the handler to pass the persons to
+         */
+        RowDecoder(RowDecoder other, PersonHandler handler)
+        {
+            this.FieldColumns = other.FieldColumns;
+            this.Missing = other.Missing;
+            this.RelationTypeBytes = other.RelationTypeBytes;
+            this.SexBytes = other.SexBytes;
+            this.DataStart = other.DataStart;
+            this.Progress = other.Progress;
+            this.PhaseMetrics = other.PhaseMetrics;
+            this.Handler = handler;
+        }
+
+        /**
+         * Decodes all lines in the given buffer, up to the given end, reporting
+         * progress every ProgressRows rows.
+         *
+         * @param buffer the buffer
+         * @param offset position of the buffer in the file
+         * @param end the end of the lines (exclusive)
+         */
+        void decodeLines(ByteBuffer buffer, long offset, int end)
+        {
+            int lineStart = 0;
+            int reportedStart = 0;
+            int reportedRows = rows;
+
+            while (lineStart < end)
+            {
+                final int lineEnd = lineEnd(buffer, lineStart, end);
+                decodeLine(buffer, offset, lineStart, lineEnd);
+                lineStart = nextLineStart(buffer, lineEnd, end);
+
+                if (rows - reportedRows == ProgressRows)
+                {
+                    Progress.add(lineStart - reportedStart, ProgressRows);
+                    reportedStart = lineStart;
+                    reportedRows = rows;
+                }
+            }
+
+            Progress.add(end - reportedStart, rows - reportedRows);
+        }
+
+        /**
+         * Returns the diagnostics gathered so far.
+         *
+         * @return the diagnostics
+         */
+        LoadDiagnostics diagnostics()
+        {
+            return new LoadDiagnostics(rows, Malformed, Missing);
+        }
+
+        /**
+         * Decodes a single line and passes the person to the handler.
+         *
+         * @param buffer the buffer
+         * @param offset position of the buffer in the file
+         * @param start start of the line (inclusive)
+         * @param end end of the line (exclusive)
+         */
+        private void decodeLine(ByteBuffer buffer, long offset, int start, int end)
+        {
+            // Reset values to those of missing values.
+            Values[Column.IdSelf.ordinal()] = PersonStore.NoId;
+            Values[Column.IdFather.ordinal()] = PersonStore.NoId;
+            Values[Column.IdMother.ordinal()] = PersonStore.NoId;
+            Values[Column.IdRelationship.ordinal()] = PersonStore.NoId;
+            Values[Column.IdPartner.ordinal()] = PersonStore.NoId;
+            Values[Column.TypeRelationship.ordinal()] = RelationType.Unknown.ordinal();
+            Values[Column.TypeSex.ordinal()] = Sex.Unknown.ordinal();
+            Values[Column.DateMarriage.ordinal()] = PersonStore.NoDate;
+            Values[Column.DateBirth.ordinal()] = PersonStore.NoDate;
+            Values[Column.DateDeath.ordinal()] = PersonStore.NoDate;
+
+            // Find the fields and decode those belonging to a column.
+            int field = 0;
+            int fieldStart = start;
+
+            for (int i = start; i <= end && field < FieldColumns.length; i++)
+            {
+                if (i == end || buffer.get(i) == SplitSymbol)
+                {
+                    if (FieldColumns[field] >= 0)
+                    {
+                        decodeField(buffer, fieldStart, i, FieldColumns[field]);
+                    }
+
+                    field++;
+                    fieldStart = i + 1;
+                }
+            }
+
+            Handler.handle(offset + start, Values[Column.IdSelf.ordinal()],
+                    Values[Column.IdFather.ordinal()],
+                    Values[Column.IdMother.ordinal()],
+                    Values[Column.IdRelationship.ordinal()],
+                    Values[Column.IdPartner.ordinal()],
+                    RelationTypes[Values[Column.TypeRelationship.ordinal()]],
+                    Sexes[Values[Column.TypeSex.ordinal()]],
+                    Values[Column.DateMarriage.ordinal()],
+                    Values[Column.DateBirth.ordinal()],
+                    Values[Column.DateDeath.ordinal()]);
+            rows++;
+        }
+
+        /**
+         * Decodes a single field into the values of the current row, counting
+         * it as malformed if it is present but could not be decoded.
+         *
+         * @param buffer the buffer
+         * @param start start of the field (inclusive)
+         * @param end end of the field (exclusive)
+         * @param column ordinal of the column the field belongs to
+         */
+        private void decodeField(ByteBuffer buffer, int start, int end, int column)
+        {
+            final int untrimmedStart = start;
+            final int untrimmedEnd = end;
+
+            // Trim whitespace.
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ')
+            {
+                start++;
+            }
+
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ')
+            {
+                end--;
+            }
+
+            if (start == end)
+            {
+                return;
+            }
+
+            boolean malformed = false;
+
+            if (column == Column.DateMarriage.ordinal())
+            {
+                Values[column] = DateDecoder.decodeYearMonthDay(buffer, start, end);
+                malformed = Values[column] == PersonStore.NoDate;
+            }
+            else if (column == Column.DateBirth.ordinal() || column == Column.DateDeath.ordinal())
+            {
+                Values[column] = DateDecoder.decodeDayMonthYear(buffer, start, end);
+                malformed = Values[column] == PersonStore.NoDate;
+            }
+            else if (column == Column.TypeRelationship.ordinal())
+            {
+                final int ordinal = indexOf(RelationTypeBytes, buffer, start, end);
+                Values[column] = ordinal >= 0 ? ordinal : RelationType.Unknown.ordinal();
+                malformed = ordinal < 0;
+            }
+            else if (column == Column.TypeSex.ordinal())
+            {
+                // Unlike the other values, the sex value is matched untrimmed.
+                final int ordinal = indexOf(SexBytes, buffer, untrimmedStart, untrimmedEnd);
+                Values[column] = ordinal >= 0 ? ordinal : Sex.Unknown.ordinal();
+                malformed = ordinal < 0;
+            }
+            else
+            {
+                final long id = decodeInt(buffer, start, end);
+                Values[column] = id == Long.MIN_VALUE ? PersonStore.NoId : (int) id;
+                malformed = id == Long.MIN_VALUE;
+            }
+
+            if (malformed)
+            {
+                Malformed[column]++;
+            }
+        }
+
+        /**
+         * Returns the index of the byte array equal to the given range, or -1.
+         *
+         * @param candidates the byte arrays
+         * @param buffer the buffer
+         * @param start start of the range (inclusive)
+         * @param end end of the range (exclusive)
+         * @return the index of the equal byte array, or -1
+         */
+        private static int indexOf(byte[][] candidates, ByteBuffer buffer, int start, int end)
+        {
+            for (int i = 0; i < candidates.length; i++)
+            {
+                if (rangeEquals(buffer, start, end, candidates[i]))
+                {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Decodes a signed integer from the given range, like Integer.parseInt(...).
+         *
+         * @param buffer the buffer
+         * @param start start of the range (inclusive)
+         * @param end end of the range (exclusive)
+         * @return the integer, or Long.MIN_VALUE if it could not be decoded
+         */
+        private static long decodeInt(ByteBuffer buffer, int start, int end)
+        {
+            final byte sign = buffer.get(start);
+            final boolean negative = sign == '-';
+
+            if (negative || sign == '+')
+            {
+                start++;
+            }
+
+            if (start == end)
+            {
+                return Long.MIN_VALUE;
+            }
+
+            long value = 0;
+
+            for (int i = start; i < end; i++)
+            {
+                final int digit = buffer.get(i) - '0';
+
+                if (digit < 0 || digit > 9)
+                {
+                    return Long.MIN_VALUE;
+                }
+
+                value = value * 10 + digit;
+
+                if (value > 1L + Integer.MAX_VALUE)
+                {
+                    return Long.MIN_VALUE;
+                }
+            }
+
+            value = negative ? -value : value;
+            return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+        }
+    }
+
+    /**
+     * Result of reading a file in parallel.
+     *
+     * @param <H> the type of handler
+     */
+    public final static class Result<H extends PersonHandler>
+    {
+        /** The merged handler. */
+        public final H Handler;
+
+        /** Diagnostics gathered while reading. */
+        public final LoadDiagnostics Diagnostics;
+
+        Result(H handler, LoadDiagnostics diagnostics)
+        {
+            this.Handler = handler;
+            this.Diagnostics = diagnostics;
+        }
+    }
+
+    /**
+     * Task reading a number of consecutive ranges, splitting them over subtasks.
+     *
+     * @param <H> the type of handler
+     */
+    private final static class ReadTask<H extends PersonHandler> extends RecursiveTask<Result<H>>
+    {
+        private final FileChannel Channel;
+        private final RowDecoder Header;
+        private final long[] Bounds;
+        private final int From;
+        private final int To;
+        private final Supplier<H> Handlers;
+        private final BinaryOperator<H> Merger;
+
+        /**
+         * Instantiates a new task.
+         *
+         * @param channel the channel to read from
+         * @param header row decoder created from the column names
+         * @param bounds the bounds of all ranges
+         * @param from index of the first range to read (inclusive)
+         * @param to index of the last range to read (exclusive)
+         * @param handlers supplier of empty handlers
+         * @param merger merges two handlers of consecutive ranges
+         */
+        ReadTask(FileChannel channel, RowDecoder header, long[] bounds, int from, int to,
+                Supplier<H> handlers, BinaryOperator<H> merger)
+        {
+            this.Channel = channel;
+            this.Header = header;
+            this.Bounds = bounds;
+            this.From = from;
+            this.To = to;
+            this.Handlers = handlers;
+            this.Merger = merger;
+        }
+
+        @Override
+        protected Result<H> compute()
+        {
+            if (To - From == 1)
+            {
+                final H handler = Handlers.get();
+                final RowDecoder decoder = new RowDecoder(Header, handler);
+                final long start = decoder.PhaseMetrics.start();
+
+                try
+                {
+                    readRange(Channel, Bounds[From], Bounds[To], decoder);
+                    decoder.PhaseMetrics.stop(Metrics.Phase.Parse, start);
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+
+                return new Result<>(handler, decoder.diagnostics());
+            }
+
+            // Read both halves, then merge them in order.
+            final int middle = (From + To) >>> 1;
+            final ReadTask<H> right = new ReadTask<>(Channel, Header, Bounds, middle, To,
+                    Handlers, Merger);
+            right.fork();
+            final Result<H> leftResult = new ReadTask<>(Channel, Header, Bounds, From, middle,
+                    Handlers, Merger).compute();
+            final Result<H> rightResult = right.join();
+            return new Result<>(Merger.apply(leftResult.Handler, rightResult.Handler),
+                    leftResult.Diagnostics.merge(rightResult.Diagnostics));
+        }
+    }
+}
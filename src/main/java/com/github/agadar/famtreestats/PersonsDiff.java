@@ -0,0 +1,113 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.misc.IntLongHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Difference between two exports of the same tree, by Intern_nummer. A person
+ * may have several rows, one per relation, so a person is changed if its rows
+ * differ in any way, and then all its rows are replaced.
+ * <p>
+ * Rows are compared through 64-bit hashes: per person, the sum of the hashes
+ * of its rows, so that the order of its rows does not matter.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class PersonsDiff
+{
+    /** Value for persons that are missing from an export. */
+    private final static long Missing = Long.MIN_VALUE;
+
+    /** Rows in the old export of the persons that were changed or removed. */
+    final int[] RemovedRows;
+
+    /** Rows in the new export of the persons that were changed or added. */
+    final int[] AddedRows;
+
+    /** Number of persons that were changed, removed or added. */
+    final int Persons;
+
+    private PersonsDiff(int[] removedRows, int[] addedRows, int persons)
+    {
+        this.RemovedRows = removedRows;
+        this.AddedRows = addedRows;
+        this.Persons = persons;
+    }
+
+    /**
+     * Gives the difference between the given exports.
+     *
+     * @param oldPersons the persons of the old export
+     * @param newPersons the persons of the new export
+     * @return the difference
+     */
+    static PersonsDiff of(PersonStore oldPersons, PersonStore newPersons)
+    {
+        final IntLongHashMap oldHashes = hashesOf(oldPersons);
+        final IntLongHashMap newHashes = hashesOf(newPersons);
+        final int[] persons = { 0 };
+        oldHashes.forEach((id, hash) -> persons[0] += newHashes.get(id, Missing) != hash ? 1 : 0);
+        newHashes.forEach((id, hash) -> persons[0] += oldHashes.get(id, Missing) == Missing
+                ? 1 : 0);
+        return new PersonsDiff(changedRows(oldPersons, oldHashes, newHashes),
+                changedRows(newPersons, newHashes, oldHashes), persons[0]);
+    }
+
+    /**
+     * Gives the rows of the given persons whose hashes differ from, or are
+     * missing in, the other hashes.
+     */
+    private static int[] changedRows(PersonStore persons, IntLongHashMap hashes,
+            IntLongHashMap otherHashes)
+    {
+        return IntStream.range(0, persons.size()).filter(row -> otherHashes.get(
+                persons.getId(row), Missing) != hashes.get(persons.getId(row), Missing))
+                .toArray();
+    }
+
+    /**
+     * Gives the hash of each person: the sum of the hashes of its rows.
+     */
+    private static IntLongHashMap hashesOf(PersonStore persons)
+    {
+        final IntLongHashMap hashes = new IntLongHashMap();
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            final int id = persons.getId(row);
+            final long hash = hashes.get(id, Missing);
+            hashes.put(id, (hash == Missing ? 0 : hash) + hashOf(persons, row));
+        }
+
+        return hashes;
+    }
+
+    /**
+     * Gives the hash of all values of the given row.
+     */
+    private static long hashOf(PersonStore persons, int row)
+    {
+        long hash = persons.getId(row);
+        hash = mix(hash) + persons.getFatherId(row);
+        hash = mix(hash) + persons.getMotherId(row);
+        hash = mix(hash) + persons.getRelationId(row);
+        hash = mix(hash) + persons.getPartnerId(row);
+        hash = mix(hash) + persons.getRelationType(row).ordinal();
+        hash = mix(hash) + persons.getSex(row).ordinal();
+        hash = mix(hash) + persons.getMarriageDate(row);
+        hash = mix(hash) + persons.getBirthDate(row);
+        hash = mix(hash) + persons.getDeathDate(row);
+        return mix(hash);
+    }
+
+    /**
+     * Mixes the bits of the given value, like the finalizer of MurmurHash3.
+     */
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB93FE53A87CDL;
+        return value ^ (value >>> 33);
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.Statistics;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingConstants;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Table model showing a row per Statistics. The statistics are kept as they
+ * are and their values only looked up when a cell is drawn or sorted, as
+ * Integers, so that rows sort by value. Unknown years are null, which the
+ * Renderer shows as "-".
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class StatisticsTableModel extends AbstractTableModel
+{
+    /** Column headers, lines separated by '\n'. */
+    private final static String[] Columns =
+    {
+        "Year\nFrom", "Year\nTo", "Avg. age\nat marriage\n(both)",
+        "Avg. age\nat marriage\n(male)", "Avg. age\nat marriage\n(female)",
+        "Avg. age\nat death\n(both)", "Avg. age\nat death\n(male)",
+        "Avg. age\nat death\n(female)", "Avg. # of\nchildren per\nmarriage",
+        "Deaths", "Births", "Median age\nat marriage\n(both)", "P10 age\nat marriage\n(both)",
+        "P90 age\nat marriage\n(both)", "Median age\nat death\n(both)",
+        "P10 age\nat death\n(both)", "P90 age\nat death\n(both)"
+    };
+
+    /** The statistics shown, one per row. */
+    private List<Statistics> rows = new ArrayList<>();
+
+    /**
+     * Adds rows for the given statistics.
+     *
+     * @param statistics the statistics to add
+     */
+    void add(List<Statistics> statistics)
+    {
+        if (statistics.isEmpty())
+        {
+            return;
+        }
+
+        final int first = rows.size();
+        rows.addAll(statistics);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    /**
+     * Replaces all rows by rows for the given statistics.
+     *
+     * @param statistics the statistics to show
+     */
+    void set(List<Statistics> statistics)
+    {
+        rows = new ArrayList<>(statistics);
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount()
+    {
+        return Columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column)
+    {
+        return Columns[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column)
+    {
+        return Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column)
+    {
+        final Statistics stat = rows.get(row);
+
+        switch (column)
+        {
+            case 0:
+                return stat.Period == null ? null : yearOrNull(stat.Period.YearFrom);
+            case 1:
+                return stat.Period == null ? null : yearOrNull(stat.Period.YearTo);
+            case 2:
+                return stat.AgeAtMarriageBoth;
+            case 3:
+                return stat.AgeAtMarriageMale;
+            case 4:
+                return stat.AgeAtMarriageFemale;
+            case 5:
+                return stat.AgeAtDeathBoth;
+            case 6:
+                return stat.AgeAtDeathMale;
+            case 7:
+                return stat.AgeAtDeathFemale;
+            case 8:
+                return stat.ChildenPerMarriage;
+            case 9:
+                return stat.Deaths;
+            case 10:
+                return stat.Births;
+            case 11:
+                return stat.MedianAgeAtMarriageBoth;
+            case 12:
+                return stat.P10AgeAtMarriageBoth;
+            case 13:
+                return stat.P90AgeAtMarriageBoth;
+            case 14:
+                return stat.MedianAgeAtDeathBoth;
+            case 15:
+                return stat.P10AgeAtDeathBoth;
+            case 16:
+                return stat.P90AgeAtDeathBoth;
+            default:
+                throw new IndexOutOfBoundsException("No column " + column);
+        }
+    }
+
+    /**
+     * Gives the given year, or null if it is unknown (below 1).
+     */
+    private static Integer yearOrNull(int year)
+    {
+        return year < 1 ? null : year;
+    }
+
+    /**
+     * Renders the values of the model, showing null as "-".
+     */
+    final static class Renderer extends DefaultTableCellRenderer
+    {
+        Renderer()
+        {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value)
+        {
+            setText(value == null ? "-" : value.toString());
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.Average;
+import com.github.agadar.famtreestats.domain.Cache;
+import com.github.agadar.famtreestats.domain.PeriodYears;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.domain.Statistics;
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+import com.github.agadar.famtreestats.misc.DateDecoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Persons aggregated per calendar year, from which the statistics of any
+ * periods are calculated by merging the years in each period, without
+ * aggregating the persons again. Persons can be replaced afterwards, updating
+ * only the years and relations they affect.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class YearlyCube
+{
+    /** Last year a date can fall in, as dates have four-digit years. */
+    final static int LastYear = 9999;
+
+    /** Number of year indices: 0 for unknown dates, 1 to LastYear for years. */
+    private final static int Years = LastYear + 1;
+
+    /** Totals and counts per year index, or null if no date fell in the year. */
+    private final Cache[] Caches;
+
+    /** Number of dates per year index. */
+    private final int[] Dates;
+
+    /** Children per marriage of all years. */
+    private final MarriedWithChildrenIndex Marriages;
+
+    private YearlyCube(Cache[] caches, int[] dates, MarriedWithChildrenIndex marriages)
+    {
+        this.Caches = caches;
+        this.Dates = dates;
+        this.Marriages = marriages;
+    }
+
+    /**
+     * Gives the year index of the given date: its year, or 0 if unknown.
+     *
+     * @param date the date, as epoch day
+     * @return the year index
+     */
+    static int yearIndexOf(int date)
+    {
+        return date == PersonStore.NoDate ? 0 : DateDecoder.yearOf(date);
+    }
+
+    /**
+     * Gives the number of dates of the persons in this cube that are unknown,
+     * so that they fall in no year.
+     *
+     * @return the number of unknown dates
+     */
+    int getUnknownDates()
+    {
+        return Dates[0];
+    }
+
+    /**
+     * Replaces persons in this cube: subtracts the given removed persons and
+     * adds the given added ones. Takes time in proportion to the number of
+     * replaced persons and the relations they are part of, not to the number
+     * of persons in this cube, unless a relation registered to several couples
+     * is replaced. Not thread-safe.
+     *
+     * @param removedFrom all persons in this cube before the update, which the
+     * removed rows are of
+     * @param removed rows of the persons to remove, which were added before
+     * @param addedFrom all persons in this cube after the update, which the
+     * added rows are of
+     * @param added rows of the persons to add
+     * @param registrations the couples and children registered by all persons
+     * in this cube, which are updated as well
+     */
+    void update(PersonStore removedFrom, int[] removed, PersonStore addedFrom, int[] added,
+            MarriageRegistrations registrations)
+    {
+        final Builder removedYears = new Builder();
+        final Builder addedYears = new Builder();
+        final Set<Integer> relations = new HashSet<>();
+
+        for (int row : removed)
+        {
+            removedFrom.handle(row, removedYears);
+            registrations.collectRelations(removedFrom, row, relations);
+        }
+
+        for (int row : added)
+        {
+            addedFrom.handle(row, addedYears);
+            registrations.collectRelations(addedFrom, row, relations);
+        }
+
+        for (int year = 0; year < Years; year++)
+        {
+            if (removedYears.Caches[year] != null)
+            {
+                Caches[year].subtractTotals(removedYears.Caches[year]);
+                Dates[year] -= removedYears.Dates[year];
+            }
+
+            if (addedYears.Caches[year] != null)
+            {
+                if (Caches[year] == null)
+                {
+                    Caches[year] = new Cache(addedYears.Caches[year].Period);
+                }
+
+                Caches[year].mergeTotals(addedYears.Caches[year]);
+                Dates[year] += addedYears.Dates[year];
+            }
+
+            if (Dates[year] == 0)
+            {
+                Caches[year] = null;
+            }
+        }
+
+        // Take out the relations as they were, then put them back as they are.
+        registrations.registrationsOf(relations, removedFrom).forEach((relationId, relation) ->
+                Marriages.remove(relationId, relation, registrations));
+
+        for (int row : removed)
+        {
+            registrations.unregister(removedFrom, row);
+        }
+
+        for (int row : added)
+        {
+            registrations.register(addedFrom, row);
+        }
+
+        registrations.registrationsOf(relations, addedFrom).forEach((relationId, relation) ->
+                Marriages.add(relationId, relation, registrations));
+    }
+
+    /**
+     * Calculates the statistics of the given periods, ordered by period.
+     * Periods in which no date fell are left out. The same as aggregating the
+     * persons with a PeriodAggregator of the same periods gives.
+     *
+     * @param periods the periods
+     * @return the calculated statistics
+     */
+    public List<Statistics> getStatistics(PeriodTable periods)
+    {
+        final int[] periodOfYear = new int[Years];
+        periodOfYear[0] = -1;
+
+        for (int year = 1; year < Years; year++)
+        {
+            periodOfYear[year] = periods.indexOf(year);
+        }
+
+        final Cache[] caches = mergeYears(periodOfYear, periods.size(), periods::getPeriod);
+        final Average[] children = Marriages.numberOfChildren(periodOfYear, caches.length);
+        final List<Statistics> stats = new ArrayList<>();
+
+        for (int period = 0; period < caches.length; period++)
+        {
+            if (caches[period] != null)
+            {
+                stats.add(caches[period].calculateStatistics(children[period]));
+            }
+        }
+
+        return stats;
+    }
+
+    /**
+     * Calculates the statistics of all persons, including those with unknown
+     * dates.
+     *
+     * @param period the period to give the statistics, may be null
+     * @return the calculated statistics
+     */
+    public Statistics getStatistics(PeriodYears period)
+    {
+        final int[] periodOfYear = new int[Years];
+        final Cache total = mergeYears(periodOfYear, 1, index -> period)[0];
+        final Average children = Marriages.numberOfChildren(periodOfYear, 1)[0];
+        return (total != null ? total : new Cache(period)).calculateStatistics(children);
+    }
+
+    /**
+     * Merges the totals and counts of the years into caches per period.
+     *
+     * @param periodOfYear period index per year, or -1 if the year is in no period
+     * @param periods the number of periods
+     * @param periodAt gives the period at an index
+     * @return the caches, indexed by period, with null for periods without years
+     */
+    private Cache[] mergeYears(int[] periodOfYear, int periods, IntFunction<PeriodYears> periodAt)
+    {
+        final Cache[] caches = new Cache[periods];
+
+        for (int year = 0; year < Years; year++)
+        {
+            final int period = periodOfYear[year];
+
+            if (Caches[year] == null || period < 0)
+            {
+                continue;
+            }
+
+            if (caches[period] == null)
+            {
+                caches[period] = new Cache(periodAt.apply(period));
+            }
+
+            caches[period].mergeTotals(Caches[year]);
+        }
+
+        return caches;
+    }
+
+    /**
+     * Aggregates persons into a new YearlyCube. Builders of separate ranges
+     * of persons can be merged in any order.
+     */
+    public final static class Builder implements PersonHandler
+    {
+        /** Cache per year index, or null if no date fell in the year yet. */
+        private final Cache[] Caches = new Cache[Years];
+
+        /** Number of dates per year index. */
+        private final int[] Dates = new int[Years];
+
+        @Override
+        public void handle(long position, int id, int fatherId, int motherId, int relationId,
+                int partnerId, RelationType relationType, Sex sex, int marriageDate,
+                int birthDate, int deathDate)
+        {
+            PeriodAggregator.process(getOrCreateCache(marriageDate),
+                    getOrCreateCache(deathDate), getOrCreateCache(birthDate), position, id,
+                    fatherId, motherId, relationId, partnerId, relationType, sex, marriageDate,
+                    birthDate, deathDate);
+        }
+
+        /**
+         * Merges the caches of the given builder into this one.
+         *
+         * @param other the builder to merge into this one
+         */
+        public void merge(Builder other)
+        {
+            for (int year = 0; year < Years; year++)
+            {
+                if (other.Caches[year] == null)
+                {
+                    continue;
+                }
+
+                Dates[year] += other.Dates[year];
+
+                if (Caches[year] == null)
+                {
+                    Caches[year] = other.Caches[year];
+                }
+                else
+                {
+                    Caches[year].merge(other.Caches[year]);
+                }
+            }
+        }
+
+        /**
+         * Builds the cube of the handled persons.
+         *
+         * @return the cube
+         */
+        public YearlyCube build()
+        {
+            final Cache[] totals = new Cache[Years];
+            final MarriedWithChildren[] marriages = new MarriedWithChildren[Years];
+
+            for (int year = 0; year < Years; year++)
+            {
+                if (Caches[year] != null)
+                {
+                    totals[year] = new Cache(Caches[year].Period);
+                    totals[year].mergeTotals(Caches[year]);
+                    marriages[year] = Caches[year].getMarriedWithChildren();
+                }
+            }
+
+            return new YearlyCube(totals, Dates, MarriedWithChildrenIndex.of(marriages));
+        }
+
+        /**
+         * Gets or creates the cache of the year of the given date.
+         *
+         * @param date the date, as epoch day
+         * @return the retrieved/created cache
+         */
+        private Cache getOrCreateCache(int date)
+        {
+            final int year = yearIndexOf(date);
+            Cache cache = Caches[year];
+            Dates[year]++;
+
+            if (cache == null)
+            {
+                cache = new Cache(year == 0 ? null : new PeriodYears(year, year));
+                Caches[year] = cache;
+            }
+
+            return cache;
+        }
+    }
+}
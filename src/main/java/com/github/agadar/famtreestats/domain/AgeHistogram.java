@@ -0,0 +1,236 @@
+package com.github.agadar.famtreestats.domain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Number of ages per year of age, from which quantiles such as the median are
+ * read. Unlike an average, these are not skewed by the many children that
+ * died young. Memory is fixed per histogram, whatever the number of ages, and
+ * histograms of separate groups can be combined exactly by adding them.
+ * <p>
+ * Caches keep their histograms as plain count arrays, allocated on the first
+ * age, which the static methods of this class work on.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class AgeHistogram
+{
+    /** Highest year of age counted separately; older ages are counted with it. */
+    public final static int MaxAge = 120;
+
+    /** Histogram of no ages. */
+    public final static AgeHistogram None = new AgeHistogram(null);
+
+    /** Number of ages per year of age, or null if there are none. */
+    private final int[] Counts;
+
+    /** Number of ages. */
+    private final long Count;
+
+    /**
+     * Instantiates a new AgeHistogram.
+     *
+     * @param counts number of ages per year of age, as kept by add(...), or
+     * null if there are none; copied
+     */
+    public AgeHistogram(int[] counts)
+    {
+        long count = 0;
+
+        if (counts != null)
+        {
+            for (int ages : counts)
+            {
+                count += ages;
+            }
+        }
+
+        // Counts from which all ages were subtracted are the same as none.
+        this.Counts = count == 0 ? null : counts.clone();
+        this.Count = count;
+    }
+
+    /**
+     * Gives the number of ages.
+     *
+     * @return the number of ages
+     */
+    public long count()
+    {
+        return Count;
+    }
+
+    /**
+     * Gives the number of ages in the given year of age.
+     *
+     * @param age the year of age, from 0 to MaxAge
+     * @return the number of ages
+     */
+    public int count(int age)
+    {
+        return Counts == null ? 0 : Counts[age];
+    }
+
+    /**
+     * Gives the given quantile, by nearest rank: the lowest year of age that
+     * at least the given share of the ages are at or below.
+     *
+     * @param share the share, from 0 to 1
+     * @return the quantile in years, or 0 if there are no ages
+     */
+    public int quantile(double share)
+    {
+        if (Count == 0)
+        {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(share * Count));
+        long below = 0;
+
+        for (int age = 0; age < MaxAge; age++)
+        {
+            below += Counts[age];
+
+            if (below >= rank)
+            {
+                return age;
+            }
+        }
+
+        return MaxAge;
+    }
+
+    /**
+     * Gives the median, see quantile(...).
+     *
+     * @return the median in years, or 0 if there are no ages
+     */
+    public int median()
+    {
+        return quantile(0.5);
+    }
+
+    /**
+     * Gives the histogram of both this histogram's ages and the given one's.
+     *
+     * @param other the histogram to add to this one
+     * @return the combined histogram
+     */
+    public AgeHistogram plus(AgeHistogram other)
+    {
+        return new AgeHistogram(merge(Counts == null ? null : Counts.clone(), other.Counts));
+    }
+
+    /**
+     * Counts the given age in the given counts.
+     *
+     * @param counts the counts, or null if there are none yet
+     * @param days the age in days; negative ages are counted as 0
+     * @return the counts, allocated if null
+     */
+    public static int[] add(int[] counts, long days)
+    {
+        final int[] added = counts == null ? new int[MaxAge + 1] : counts;
+        added[(int) Math.max(0, Math.min(MaxAge, days / 365))]++;
+        return added;
+    }
+
+    /**
+     * Adds the given other counts to the given counts.
+     *
+     * @param counts the counts to add to, or null if there are none yet
+     * @param other the counts to add, may be null
+     * @return the counts, allocated if null and other is not
+     */
+    public static int[] merge(int[] counts, int[] other)
+    {
+        if (other == null)
+        {
+            return counts;
+        }
+
+        final int[] merged = counts == null ? new int[MaxAge + 1] : counts;
+
+        for (int age = 0; age <= MaxAge; age++)
+        {
+            merged[age] += other[age];
+        }
+
+        return merged;
+    }
+
+    /**
+     * Subtracts the given other counts from the given counts, which must have
+     * had them added. Undoes merge(counts, other).
+     *
+     * @param counts the counts to subtract from, may be null if other is
+     * @param other the counts to subtract, may be null
+     */
+    public static void subtract(int[] counts, int[] other)
+    {
+        if (other == null)
+        {
+            return;
+        }
+
+        for (int age = 0; age <= MaxAge; age++)
+        {
+            counts[age] -= other[age];
+        }
+    }
+
+    /**
+     * Writes the given counts to the given output, so that they can be read
+     * again by read(...).
+     *
+     * @param counts the counts, may be null
+     * @param out the output to write to
+     * @throws IOException if writing failed
+     */
+    public static void write(int[] counts, DataOutput out) throws IOException
+    {
+        out.writeBoolean(counts != null);
+
+        if (counts != null)
+        {
+            for (int ages : counts)
+            {
+                out.writeInt(ages);
+            }
+        }
+    }
+
+    /**
+     * Reads counts written by write(...).
+     *
+     * @param in the input to read from
+     * @return the read counts, or null if there were none
+     * @throws IOException if reading failed
+     */
+    public static int[] read(DataInput in) throws IOException
+    {
+        if (!in.readBoolean())
+        {
+            return null;
+        }
+
+        final int[] counts = new int[MaxAge + 1];
+
+        for (int age = 0; age <= MaxAge; age++)
+        {
+            counts[age] = in.readInt();
+        }
+
+        return counts;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Counts == null ? "[]" : Arrays.toString(Counts);
+    }
+}
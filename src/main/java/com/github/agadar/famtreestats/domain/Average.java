@@ -0,0 +1,89 @@
+package com.github.agadar.famtreestats.domain;
+
+/**
+ * Exact form of an average: the sum of the values and the number of values.
+ * Unlike the rounded average, averages of separate groups can be combined
+ * exactly by adding them.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class Average
+{
+    /** Average of no values. */
+    public final static Average None = new Average(0, 0);
+
+    /** Sum of the values. */
+    public final long Total;
+
+    /** Number of values. */
+    public final long Count;
+
+    /**
+     * Instantiates a new Average.
+     *
+     * @param Total sum of the values
+     * @param Count number of values
+     */
+    public Average(long Total, long Count)
+    {
+        this.Total = Total;
+        this.Count = Count;
+    }
+
+    /**
+     * Gives the average of both this average's values and the given one's.
+     *
+     * @param other the average to add to this one
+     * @return the combined average
+     */
+    public Average plus(Average other)
+    {
+        return new Average(Total + other.Total, Count + other.Count);
+    }
+
+    /**
+     * Gives the average value.
+     *
+     * @return the average value, or NaN if there are no values
+     */
+    public double value()
+    {
+        return Count == 0 ? Double.NaN : (double) Total / Count;
+    }
+
+    /**
+     * Gives the average value, rounded.
+     *
+     * @return the rounded average value, or 0 if there are no values
+     */
+    public int rounded()
+    {
+        return Math.round((float) Total / (float) Count);
+    }
+
+    /**
+     * Gives the average value of days in years.
+     *
+     * @return the average value in years, or NaN if there are no values
+     */
+    public double years()
+    {
+        return value() / 365;
+    }
+
+    /**
+     * Gives the average value of days in years, rounded.
+     *
+     * @return the rounded average value in years, or 0 if there are no values
+     */
+    public int roundedYears()
+    {
+        return (int) Math.round((double) Total / (float) Count / 365);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Total + "/" + Count;
+    }
+}
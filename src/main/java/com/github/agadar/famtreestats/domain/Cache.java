@@ -3,8 +3,9 @@ package com.github.agadar.famtreestats.domain;
 import com.github.agadar.famtreestats.MarriedWithChildren;
 import com.github.agadar.famtreestats.enums.RelationType;
 import com.github.agadar.famtreestats.enums.Sex;
-import java.time.LocalDate;
-import static java.time.temporal.ChronoUnit.DAYS;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Cache holding variables for the family tree statistics calculations.
@@ -13,8 +14,14 @@ import static java.time.temporal.ChronoUnit.DAYS;
  */
 public class Cache extends PeriodBound
 {
+    /** Marks a cache written by writeTo(...): "FTSC". */
+    private final static int Magic = 0x46545343;
+    
+    /** Version of the format of writeTo(...), to be raised whenever it changes. */
+    private final static int Version = 2;
+    
     /** This calculator's MarriedWithChildren helper. */
-    private final MarriedWithChildren Mwc = new MarriedWithChildren();
+    private final MarriedWithChildren Mwc;
     
     // Values for calculating the averages           
     public long ageAtMarriageBothTotal = 0;
@@ -32,28 +39,44 @@ public class Cache extends PeriodBound
     public int deaths = 0;
     public int births = 0;
     
+    // Number of ages per year of age for calculating the quantiles, see 
+    // AgeHistogram; null until the first age
+    public int[] ageAtMarriageBothYears = null;
+    public int[] ageAtMarriageMaleYears = null;
+    public int[] ageAtMarriageFemaleYears = null;
+    public int[] ageAtDeathBothYears = null;
+    public int[] ageAtDeathMaleYears = null;
+    public int[] ageAtDeathFemaleYears = null;
+    
     public Cache(int yearFrom, int yearTo)
     {
         super(yearFrom, yearTo);
+        this.Mwc = new MarriedWithChildren();
     }
     
     public Cache(PeriodYears period)
+    {
+        this(period, new MarriedWithChildren());
+    }
+    
+    private Cache(PeriodYears period, MarriedWithChildren mwc)
     {
         super(period);
+        this.Mwc = mwc;
     }
     
     /**
      * Processes a person's data, using it to calculate the average ages at marriage.
      * 
-     * @param birthDate person's birth date
-     * @param marriageDate person's marriage date
+     * @param birthDate person's birth date, as epoch day
+     * @param marriageDate person's marriage date, as epoch day
      * @param relationType person's relationship type
      * @param sexType person's sex type
      */
-    public void processAgeAtMarriage(LocalDate birthDate, LocalDate marriageDate, 
+    public void processAgeAtMarriage(int birthDate, int marriageDate, 
             RelationType relationType, Sex sexType)
     {
-        if (birthDate == null || marriageDate == null || 
+        if (birthDate == PersonStore.NoDate || marriageDate == PersonStore.NoDate || 
                 !(relationType == RelationType.Marriage || 
                     relationType == RelationType.RegisteredPartnership))
         {
@@ -61,59 +84,67 @@ public class Cache extends PeriodBound
         }
         
         ageAtMarriageBothDivBy++;
-        final long daysBetween = DAYS.between(birthDate, marriageDate);
+        final long daysBetween = (long) marriageDate - birthDate;
         ageAtMarriageBothTotal += daysBetween;
+        ageAtMarriageBothYears = AgeHistogram.add(ageAtMarriageBothYears, daysBetween);
 
         if (sexType == Sex.Male)
         {
             ageAtMarriageMaleDivBy++;
             ageAtMarriageMaleTotal += daysBetween;
+            ageAtMarriageMaleYears = AgeHistogram.add(ageAtMarriageMaleYears, 
+                    daysBetween);
         }
         else if (sexType == Sex.Female)
         {
             ageAtMarriageFemaleDivBy++;
             ageAtMarriageFemaleTotal += daysBetween;
+            ageAtMarriageFemaleYears = AgeHistogram.add(ageAtMarriageFemaleYears, 
+                    daysBetween);
         }
     }
     
     /**
      * Processes a person's data, using it to calculate the average ages at death.
      * 
-     * @param birthDate person's birth date
-     * @param deathDate person's death date
+     * @param birthDate person's birth date, as epoch day
+     * @param deathDate person's death date, as epoch day
      * @param sexType person's sex type
      */
-    public void processAgeAtDeath(LocalDate birthDate, LocalDate deathDate, Sex sexType)
+    public void processAgeAtDeath(int birthDate, int deathDate, Sex sexType)
     {
-        if (birthDate == null || deathDate == null)
+        if (birthDate == PersonStore.NoDate || deathDate == PersonStore.NoDate)
         {
             return;
         }
             
         ageAtDeathBothDivBy++;
-        final long daysBetween = DAYS.between(birthDate, deathDate);
+        final long daysBetween = (long) deathDate - birthDate;
         ageAtDeathBothTotal += daysBetween;
+        ageAtDeathBothYears = AgeHistogram.add(ageAtDeathBothYears, daysBetween);
 
         if (sexType == Sex.Male)
         {
             ageAtDeathMaleDivBy++;
             ageAtDeathMaleTotal += daysBetween;
+            ageAtDeathMaleYears = AgeHistogram.add(ageAtDeathMaleYears, daysBetween);
         }
         else if (sexType == Sex.Female)
         {
             ageAtDeathFemaleDivBy++;
             ageAtDeathFemaleTotal += daysBetween;
+            ageAtDeathFemaleYears = AgeHistogram.add(ageAtDeathFemaleYears, daysBetween);
         }           
     }
 
     /**
      * Processes a death date.
      * 
-     * @param deathDate the death date to process
+     * @param deathDate the death date to process, as epoch day
      */
-    public void processDeath(LocalDate deathDate)
+    public void processDeath(int deathDate)
     {
-        if (deathDate != null)
+        if (deathDate != PersonStore.NoDate)
         {
             deaths++;
         }
@@ -122,11 +153,11 @@ public class Cache extends PeriodBound
     /**
      * Processes a birth date.
      * 
-     * @param birthDate the birth date to process
+     * @param birthDate the birth date to process, as epoch day
      */
-    public void processBirth(LocalDate birthDate)
+    public void processBirth(int birthDate)
     {
-        if (birthDate != null)
+        if (birthDate != PersonStore.NoDate)
         {
             births++;
         }
@@ -136,6 +167,7 @@ public class Cache extends PeriodBound
      * Processes a person's data, using it to calculate the average number of
      * children per marriage.
      * 
+     * @param position position of the person's row, increasing in file order
      * @param id person's id
      * @param fatherId person's father's id
      * @param motherId person's mother's id
@@ -143,24 +175,256 @@ public class Cache extends PeriodBound
      * @param partnerId person's partner's id
      * @param relationType type of the relation
      */
-    public void processChildrenAtMarriage(int id, int fatherId, int motherId,
+    public void processChildrenAtMarriage(long position, int id, int fatherId, int motherId,
             int relationId, int partnerId, RelationType relationType)
     {
-        // Register child if both parent id's are known.
-        if (fatherId != -1 && motherId != -1 && id != -1)
+        if (registersChild(id, fatherId, motherId))
         {
             Mwc.registerChild(id, fatherId, motherId);
         }
 
-        // Register couple if relationship id and partner id are known.
-        if (relationId != -1 && partnerId != -1 && id != -1 && 
-            (relationType == RelationType.Marriage ||
-             relationType == RelationType.RegisteredPartnership))
+        if (registersCouple(id, relationId, partnerId, relationType))
         {
-            Mwc.registerCouple(relationId, id, partnerId);
+            Mwc.registerCouple(relationId, id, partnerId, position);
         }
     }
     
+    /**
+     * Returns whether processChildrenAtMarriage(...) registers a person as a
+     * child: if both parent id's are known.
+     * 
+     * @param id person's id
+     * @param fatherId person's father's id
+     * @param motherId person's mother's id
+     * @return whether the person is registered as a child
+     */
+    public static boolean registersChild(int id, int fatherId, int motherId)
+    {
+        return fatherId != PersonStore.NoId && motherId != PersonStore.NoId 
+                && id != PersonStore.NoId;
+    }
+    
+    /**
+     * Returns whether processChildrenAtMarriage(...) registers a person's 
+     * relation as a couple: if the relationship id and partner id are known 
+     * and the relation is a marriage or registered partnership.
+     * 
+     * @param id person's id
+     * @param relationId person's relation id
+     * @param partnerId person's partner's id
+     * @param relationType type of the relation
+     * @return whether the person's relation is registered as a couple
+     */
+    public static boolean registersCouple(int id, int relationId, int partnerId, 
+            RelationType relationType)
+    {
+        return relationId != PersonStore.NoId && partnerId != PersonStore.NoId 
+                && id != PersonStore.NoId && (relationType == RelationType.Marriage 
+                || relationType == RelationType.RegisteredPartnership);
+    }
+    
+    /**
+     * Merges the values of the given cache into this one, as if the persons 
+     * processed by the given cache had been processed by this one. Merging is
+     * associative and commutative, so partial caches built on separate threads,
+     * file shards or JVMs can be merged in any order.
+     * 
+     * @param other the cache to merge into this one
+     */
+    public void merge(Cache other)
+    {
+        mergeTotals(other);
+        Mwc.merge(other.Mwc);
+    }
+    
+    /**
+     * Merges the totals and counts of the given cache into this one, but not
+     * its couples and children.
+     * 
+     * @param other the cache to merge the totals and counts of
+     */
+    public void mergeTotals(Cache other)
+    {
+        ageAtMarriageBothTotal += other.ageAtMarriageBothTotal;
+        ageAtMarriageBothDivBy += other.ageAtMarriageBothDivBy;
+        ageAtMarriageMaleTotal += other.ageAtMarriageMaleTotal;
+        ageAtMarriageMaleDivBy += other.ageAtMarriageMaleDivBy;
+        ageAtMarriageFemaleTotal += other.ageAtMarriageFemaleTotal;
+        ageAtMarriageFemaleDivBy += other.ageAtMarriageFemaleDivBy;
+        ageAtDeathBothTotal += other.ageAtDeathBothTotal;
+        ageAtDeathBothDivBy += other.ageAtDeathBothDivBy;
+        ageAtDeathMaleTotal += other.ageAtDeathMaleTotal;
+        ageAtDeathMaleDivBy += other.ageAtDeathMaleDivBy;
+        ageAtDeathFemaleTotal += other.ageAtDeathFemaleTotal;
+        ageAtDeathFemaleDivBy += other.ageAtDeathFemaleDivBy;
+        deaths += other.deaths;
+        births += other.births;
+        ageAtMarriageBothYears = AgeHistogram.merge(ageAtMarriageBothYears,
+                other.ageAtMarriageBothYears);
+        ageAtMarriageMaleYears = AgeHistogram.merge(ageAtMarriageMaleYears,
+                other.ageAtMarriageMaleYears);
+        ageAtMarriageFemaleYears = AgeHistogram.merge(ageAtMarriageFemaleYears,
+                other.ageAtMarriageFemaleYears);
+        ageAtDeathBothYears = AgeHistogram.merge(ageAtDeathBothYears,
+                other.ageAtDeathBothYears);
+        ageAtDeathMaleYears = AgeHistogram.merge(ageAtDeathMaleYears,
+                other.ageAtDeathMaleYears);
+        ageAtDeathFemaleYears = AgeHistogram.merge(ageAtDeathFemaleYears,
+                other.ageAtDeathFemaleYears);
+    }
+    
+    /**
+     * Subtracts the totals and counts of the given cache from this one, as if
+     * the persons processed by the given cache had never been processed by 
+     * this one. Undoes mergeTotals(other).
+     * 
+     * @param other the cache to subtract the totals and counts of
+     */
+    public void subtractTotals(Cache other)
+    {
+        ageAtMarriageBothTotal -= other.ageAtMarriageBothTotal;
+        ageAtMarriageBothDivBy -= other.ageAtMarriageBothDivBy;
+        ageAtMarriageMaleTotal -= other.ageAtMarriageMaleTotal;
+        ageAtMarriageMaleDivBy -= other.ageAtMarriageMaleDivBy;
+        ageAtMarriageFemaleTotal -= other.ageAtMarriageFemaleTotal;
+        ageAtMarriageFemaleDivBy -= other.ageAtMarriageFemaleDivBy;
+        ageAtDeathBothTotal -= other.ageAtDeathBothTotal;
+        ageAtDeathBothDivBy -= other.ageAtDeathBothDivBy;
+        ageAtDeathMaleTotal -= other.ageAtDeathMaleTotal;
+        ageAtDeathMaleDivBy -= other.ageAtDeathMaleDivBy;
+        ageAtDeathFemaleTotal -= other.ageAtDeathFemaleTotal;
+        ageAtDeathFemaleDivBy -= other.ageAtDeathFemaleDivBy;
+        deaths -= other.deaths;
+        births -= other.births;
+        AgeHistogram.subtract(ageAtMarriageBothYears, other.ageAtMarriageBothYears);
+        AgeHistogram.subtract(ageAtMarriageMaleYears, other.ageAtMarriageMaleYears);
+        AgeHistogram.subtract(ageAtMarriageFemaleYears, other.ageAtMarriageFemaleYears);
+        AgeHistogram.subtract(ageAtDeathBothYears, other.ageAtDeathBothYears);
+        AgeHistogram.subtract(ageAtDeathMaleYears, other.ageAtDeathMaleYears);
+        AgeHistogram.subtract(ageAtDeathFemaleYears, other.ageAtDeathFemaleYears);
+    }
+    
+    /**
+     * Gives this cache's MarriedWithChildren helper.
+     * 
+     * @return the helper
+     */
+    public MarriedWithChildren getMarriedWithChildren()
+    {
+        return Mwc;
+    }
+    
+    /**
+     * Writes this cache to the given output, so that it can be read again by
+     * readFrom(...), possibly in another JVM. The cache is preceded by a magic
+     * number and the version of the format.
+     * 
+     * @param out the output to write to
+     * @throws IOException if writing failed
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(Magic);
+        out.writeInt(Version);
+        out.writeBoolean(Period != null);
+        
+        if (Period != null)
+        {
+            out.writeInt(Period.YearFrom);
+            out.writeInt(Period.YearTo);
+        }
+        
+        out.writeLong(ageAtMarriageBothTotal);
+        out.writeInt(ageAtMarriageBothDivBy);
+        out.writeLong(ageAtMarriageMaleTotal);
+        out.writeInt(ageAtMarriageMaleDivBy);
+        out.writeLong(ageAtMarriageFemaleTotal);
+        out.writeInt(ageAtMarriageFemaleDivBy);
+        out.writeLong(ageAtDeathBothTotal);
+        out.writeInt(ageAtDeathBothDivBy);
+        out.writeLong(ageAtDeathMaleTotal);
+        out.writeInt(ageAtDeathMaleDivBy);
+        out.writeLong(ageAtDeathFemaleTotal);
+        out.writeInt(ageAtDeathFemaleDivBy);
+        out.writeInt(deaths);
+        out.writeInt(births);
+        AgeHistogram.write(ageAtMarriageBothYears, out);
+        AgeHistogram.write(ageAtMarriageMaleYears, out);
+        AgeHistogram.write(ageAtMarriageFemaleYears, out);
+        AgeHistogram.write(ageAtDeathBothYears, out);
+        AgeHistogram.write(ageAtDeathMaleYears, out);
+        AgeHistogram.write(ageAtDeathFemaleYears, out);
+        Mwc.writeTo(out);
+    }
+    
+    /**
+     * Reads a cache written by writeTo(...).
+     * 
+     * @param in the input to read from
+     * @return the read cache
+     * @throws IOException if reading failed
+     * @throws IllegalArgumentException if the input does not hold a cache, or
+     * one written in another version of the format
+     */
+    public static Cache readFrom(DataInput in) throws IOException
+    {
+        final int magic = in.readInt();
+        final int version = in.readInt();
+        
+        if (magic != Magic || version != Version)
+        {
+            throw new IllegalArgumentException(magic != Magic 
+                    ? "Input does not hold a cache" 
+                    : "Cache was written in version " + version + " of the format, not " 
+                    + Version);
+        }
+        
+        final PeriodYears period = in.readBoolean() 
+                ? new PeriodYears(in.readInt(), in.readInt()) : null;
+        final long ageAtMarriageBothTotal = in.readLong();
+        final int ageAtMarriageBothDivBy = in.readInt();
+        final long ageAtMarriageMaleTotal = in.readLong();
+        final int ageAtMarriageMaleDivBy = in.readInt();
+        final long ageAtMarriageFemaleTotal = in.readLong();
+        final int ageAtMarriageFemaleDivBy = in.readInt();
+        final long ageAtDeathBothTotal = in.readLong();
+        final int ageAtDeathBothDivBy = in.readInt();
+        final long ageAtDeathMaleTotal = in.readLong();
+        final int ageAtDeathMaleDivBy = in.readInt();
+        final long ageAtDeathFemaleTotal = in.readLong();
+        final int ageAtDeathFemaleDivBy = in.readInt();
+        final int deaths = in.readInt();
+        final int births = in.readInt();
+        final int[] ageAtMarriageBothYears = AgeHistogram.read(in);
+        final int[] ageAtMarriageMaleYears = AgeHistogram.read(in);
+        final int[] ageAtMarriageFemaleYears = AgeHistogram.read(in);
+        final int[] ageAtDeathBothYears = AgeHistogram.read(in);
+        final int[] ageAtDeathMaleYears = AgeHistogram.read(in);
+        final int[] ageAtDeathFemaleYears = AgeHistogram.read(in);
+        final Cache cache = new Cache(period, MarriedWithChildren.readFrom(in));
+        cache.ageAtMarriageBothTotal = ageAtMarriageBothTotal;
+        cache.ageAtMarriageBothDivBy = ageAtMarriageBothDivBy;
+        cache.ageAtMarriageMaleTotal = ageAtMarriageMaleTotal;
+        cache.ageAtMarriageMaleDivBy = ageAtMarriageMaleDivBy;
+        cache.ageAtMarriageFemaleTotal = ageAtMarriageFemaleTotal;
+        cache.ageAtMarriageFemaleDivBy = ageAtMarriageFemaleDivBy;
+        cache.ageAtDeathBothTotal = ageAtDeathBothTotal;
+        cache.ageAtDeathBothDivBy = ageAtDeathBothDivBy;
+        cache.ageAtDeathMaleTotal = ageAtDeathMaleTotal;
+        cache.ageAtDeathMaleDivBy = ageAtDeathMaleDivBy;
+        cache.ageAtDeathFemaleTotal = ageAtDeathFemaleTotal;
+        cache.ageAtDeathFemaleDivBy = ageAtDeathFemaleDivBy;
+        cache.deaths = deaths;
+        cache.births = births;
+        cache.ageAtMarriageBothYears = ageAtMarriageBothYears;
+        cache.ageAtMarriageMaleYears = ageAtMarriageMaleYears;
+        cache.ageAtMarriageFemaleYears = ageAtMarriageFemaleYears;
+        cache.ageAtDeathBothYears = ageAtDeathBothYears;
+        cache.ageAtDeathMaleYears = ageAtDeathMaleYears;
+        cache.ageAtDeathFemaleYears = ageAtDeathFemaleYears;
+        return cache;
+    }
+    
     /**
      * Produces statistics based on this cache's values.
      * 
@@ -168,34 +432,32 @@ public class Cache extends PeriodBound
      */
     public Statistics calculateStatistics()
     {
-        final int ageAtMarriageBothResult = averageYears(ageAtMarriageBothTotal, 
-                                                         ageAtMarriageBothDivBy);
-        final int ageAtMarriageMaleResult = averageYears(ageAtMarriageMaleTotal, 
-                                                         ageAtMarriageMaleDivBy);
-        final int ageAtMarriageFemaleResult = averageYears(ageAtMarriageFemaleTotal, 
-                                                           ageAtMarriageFemaleDivBy);
-        final int ageAtDeathBothResult = averageYears(ageAtDeathBothTotal, 
-                                                      ageAtDeathBothDivBy);
-        final int ageAtDeathMaleResult = averageYears(ageAtDeathMaleTotal, 
-                                                      ageAtDeathMaleDivBy);
-        final int ageAtDeathFemaleResult = averageYears(ageAtDeathFemaleTotal, 
-                                                        ageAtDeathFemaleDivBy);
-        final int avgChildrenPerMarriage = Mwc.averageNumberOfChildren();
-        return new Statistics(this.Period, ageAtMarriageBothResult, ageAtMarriageMaleResult,
-                ageAtMarriageFemaleResult, ageAtDeathBothResult, ageAtDeathMaleResult,
-                ageAtDeathFemaleResult, avgChildrenPerMarriage, deaths, births);
+        return calculateStatistics(Mwc.numberOfChildren());
     }
     
     /**
-     * Convenience method for dividing the given days by the given divideBy
-     * and translating it to rounded years.
+     * Produces statistics based on this cache's values, using the given 
+     * number of children per marriage instead of the one of this cache's
+     * couples and children.
      * 
-     * @param total
-     * @param quantity
+     * @param childrenPerMarriage the number of children and of marriages
      * @return 
      */
-    private static int averageYears(long days, int divideBy)
+    public Statistics calculateStatistics(Average childrenPerMarriage)
     {
-        return (int) Math.round((double) days / (float) divideBy / 365);
+        return new Statistics(this.Period, 
+                new Average(ageAtMarriageBothTotal, ageAtMarriageBothDivBy),
+                new Average(ageAtMarriageMaleTotal, ageAtMarriageMaleDivBy),
+                new Average(ageAtMarriageFemaleTotal, ageAtMarriageFemaleDivBy),
+                new Average(ageAtDeathBothTotal, ageAtDeathBothDivBy),
+                new Average(ageAtDeathMaleTotal, ageAtDeathMaleDivBy),
+                new Average(ageAtDeathFemaleTotal, ageAtDeathFemaleDivBy),
+                childrenPerMarriage, deaths, births,
+                new AgeHistogram(ageAtMarriageBothYears),
+                new AgeHistogram(ageAtMarriageMaleYears),
+                new AgeHistogram(ageAtMarriageFemaleYears),
+                new AgeHistogram(ageAtDeathBothYears),
+                new AgeHistogram(ageAtDeathMaleYears),
+                new AgeHistogram(ageAtDeathFemaleYears));
     }
 }
@@ -0,0 +1,125 @@
+package com.github.agadar.famtreestats.domain;
+
+/**
+ * Statistics spanning several persons, such as the age of parents at the
+ * birth of their children, for which the persons that others refer to by id
+ * must be looked up. All are calculated in a single pass over the persons,
+ * using the store's PersonIndex. Ages are in days, see Average.years().
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class FamilyStatistics
+{
+    /** Age of fathers at the birth of their children. */
+    public final Average FatherAgeAtBirth;
+
+    /** Age of mothers at the birth of their children. */
+    public final Average MotherAgeAtBirth;
+
+    /** Difference between the ages of partners, regardless of who is older. */
+    public final Average PartnerAgeGap;
+
+    /**
+     * Instantiates a new FamilyStatistics.
+     *
+     * @param FatherAgeAtBirth age of fathers at the birth of their children
+     * @param MotherAgeAtBirth age of mothers at the birth of their children
+     * @param PartnerAgeGap difference between the ages of partners
+     */
+    public FamilyStatistics(Average FatherAgeAtBirth, Average MotherAgeAtBirth,
+            Average PartnerAgeGap)
+    {
+        this.FatherAgeAtBirth = FatherAgeAtBirth;
+        this.MotherAgeAtBirth = MotherAgeAtBirth;
+        this.PartnerAgeGap = PartnerAgeGap;
+    }
+
+    /**
+     * Calculates the statistics of the given persons. Each person counts once
+     * as a child, on its first row. Each pair of partners counts once per
+     * relation, on the row of the partner with the lowest id. Persons or
+     * parents of whom the birth date is unknown, and parents and partners
+     * that are not in the store, are skipped.
+     *
+     * @param persons the persons
+     * @return the statistics
+     */
+    public static FamilyStatistics of(PersonStore persons)
+    {
+        final PersonIndex index = persons.getIndex();
+        long fatherTotal = 0;
+        long fatherCount = 0;
+        long motherTotal = 0;
+        long motherCount = 0;
+        long gapTotal = 0;
+        long gapCount = 0;
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            final int id = persons.getId(row);
+            final int birthDate = persons.getBirthDate(row);
+
+            if (id == PersonStore.NoId || birthDate == PersonStore.NoDate)
+            {
+                continue;
+            }
+
+            if (index.rowOf(id) == row)
+            {
+                final int fatherBirthDate = birthDateOf(persons, index, persons.getFatherId(row));
+                final int motherBirthDate = birthDateOf(persons, index, persons.getMotherId(row));
+
+                if (fatherBirthDate != PersonStore.NoDate)
+                {
+                    fatherTotal += (long) birthDate - fatherBirthDate;
+                    fatherCount++;
+                }
+
+                if (motherBirthDate != PersonStore.NoDate)
+                {
+                    motherTotal += (long) birthDate - motherBirthDate;
+                    motherCount++;
+                }
+            }
+
+            final int partnerId = persons.getPartnerId(row);
+
+            if (partnerId != PersonStore.NoId && id < partnerId)
+            {
+                final int partnerBirthDate = birthDateOf(persons, index, partnerId);
+
+                if (partnerBirthDate != PersonStore.NoDate)
+                {
+                    gapTotal += Math.abs((long) birthDate - partnerBirthDate);
+                    gapCount++;
+                }
+            }
+        }
+
+        return new FamilyStatistics(new Average(fatherTotal, fatherCount),
+                new Average(motherTotal, motherCount), new Average(gapTotal, gapCount));
+    }
+
+    /**
+     * Gives the birth date of the person with the given id, or NoDate if it
+     * is unknown or there is no such person.
+     */
+    private static int birthDateOf(PersonStore persons, PersonIndex index, int id)
+    {
+        if (id == PersonStore.NoId)
+        {
+            return PersonStore.NoDate;
+        }
+
+        final int row = index.rowOf(id);
+        return row == PersonIndex.NoRow ? PersonStore.NoDate : persons.getBirthDate(row);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "father's age at birth " + FatherAgeAtBirth.roundedYears()
+                + ", mother's age at birth " + MotherAgeAtBirth.roundedYears()
+                + ", partners' age gap " + PartnerAgeGap.roundedYears();
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.agadar.famtreestats.domain;
+
+import com.github.agadar.famtreestats.enums.Column;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Diagnostics gathered while loading a persons CSV-file.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class LoadDiagnostics
+{
+    /** Number of rows read. */
+    public final int Rows;
+
+    /** Number of malformed values per column, indexed by Column ordinal. */
+    private final int[] Malformed;
+
+    /** Columns missing from the header, whose values are all unknown. */
+    private final Set<Column> Missing;
+
+    /**
+     * Instantiates a new LoadDiagnostics object, of a file with all columns.
+     *
+     * @param rows number of rows read
+     * @param malformed number of malformed values per column, indexed by Column ordinal
+     */
+    public LoadDiagnostics(int rows, int[] malformed)
+    {
+        this(rows, malformed, EnumSet.noneOf(Column.class));
+    }
+
+    /**
+     * Instantiates a new LoadDiagnostics object.
+     *
+     * @param rows number of rows read
+     * @param malformed number of malformed values per column, indexed by Column ordinal
+     * @param missing columns missing from the header
+     */
+    public LoadDiagnostics(int rows, int[] malformed, Set<Column> missing)
+    {
+        this.Rows = rows;
+        this.Malformed = Arrays.copyOf(malformed, Column.values().length);
+        this.Missing = missing.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(missing));
+    }
+
+    /**
+     * Returns the columns that were missing from the header, whose values
+     * were therefore all read as unknown.
+     *
+     * @return the missing columns
+     */
+    public Set<Column> getMissing()
+    {
+        return Missing;
+    }
+
+    /**
+     * Returns the number of values of the given column that were present, but
+     * could not be parsed.
+     *
+     * @param column the column
+     * @return the number of malformed values
+     */
+    public int getMalformed(Column column)
+    {
+        return Malformed[column.ordinal()];
+    }
+
+    /**
+     * Returns the total number of values that were present, but could not be
+     * parsed.
+     *
+     * @return the total number of malformed values
+     */
+    public int getMalformedTotal()
+    {
+        int total = 0;
+
+        for (int count : Malformed)
+        {
+            total += count;
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns new diagnostics combining these and the given diagnostics.
+     *
+     * @param other the diagnostics to combine with these
+     * @return the combined diagnostics
+     */
+    public LoadDiagnostics merge(LoadDiagnostics other)
+    {
+        final int[] malformed = new int[Malformed.length];
+
+        for (int i = 0; i < malformed.length; i++)
+        {
+            malformed[i] = Malformed[i] + other.Malformed[i];
+        }
+
+        final Set<Column> missing = EnumSet.noneOf(Column.class);
+        missing.addAll(Missing);
+        missing.addAll(other.Missing);
+        return new LoadDiagnostics(Rows + other.Rows, malformed, missing);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(Rows).append(" rows read, ").append(getMalformedTotal())
+                .append(" malformed values");
+
+        for (Column column : Column.values())
+        {
+            final int count = getMalformed(column);
+
+            if (count > 0)
+            {
+                builder.append(", ").append(column.getColumnName()).append(": ").append(count);
+            }
+        }
+
+        if (!Missing.isEmpty())
+        {
+            builder.append(", missing columns:");
+
+            for (Column column : Missing)
+            {
+                builder.append(' ').append(column.getColumnName());
+            }
+        }
+
+        return builder.toString();
+    }
+}
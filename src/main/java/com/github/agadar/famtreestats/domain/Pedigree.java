@@ -0,0 +1,502 @@
+package com.github.agadar.famtreestats.domain;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Graph of the parent links between the persons in a PersonStore, along with
+ * per-person metrics derived from it. Each person, listed on one or more rows
+ * of the store, is a node numbered 0 up to size(). The parents of a node are
+ * kept per node; its children in compressed sparse row form, so that the
+ * graph takes a few int's per person and link regardless of its shape.
+ * <p>
+ * The metrics are calculated once, on construction, by walking the nodes in
+ * topological order, without recursion, in time linear in the persons and
+ * links. Families that are not linked to each other are walked in parallel.
+ * Bad data may make a person its own ancestor; the metrics of such persons
+ * and of their descendants are Unknown, and they are counted by getCyclic().
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class Pedigree
+{
+    /** Value given for persons that are not in the graph. */
+    public final static int NoNode = -1;
+
+    /** Value of the metrics of persons in or below a cycle. */
+    public final static int Unknown = -1;
+
+    /** Ranges with at most this many nodes are walked by a single task. */
+    private final static int Threshold = 1 << 16;
+
+    /** The persons the graph is made of. */
+    private final PersonStore Persons;
+
+    /** Node per row, or NoNode if the row is not the first of its person. */
+    private final int[] NodeOfRow;
+
+    /** First row per node. */
+    private final int[] Rows;
+
+    // Parents per node, or NoNode if unknown.
+    private final int[] Fathers;
+    private final int[] Mothers;
+
+    /** Children of node i are Children[ChildOffsets[i]] up to Children[ChildOffsets[i + 1]]. */
+    private final int[] ChildOffsets;
+    private final int[] Children;
+
+    // Metrics per node.
+    private final int[] Generations;
+    private final long[] Ancestors;
+    private final long[] Descendants;
+
+    /** Number of persons whose metrics are Unknown. */
+    private final int Cyclic;
+
+    private Pedigree(PersonStore persons, ForkJoinPool pool)
+    {
+        final PersonIndex index = persons.getIndex();
+        this.Persons = persons;
+        this.NodeOfRow = new int[persons.size()];
+        Arrays.fill(NodeOfRow, NoNode);
+        int size = 0;
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            final int id = persons.getId(row);
+
+            if (id != PersonStore.NoId && index.rowOf(id) == row)
+            {
+                NodeOfRow[row] = size++;
+            }
+        }
+
+        this.Rows = new int[size];
+        this.Fathers = new int[size];
+        this.Mothers = new int[size];
+        this.ChildOffsets = new int[size + 1];
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            if (NodeOfRow[row] != NoNode)
+            {
+                Rows[NodeOfRow[row]] = row;
+            }
+        }
+
+        for (int node = 0; node < size; node++)
+        {
+            final int father = nodeOf(persons.getFatherId(Rows[node]));
+            final int mother = nodeOf(persons.getMotherId(Rows[node]));
+            Fathers[node] = father;
+            Mothers[node] = mother == father ? NoNode : mother;
+
+            if (Fathers[node] != NoNode)
+            {
+                ChildOffsets[Fathers[node] + 1]++;
+            }
+
+            if (Mothers[node] != NoNode)
+            {
+                ChildOffsets[Mothers[node] + 1]++;
+            }
+        }
+
+        for (int node = 0; node < size; node++)
+        {
+            ChildOffsets[node + 1] += ChildOffsets[node];
+        }
+
+        this.Children = new int[ChildOffsets[size]];
+        final int[] next = Arrays.copyOf(ChildOffsets, size);
+
+        for (int node = 0; node < size; node++)
+        {
+            if (Fathers[node] != NoNode)
+            {
+                Children[next[Fathers[node]]++] = node;
+            }
+
+            if (Mothers[node] != NoNode)
+            {
+                Children[next[Mothers[node]]++] = node;
+            }
+        }
+
+        this.Generations = new int[size];
+        this.Ancestors = new long[size];
+        this.Descendants = new long[size];
+        this.Cyclic = pool.invoke(new Families(size).walkTask());
+    }
+
+    /**
+     * Builds the graph of the given persons and calculates its metrics.
+     *
+     * @param persons the persons
+     * @param pool the pool to calculate the metrics on
+     * @return the graph
+     */
+    public static Pedigree of(PersonStore persons, ForkJoinPool pool)
+    {
+        return new Pedigree(persons, pool);
+    }
+
+    /**
+     * Gives the number of persons, and so of nodes.
+     *
+     * @return the number of persons
+     */
+    public int size()
+    {
+        return Rows.length;
+    }
+
+    /**
+     * Gives the node of the person with the given id.
+     *
+     * @param id the id of the person
+     * @return the node, or NoNode if there is no person with the id
+     */
+    public int nodeOf(int id)
+    {
+        final int row = Persons.getIndex().rowOf(id);
+        return row == PersonIndex.NoRow ? NoNode : NodeOfRow[row];
+    }
+
+    public int getRow(int node)
+    {
+        return Rows[node];
+    }
+
+    public int getFather(int node)
+    {
+        return Fathers[node];
+    }
+
+    public int getMother(int node)
+    {
+        return Mothers[node];
+    }
+
+    public int getChildCount(int node)
+    {
+        return ChildOffsets[node + 1] - ChildOffsets[node];
+    }
+
+    /**
+     * Gives a child of the given node.
+     *
+     * @param node the node
+     * @param i the number of the child, below getChildCount(node)
+     * @return the child's node
+     */
+    public int getChild(int node, int i)
+    {
+        return Children[ChildOffsets[node] + i];
+    }
+
+    /**
+     * Gives the generation of the given node: 0 if none of its parents are
+     * known, and otherwise one more than the highest generation of its
+     * parents.
+     *
+     * @param node the node
+     * @return the generation, or Unknown
+     */
+    public int getGeneration(int node)
+    {
+        return Generations[node];
+    }
+
+    /**
+     * Gives the number of known ancestors of the given node. An ancestor
+     * reached along several lines, through pedigree collapse, counts once per
+     * line, so that this is the number of filled positions in the node's
+     * pedigree chart. Capped at Long.MAX_VALUE.
+     *
+     * @param node the node
+     * @return the number of ancestors, or Unknown
+     */
+    public long getAncestors(int node)
+    {
+        return Ancestors[node];
+    }
+
+    /**
+     * Gives the number of descendants of the given node, each counted once
+     * per line of descent like getAncestors(...) does. Capped at
+     * Long.MAX_VALUE.
+     *
+     * @param node the node
+     * @return the number of descendants, or Unknown
+     */
+    public long getDescendants(int node)
+    {
+        return Descendants[node];
+    }
+
+    /**
+     * Gives the number of persons that are their own ancestor, through bad
+     * data, or descend from such a person, and whose metrics are therefore
+     * Unknown.
+     *
+     * @return the number of persons
+     */
+    public int getCyclic()
+    {
+        return Cyclic;
+    }
+
+    /**
+     * Adds a relative and the given count of its own relatives to the given
+     * total, giving Long.MAX_VALUE if the sum overflows.
+     */
+    private static long addLine(long total, long count)
+    {
+        return count >= Long.MAX_VALUE - total ? Long.MAX_VALUE : total + count + 1;
+    }
+
+    /**
+     * The families of the graph: the sets of nodes linked to each other by
+     * parent links, each laid out contiguously so that they can be walked
+     * independently.
+     */
+    private final class Families
+    {
+        /** Nodes of family i are Nodes[Offsets[i]] up to Nodes[Offsets[i + 1]]. */
+        private final int[] Offsets;
+        private final int[] Nodes;
+
+        /** Nodes in topological order, per family in the same range as Nodes. */
+        private final int[] Order;
+
+        /** Number of parents per node not walked yet. */
+        private final byte[] Pending;
+
+        Families(int size)
+        {
+            // Join each node with its parents, through union-find.
+            final int[] roots = new int[size];
+
+            for (int node = 0; node < size; node++)
+            {
+                roots[node] = node;
+            }
+
+            for (int node = 0; node < size; node++)
+            {
+                union(roots, node, Fathers[node]);
+                union(roots, node, Mothers[node]);
+            }
+
+            // Number the families, then lay out their nodes by family.
+            final int[] familyOfRoot = new int[size];
+            Arrays.fill(familyOfRoot, -1);
+            int families = 0;
+
+            for (int node = 0; node < size; node++)
+            {
+                final int root = find(roots, node);
+
+                if (familyOfRoot[root] < 0)
+                {
+                    familyOfRoot[root] = families++;
+                }
+            }
+
+            this.Offsets = new int[families + 1];
+
+            for (int node = 0; node < size; node++)
+            {
+                Offsets[familyOfRoot[find(roots, node)] + 1]++;
+            }
+
+            for (int family = 0; family < families; family++)
+            {
+                Offsets[family + 1] += Offsets[family];
+            }
+
+            this.Nodes = new int[size];
+            final int[] next = Arrays.copyOf(Offsets, families);
+
+            for (int node = 0; node < size; node++)
+            {
+                Nodes[next[familyOfRoot[find(roots, node)]]++] = node;
+            }
+
+            this.Order = new int[size];
+            this.Pending = new byte[size];
+        }
+
+        /**
+         * Gives a task walking all families.
+         *
+         * @return the task, giving the number of nodes in or below a cycle
+         */
+        WalkTask walkTask()
+        {
+            return new WalkTask(this, 0, Offsets.length - 1);
+        }
+
+        /**
+         * Walks the given family, calculating the metrics of its nodes.
+         * Ancestors are walked before descendants for the generations and
+         * ancestors, then the other way around for the descendants. Nodes
+         * that are never walked because a parent never is are in or below a
+         * cycle.
+         *
+         * @param family the family
+         * @return the number of nodes in or below a cycle
+         */
+        int walk(int family)
+        {
+            final int start = Offsets[family];
+            final int end = Offsets[family + 1];
+            int walked = start;
+
+            for (int i = start; i < end; i++)
+            {
+                final int node = Nodes[i];
+                Pending[node] = (byte) ((Fathers[node] == NoNode ? 0 : 1)
+                        + (Mothers[node] == NoNode ? 0 : 1));
+
+                if (Pending[node] == 0)
+                {
+                    Order[walked++] = node;
+                }
+            }
+
+            for (int i = start; i < walked; i++)
+            {
+                final int node = Order[i];
+
+                for (int child = ChildOffsets[node]; child < ChildOffsets[node + 1]; child++)
+                {
+                    final int next = Children[child];
+                    Generations[next] = Math.max(Generations[next], Generations[node] + 1);
+                    Ancestors[next] = addLine(Ancestors[next], Ancestors[node]);
+
+                    if (--Pending[next] == 0)
+                    {
+                        Order[walked++] = next;
+                    }
+                }
+            }
+
+            for (int i = walked - 1; i >= start; i--)
+            {
+                final int node = Order[i];
+                long descendants = 0;
+
+                for (int child = ChildOffsets[node]; child < ChildOffsets[node + 1]; child++)
+                {
+                    final int next = Children[child];
+
+                    if (Pending[next] > 0 || Descendants[next] == Unknown)
+                    {
+                        descendants = Unknown;
+                        break;
+                    }
+
+                    descendants = addLine(descendants, Descendants[next]);
+                }
+
+                Descendants[node] = descendants;
+            }
+
+            if (walked == end)
+            {
+                return 0;
+            }
+
+            for (int i = start; i < end; i++)
+            {
+                final int node = Nodes[i];
+
+                if (Pending[node] > 0)
+                {
+                    Generations[node] = Unknown;
+                    Ancestors[node] = Unknown;
+                    Descendants[node] = Unknown;
+                }
+            }
+
+            return end - walked;
+        }
+
+        /**
+         * Joins the sets of the given nodes, unless other is NoNode.
+         */
+        private void union(int[] roots, int node, int other)
+        {
+            if (other != NoNode)
+            {
+                roots[find(roots, node)] = find(roots, other);
+            }
+        }
+
+        /**
+         * Gives the root of the set of the given node, halving its path.
+         */
+        private int find(int[] roots, int node)
+        {
+            while (roots[node] != node)
+            {
+                roots[node] = roots[roots[node]];
+                node = roots[node];
+            }
+
+            return node;
+        }
+    }
+
+    /**
+     * Task walking a range of families, splitting it over subtasks if it
+     * holds many nodes.
+     */
+    private final static class WalkTask extends RecursiveTask<Integer>
+    {
+        private final Families Graph;
+        private final int From;
+        private final int To;
+
+        /**
+         * Instantiates a new task.
+         *
+         * @param families the families
+         * @param from first family to walk (inclusive)
+         * @param to last family to walk (exclusive)
+         */
+        WalkTask(Families families, int from, int to)
+        {
+            this.Graph = families;
+            this.From = from;
+            this.To = to;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if (To - From <= 1 || Graph.Offsets[To] - Graph.Offsets[From] <= Threshold)
+            {
+                int cyclic = 0;
+
+                for (int family = From; family < To; family++)
+                {
+                    cyclic += Graph.walk(family);
+                }
+
+                return cyclic;
+            }
+
+            // Walk both halves, then add up their cycles.
+            final int middle = (From + To) >>> 1;
+            final WalkTask right = new WalkTask(Graph, middle, To);
+            right.fork();
+            final int left = new WalkTask(Graph, From, middle).compute();
+            return left + right.join();
+        }
+    }
+}
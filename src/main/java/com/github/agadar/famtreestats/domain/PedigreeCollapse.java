@@ -0,0 +1,551 @@
+package com.github.agadar.famtreestats.domain;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Calculates for selected persons how far their pedigree collapses, meaning
+ * how many distinct ancestors they have per generation compared with the
+ * 2^n positions in a pedigree chart, and their inbreeding coefficient after
+ * Wright. Each query is answered within a time budget; if it runs out, the
+ * query gives what it found so far.
+ * <p>
+ * Distinct ancestors are found level by level, marking each ancestor with a
+ * stamp so that scratch memory is allocated once per task rather than per
+ * query. Inbreeding coefficients are calculated without recursion, oldest
+ * ancestor first, and kept for all queries to reuse, so that probands sharing
+ * ancestors share the work on them.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class PedigreeCollapse
+{
+    /** Ranges of at most this many queries are answered by a single task. */
+    private final static int Threshold = 16;
+
+    /** Number of steps between checks of a query's deadline, a power of 2. */
+    private final static int StepsPerCheck = 1 << 12;
+
+    /** Bits of NaN, marking inbreeding coefficients not calculated yet. */
+    private final static long NotCalculated = Double.doubleToRawLongBits(Double.NaN);
+
+    /** The graph the queries are about. */
+    private final Pedigree Graph;
+
+    /** Inbreeding coefficient per node as double bits, or NotCalculated. */
+    private final AtomicLongArray Inbreeding;
+
+    /**
+     * Instantiates a new engine over the given graph.
+     *
+     * @param pedigree the graph
+     */
+    public PedigreeCollapse(Pedigree pedigree)
+    {
+        this.Graph = pedigree;
+        this.Inbreeding = new AtomicLongArray(pedigree.size());
+
+        for (int node = 0; node < pedigree.size(); node++)
+        {
+            Inbreeding.set(node, NotCalculated);
+        }
+    }
+
+    /**
+     * Answers a query about the given node.
+     *
+     * @param node the node
+     * @param budgetMillis the time the query may take, in milliseconds
+     * @return the answer
+     */
+    public Result calculate(int node, long budgetMillis)
+    {
+        return new Query().answer(node, budgetMillis);
+    }
+
+    /**
+     * Answers queries about the given nodes on the given pool, each within
+     * the given budget, which starts when the query does.
+     *
+     * @param nodes the nodes
+     * @param budgetMillis the time each query may take, in milliseconds
+     * @param pool the pool to answer the queries on
+     * @return the answers, in the order of the nodes
+     */
+    public List<Result> calculate(int[] nodes, long budgetMillis, ForkJoinPool pool)
+    {
+        final Result[] results = new Result[nodes.length];
+        pool.invoke(new QueryTask(nodes, budgetMillis, results, 0, nodes.length));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Answer to a query about a person.
+     */
+    public final static class Result
+    {
+        /** The person's node. */
+        public final int Node;
+
+        /** Number of distinct ancestors of the person, over all generations. */
+        public final long DistinctAncestors;
+
+        /** The person's inbreeding coefficient, or NaN if not calculated. */
+        public final double Inbreeding;
+
+        /**
+         * Whether the query was answered in full. If not, because the budget
+         * ran out or the person is its own ancestor, only the generations
+         * given and their distinct ancestors are counted.
+         */
+        public final boolean Complete;
+
+        /** Distinct ancestors per generation, the person itself being generation 0. */
+        private final int[] Distinct;
+
+        Result(int Node, int[] Distinct, long DistinctAncestors, double Inbreeding,
+                boolean Complete)
+        {
+            this.Node = Node;
+            this.Distinct = Distinct;
+            this.DistinctAncestors = DistinctAncestors;
+            this.Inbreeding = Inbreeding;
+            this.Complete = Complete;
+        }
+
+        /**
+         * Gives the number of generations counted, including the person's own.
+         *
+         * @return the number of generations
+         */
+        public int getGenerations()
+        {
+            return Distinct.length;
+        }
+
+        /**
+         * Gives the number of distinct ancestors in the given generation: 1
+         * for generation 0, the parents' for generation 1, and so on.
+         *
+         * @param generation the generation, below getGenerations()
+         * @return the number of distinct ancestors
+         */
+        public int getDistinct(int generation)
+        {
+            return Distinct[generation];
+        }
+
+        /**
+         * Gives the pedigree collapse in the given generation: the share of
+         * its 2^generation positions that are not filled by distinct
+         * ancestors, be it through collapse or through ancestors being
+         * unknown.
+         *
+         * @param generation the generation, below getGenerations()
+         * @return the collapse, from 0 to 1
+         */
+        public double getCollapse(int generation)
+        {
+            return 1 - Distinct[generation] / Math.pow(2, generation);
+        }
+    }
+
+    /**
+     * Scratch memory for answering queries one after another.
+     */
+    private final class Query
+    {
+        /** Stamp per node, marking the nodes seen in the current generation. */
+        private final int[] GenerationStamps = new int[Graph.size()];
+
+        /** Stamp per node, marking the nodes seen in the current query. */
+        private final int[] QueryStamps = new int[Graph.size()];
+
+        /** Contribution per node to the current person's inbreeding, or 0. */
+        private final double[] Contributions = new double[Graph.size()];
+
+        private int generationStamp = 0;
+        private int queryStamp = 0;
+
+        /** Distinct ancestors of the current query's person. */
+        private int[] ancestors = new int[16];
+        private int ancestorsSize;
+
+        /** Max-heap of nodes packed by heapKeyOf(...), youngest generation on top. */
+        private long[] heap = new long[16];
+        private int heapSize;
+
+        /** Time at which the current query runs out of budget, as nano time. */
+        private long deadline;
+
+        /** Steps taken since the deadline was last checked. */
+        private int steps;
+
+        /**
+         * Answers a query about the given node.
+         *
+         * @param node the node
+         * @param budgetMillis the time the query may take, in milliseconds
+         * @return the answer
+         */
+        Result answer(int node, long budgetMillis)
+        {
+            deadline = System.nanoTime() + budgetMillis * 1000000;
+            steps = 0;
+            ancestorsSize = 0;
+
+            if (Graph.getGeneration(node) == Pedigree.Unknown)
+            {
+                return new Result(node, new int[] { 1 }, 0, Double.NaN, false);
+            }
+
+            // Walk the ancestors a generation at a time.
+            queryStamp = nextStamp(QueryStamps, queryStamp);
+            QueryStamps[node] = queryStamp;
+            int[] distinct = new int[16];
+            int generations = 0;
+            distinct[generations++] = 1;
+            int[] generation = new int[] { node };
+            int[] next = new int[16];
+            int generationSize = 1;
+
+            while (generationSize > 0)
+            {
+                generationStamp = nextStamp(GenerationStamps, generationStamp);
+                int nextSize = 0;
+
+                for (int i = 0; i < generationSize; i++)
+                {
+                    if (expired())
+                    {
+                        return new Result(node, Arrays.copyOf(distinct, generations),
+                                ancestorsSize, Double.NaN, false);
+                    }
+
+                    for (int side = 0; side < 2; side++)
+                    {
+                        final int parent = side == 0 ? Graph.getFather(generation[i])
+                                : Graph.getMother(generation[i]);
+
+                        if (parent == Pedigree.NoNode || GenerationStamps[parent] == generationStamp)
+                        {
+                            continue;
+                        }
+
+                        GenerationStamps[parent] = generationStamp;
+
+                        if (QueryStamps[parent] != queryStamp)
+                        {
+                            QueryStamps[parent] = queryStamp;
+
+                            if (ancestorsSize == ancestors.length)
+                            {
+                                ancestors = Arrays.copyOf(ancestors, ancestorsSize << 1);
+                            }
+
+                            ancestors[ancestorsSize++] = parent;
+                        }
+
+                        if (nextSize == next.length)
+                        {
+                            next = Arrays.copyOf(next, nextSize << 1);
+                        }
+
+                        next[nextSize++] = parent;
+                    }
+                }
+
+                if (nextSize > 0)
+                {
+                    if (generations == distinct.length)
+                    {
+                        distinct = Arrays.copyOf(distinct, generations << 1);
+                    }
+
+                    distinct[generations++] = nextSize;
+                }
+
+                final int[] walked = generation;
+                generation = next;
+                next = walked;
+                generationSize = nextSize;
+            }
+
+            final double inbreeding = inbreedingOf(node);
+            return new Result(node, Arrays.copyOf(distinct, generations), ancestorsSize,
+                    inbreeding, !Double.isNaN(inbreeding));
+        }
+
+        /**
+         * Gives the inbreeding coefficient of the given node, after that of
+         * each of its ancestors, oldest first, as the former depends on the
+         * latter. Expects the ancestors to have been found by answer(...).
+         *
+         * @param node the node
+         * @return the coefficient, or NaN if the budget ran out
+         */
+        private double inbreedingOf(int node)
+        {
+            final long[] oldestFirst = new long[ancestorsSize];
+
+            for (int i = 0; i < ancestorsSize; i++)
+            {
+                oldestFirst[i] = heapKeyOf(ancestors[i]);
+            }
+
+            Arrays.sort(oldestFirst);
+
+            for (long key : oldestFirst)
+            {
+                if (Double.isNaN(calculateInbreeding((int) key)))
+                {
+                    return Double.NaN;
+                }
+            }
+
+            return calculateInbreeding(node);
+        }
+
+        /**
+         * Calculates the inbreeding coefficient of the given node, unless it
+         * is known already, after Meuwissen and Luo (1992). The coefficients
+         * of its ancestors must be known. Its relationship with itself, being
+         * 1 + F, is the sum over it and its ancestors of the square of their
+         * contribution to it times their variance within their family. The
+         * contributions are found by walking from the node to its ancestors,
+         * youngest first, each passing half of its own to its parents.
+         *
+         * @param node the node
+         * @return the coefficient, or NaN if the budget ran out
+         */
+        private double calculateInbreeding(int node)
+        {
+            final double known = Double.longBitsToDouble(Inbreeding.get(node));
+
+            if (!Double.isNaN(known))
+            {
+                return known;
+            }
+
+            double relationship = 0;
+            Contributions[node] = 1;
+            push(node);
+
+            while (heapSize > 0)
+            {
+                final int next = pop();
+                final double contribution = Contributions[next];
+                Contributions[next] = 0;
+
+                if (expired())
+                {
+                    // Clear the contributions left, for the next query.
+                    while (heapSize > 0)
+                    {
+                        Contributions[pop()] = 0;
+                    }
+
+                    return Double.NaN;
+                }
+
+                relationship += contribution * contribution * varianceOf(next);
+
+                for (int side = 0; side < 2; side++)
+                {
+                    final int parent = side == 0 ? Graph.getFather(next) : Graph.getMother(next);
+
+                    if (parent != Pedigree.NoNode)
+                    {
+                        if (Contributions[parent] == 0)
+                        {
+                            push(parent);
+                        }
+
+                        Contributions[parent] += contribution / 2;
+                    }
+                }
+            }
+
+            final double inbreeding = relationship - 1;
+            Inbreeding.set(node, Double.doubleToRawLongBits(inbreeding));
+            return inbreeding;
+        }
+
+        /**
+         * Gives the variance of the given node within its family, relative
+         * to that of the population, which depends on the inbreeding of its
+         * known parents.
+         */
+        private double varianceOf(int node)
+        {
+            final int father = Graph.getFather(node);
+            final int mother = Graph.getMother(node);
+
+            if (father != Pedigree.NoNode && mother != Pedigree.NoNode)
+            {
+                return 0.5 - 0.25 * (inbreedingKnown(father) + inbreedingKnown(mother));
+            }
+
+            if (father != Pedigree.NoNode || mother != Pedigree.NoNode)
+            {
+                return 0.75 - 0.25 * inbreedingKnown(father == Pedigree.NoNode ? mother : father);
+            }
+
+            return 1;
+        }
+
+        /**
+         * Gives the inbreeding coefficient of the given node, which must be
+         * known.
+         */
+        private double inbreedingKnown(int node)
+        {
+            return Double.longBitsToDouble(Inbreeding.get(node));
+        }
+
+        /**
+         * Packs the given node with its generation, so that packed nodes sort
+         * by generation.
+         */
+        private long heapKeyOf(int node)
+        {
+            return ((long) Graph.getGeneration(node) << 32) | node;
+        }
+
+        /**
+         * Pushes the given node onto the heap.
+         */
+        private void push(int node)
+        {
+            if (heapSize == heap.length)
+            {
+                heap = Arrays.copyOf(heap, heapSize << 1);
+            }
+
+            final long key = heapKeyOf(node);
+            int i = heapSize++;
+
+            while (i > 0 && heap[(i - 1) >>> 1] < key)
+            {
+                heap[i] = heap[(i - 1) >>> 1];
+                i = (i - 1) >>> 1;
+            }
+
+            heap[i] = key;
+        }
+
+        /**
+         * Pops the node of the youngest generation off the heap.
+         */
+        private int pop()
+        {
+            final long top = heap[0];
+            final long last = heap[--heapSize];
+            int i = 0;
+
+            while (true)
+            {
+                int child = (i << 1) + 1;
+
+                if (child >= heapSize)
+                {
+                    break;
+                }
+
+                if (child + 1 < heapSize && heap[child + 1] > heap[child])
+                {
+                    child++;
+                }
+
+                if (heap[child] <= last)
+                {
+                    break;
+                }
+
+                heap[i] = heap[child];
+                i = child;
+            }
+
+            heap[i] = last;
+            return (int) top;
+        }
+
+        /**
+         * Returns whether the current query ran out of budget, checking the
+         * time only every StepsPerCheck steps.
+         */
+        private boolean expired()
+        {
+            return (++steps & (StepsPerCheck - 1)) == 0 && System.nanoTime() - deadline > 0;
+        }
+
+        /**
+         * Gives the stamp following the given one, clearing the given stamps
+         * if the stamp wraps around.
+         */
+        private int nextStamp(int[] stamps, int stamp)
+        {
+            if (stamp == Integer.MAX_VALUE)
+            {
+                Arrays.fill(stamps, 0);
+                return 1;
+            }
+
+            return stamp + 1;
+        }
+    }
+
+    /**
+     * Task answering a range of queries, splitting it over subtasks if it
+     * holds many.
+     */
+    private final class QueryTask extends RecursiveAction
+    {
+        private final int[] Nodes;
+        private final long BudgetMillis;
+        private final Result[] Results;
+        private final int From;
+        private final int To;
+
+        /**
+         * Instantiates a new task.
+         *
+         * @param nodes the nodes to answer queries about
+         * @param budgetMillis the time each query may take, in milliseconds
+         * @param results the array to put the answers in, at the nodes' indices
+         * @param from first query to answer (inclusive)
+         * @param to last query to answer (exclusive)
+         */
+        QueryTask(int[] nodes, long budgetMillis, Result[] results, int from, int to)
+        {
+            this.Nodes = nodes;
+            this.BudgetMillis = budgetMillis;
+            this.Results = results;
+            this.From = from;
+            this.To = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (To - From <= Threshold)
+            {
+                final Query query = new Query();
+
+                for (int i = From; i < To; i++)
+                {
+                    Results[i] = query.answer(Nodes[i], BudgetMillis);
+                }
+
+                return;
+            }
+
+            final int middle = (From + To) >>> 1;
+            invokeAll(new QueryTask(Nodes, BudgetMillis, Results, From, middle),
+                    new QueryTask(Nodes, BudgetMillis, Results, middle, To));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.agadar.famtreestats.domain;
+
+import com.github.agadar.famtreestats.misc.IntLongHashMap;
+import java.util.Arrays;
+
+/**
+ * Index from the id's of the persons in a PersonStore to their rows, so that
+ * the fathers, mothers and partners referred to by id can be looked up in
+ * constant time. A person listed on several rows, one per relation, is mapped
+ * to its first row. If the id's are dense enough, which exported trees usually
+ * are, the index is a plain array offset by the lowest id; otherwise it falls
+ * back to a hash map.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class PersonIndex
+{
+    /** Value given for id's that are not in the index. */
+    public final static int NoRow = -1;
+
+    /** At most this many array slots are used per row before falling back. */
+    private final static int MaxSlotsPerRow = 4;
+
+    /** Arrays of up to this many slots are used regardless of the rows. */
+    private final static int MinSlots = 1 << 16;
+
+    /** Lowest id, which the array is offset by. */
+    private final int MinId;
+
+    /** Row per id minus MinId, or NoRow; null if Sparse is used. */
+    private final int[] Dense;
+
+    /** Row per id; null if Dense is used. */
+    private final IntLongHashMap Sparse;
+
+    private PersonIndex(int minId, int[] dense, IntLongHashMap sparse)
+    {
+        this.MinId = minId;
+        this.Dense = dense;
+        this.Sparse = sparse;
+    }
+
+    /**
+     * Indexes the persons in the given store.
+     *
+     * @param persons the persons to index
+     * @return the index
+     */
+    static PersonIndex of(PersonStore persons)
+    {
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            final int id = persons.getId(row);
+
+            if (id != PersonStore.NoId)
+            {
+                minId = Math.min(minId, id);
+                maxId = Math.max(maxId, id);
+            }
+        }
+
+        if (minId > maxId)
+        {
+            return new PersonIndex(0, new int[0], null);
+        }
+
+        final long slots = (long) maxId - minId + 1;
+
+        if (slots > Math.max(MinSlots, (long) MaxSlotsPerRow * persons.size()))
+        {
+            final IntLongHashMap sparse = new IntLongHashMap();
+
+            // Walk backwards, so that the first row of each id is put last.
+            for (int row = persons.size() - 1; row >= 0; row--)
+            {
+                final int id = persons.getId(row);
+
+                if (id != PersonStore.NoId)
+                {
+                    sparse.put(id, row);
+                }
+            }
+
+            return new PersonIndex(minId, null, sparse);
+        }
+
+        final int[] dense = new int[(int) slots];
+        Arrays.fill(dense, NoRow);
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            final int id = persons.getId(row);
+
+            if (id != PersonStore.NoId && dense[id - minId] == NoRow)
+            {
+                dense[id - minId] = row;
+            }
+        }
+
+        return new PersonIndex(minId, dense, null);
+    }
+
+    /**
+     * Gives the first row of the person with the given id.
+     *
+     * @param id the id of the person
+     * @return the row, or NoRow if there is no person with the id
+     */
+    public int rowOf(int id)
+    {
+        if (Dense == null)
+        {
+            return (int) Sparse.get(id, NoRow);
+        }
+
+        final long slot = (long) id - MinId;
+        return slot >= 0 && slot < Dense.length ? Dense[(int) slot] : NoRow;
+    }
+
+    /**
+     * Returns whether the index is a plain array rather than a hash map.
+     *
+     * @return whether the index is dense
+     */
+    public boolean isDense()
+    {
+        return Dense != null;
+    }
+}
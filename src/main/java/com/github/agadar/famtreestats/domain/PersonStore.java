@@ -0,0 +1,417 @@
+package com.github.agadar.famtreestats.domain;
+
+import com.github.agadar.famtreestats.PersonHandler;
+import com.github.agadar.famtreestats.enums.Column;
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable columnar store holding the persons read from a persons CSV-file.
+ * Only the values of the columns listed in the Column enum are kept, each in
+ * its own primitive array. A person is identified by its row index, which
+ * getIndex() gives for an id. Instances are created through a
+ * PersonStore.Builder.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class PersonStore
+{
+    /** Value used for dates that are missing or could not be parsed. */
+    public final static int NoDate = Integer.MIN_VALUE;
+
+    /** Value used for id's that are missing or could not be parsed. */
+    public final static int NoId = -1;
+
+    /** Cached enum values, so that look-ups do not clone the values array. */
+    private final static RelationType[] RelationTypes = RelationType.values();
+    private final static Sex[] Sexes = Sex.values();
+    private final static Column[] Columns = Column.values();
+
+    /** Size of the buffer used by writeTo(...). */
+    private final static int WriteBufferSize = 1 << 16;
+
+    /** Diagnostics gathered while loading the persons. */
+    public final LoadDiagnostics Diagnostics;
+
+    /** Number of persons in this store. */
+    private final int size;
+
+    // Id columns.
+    private final int[] ids;
+    private final int[] fatherIds;
+    private final int[] motherIds;
+    private final int[] relationIds;
+    private final int[] partnerIds;
+
+    // Date columns, as epoch days.
+    private final int[] marriageDates;
+    private final int[] birthDates;
+    private final int[] deathDates;
+
+    // Enum columns, as ordinals.
+    private final byte[] relationTypes;
+    private final byte[] sexes;
+
+    /** Index from id to row, built along with the store. */
+    private final PersonIndex Index;
+
+    private PersonStore(Builder builder, LoadDiagnostics diagnostics)
+    {
+        this.size = builder.size;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.fatherIds = Arrays.copyOf(builder.fatherIds, size);
+        this.motherIds = Arrays.copyOf(builder.motherIds, size);
+        this.relationIds = Arrays.copyOf(builder.relationIds, size);
+        this.partnerIds = Arrays.copyOf(builder.partnerIds, size);
+        this.relationTypes = Arrays.copyOf(builder.relationTypes, size);
+        this.sexes = Arrays.copyOf(builder.sexes, size);
+        this.marriageDates = Arrays.copyOf(builder.marriageDates, size);
+        this.birthDates = Arrays.copyOf(builder.birthDates, size);
+        this.deathDates = Arrays.copyOf(builder.deathDates, size);
+        this.Diagnostics = diagnostics;
+        this.Index = PersonIndex.of(this);
+    }
+
+    /**
+     * Returns the number of persons in this store.
+     *
+     * @return the number of persons
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the index from the id's of the persons in this store to their
+     * rows, for looking up the persons that other persons refer to.
+     *
+     * @return the index
+     */
+    public PersonIndex getIndex()
+    {
+        return Index;
+    }
+
+    public int getId(int row)
+    {
+        return ids[row];
+    }
+
+    public int getFatherId(int row)
+    {
+        return fatherIds[row];
+    }
+
+    public int getMotherId(int row)
+    {
+        return motherIds[row];
+    }
+
+    public int getRelationId(int row)
+    {
+        return relationIds[row];
+    }
+
+    public int getPartnerId(int row)
+    {
+        return partnerIds[row];
+    }
+
+    public RelationType getRelationType(int row)
+    {
+        return RelationTypes[relationTypes[row]];
+    }
+
+    public Sex getSex(int row)
+    {
+        return Sexes[sexes[row]];
+    }
+
+    public int getMarriageDate(int row)
+    {
+        return marriageDates[row];
+    }
+
+    public int getBirthDate(int row)
+    {
+        return birthDates[row];
+    }
+
+    public int getDeathDate(int row)
+    {
+        return deathDates[row];
+    }
+
+    /**
+     * Passes the person at the given row to the given handler, with the row
+     * as its position.
+     *
+     * @param row the row of the person
+     * @param handler the handler to pass the person to
+     */
+    public void handle(int row, PersonHandler handler)
+    {
+        handler.handle(row, ids[row], fatherIds[row], motherIds[row], relationIds[row],
+                partnerIds[row], RelationTypes[relationTypes[row]], Sexes[sexes[row]],
+                marriageDates[row], birthDates[row], deathDates[row]);
+    }
+
+    /**
+     * Writes the persons and diagnostics to the given channel, so that they
+     * can be read again by readFrom(...), possibly in another JVM. Each column
+     * is written whole, in big-endian order.
+     *
+     * @param out the channel to write to
+     * @throws IOException if writing failed
+     */
+    public void writeTo(WritableByteChannel out) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(WriteBufferSize);
+        buffer.putInt(size).putInt(Diagnostics.Rows).putInt(Columns.length);
+
+        int missing = 0;
+
+        for (Column column : Columns)
+        {
+            buffer.putInt(Diagnostics.getMalformed(column));
+            missing |= Diagnostics.getMissing().contains(column) ? 1 << column.ordinal() : 0;
+        }
+
+        buffer.putInt(missing);
+
+        for (int[] column : new int[][] { ids, fatherIds, motherIds, relationIds, partnerIds,
+            marriageDates, birthDates, deathDates })
+        {
+            for (int offset = 0; offset < size;)
+            {
+                if (buffer.remaining() < Integer.BYTES)
+                {
+                    drain(buffer, out);
+                }
+
+                final int count = Math.min(size - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(column, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+        }
+
+        for (byte[] column : new byte[][] { relationTypes, sexes })
+        {
+            for (int offset = 0; offset < size;)
+            {
+                if (!buffer.hasRemaining())
+                {
+                    drain(buffer, out);
+                }
+
+                final int count = Math.min(size - offset, buffer.remaining());
+                buffer.put(column, offset, count);
+                offset += count;
+            }
+        }
+
+        drain(buffer, out);
+    }
+
+    /**
+     * Reads persons and diagnostics written by writeTo(...), starting at the
+     * given buffer's position. Afterwards, the buffer is positioned right
+     * after the read persons.
+     *
+     * @param in the buffer to read from
+     * @return the read persons
+     * @throws java.nio.BufferUnderflowException if the buffer ends too soon
+     * @throws IllegalArgumentException if the buffer does not hold persons
+     */
+    public static PersonStore readFrom(ByteBuffer in)
+    {
+        final int size = in.getInt();
+        final int rows = in.getInt();
+
+        if (size < 0 || rows < 0 || in.getInt() != Columns.length)
+        {
+            throw new IllegalArgumentException("Buffer does not hold persons");
+        }
+
+        final int[] malformed = new int[Columns.length];
+
+        for (int i = 0; i < malformed.length; i++)
+        {
+            malformed[i] = in.getInt();
+        }
+
+        final int missingMask = in.getInt();
+        final Set<Column> missing = EnumSet.noneOf(Column.class);
+
+        if ((missingMask >>> Columns.length) != 0)
+        {
+            throw new IllegalArgumentException("Buffer does not hold persons");
+        }
+
+        for (Column column : Columns)
+        {
+            if ((missingMask & (1 << column.ordinal())) != 0)
+            {
+                missing.add(column);
+            }
+        }
+
+        final Builder builder = new Builder();
+        builder.resize(size);
+
+        for (int[] column : new int[][] { builder.ids, builder.fatherIds, builder.motherIds,
+            builder.relationIds, builder.partnerIds, builder.marriageDates, builder.birthDates,
+            builder.deathDates })
+        {
+            in.asIntBuffer().get(column, 0, size);
+            in.position(in.position() + size * Integer.BYTES);
+        }
+
+        in.get(builder.relationTypes, 0, size);
+        in.get(builder.sexes, 0, size);
+
+        for (int i = 0; i < size; i++)
+        {
+            if (builder.relationTypes[i] < 0 || builder.relationTypes[i] >= RelationTypes.length
+                    || builder.sexes[i] < 0 || builder.sexes[i] >= Sexes.length)
+            {
+                throw new IllegalArgumentException("Buffer does not hold persons");
+            }
+        }
+
+        builder.size = size;
+        return builder.build(new LoadDiagnostics(rows, malformed, missing));
+    }
+
+    /**
+     * Writes the given buffer's contents to the given channel, then clears it.
+     */
+    private static void drain(ByteBuffer buffer, WritableByteChannel out) throws IOException
+    {
+        buffer.flip();
+
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Builder for PersonStore instances, receiving the persons from a reader. 
+     * Not thread-safe.
+     */
+    public final static class Builder implements PersonHandler
+    {
+        /** Initial capacity of the arrays. */
+        private final static int InitialCapacity = 1024;
+
+        /** Number of persons added so far. */
+        private int size = 0;
+
+        // Id columns.
+        private int[] ids = new int[InitialCapacity];
+        private int[] fatherIds = new int[InitialCapacity];
+        private int[] motherIds = new int[InitialCapacity];
+        private int[] relationIds = new int[InitialCapacity];
+        private int[] partnerIds = new int[InitialCapacity];
+
+        // Date columns, as epoch days.
+        private int[] marriageDates = new int[InitialCapacity];
+        private int[] birthDates = new int[InitialCapacity];
+        private int[] deathDates = new int[InitialCapacity];
+
+        // Enum columns, as ordinals.
+        private byte[] relationTypes = new byte[InitialCapacity];
+        private byte[] sexes = new byte[InitialCapacity];
+
+        @Override
+        public void handle(long position, int id, int fatherId, int motherId, int relationId,
+                int partnerId, RelationType relationType, Sex sex, int marriageDate,
+                int birthDate, int deathDate)
+        {
+            if (size == ids.length)
+            {
+                resize(ids.length + (ids.length >> 1));
+            }
+
+            ids[size] = id;
+            fatherIds[size] = fatherId;
+            motherIds[size] = motherId;
+            relationIds[size] = relationId;
+            partnerIds[size] = partnerId;
+            relationTypes[size] = (byte) relationType.ordinal();
+            sexes[size] = (byte) sex.ordinal();
+            marriageDates[size] = marriageDate;
+            birthDates[size] = birthDate;
+            deathDates[size] = deathDate;
+            size++;
+        }
+
+        /**
+         * Appends the persons added to the given builder to this one.
+         *
+         * @param other the builder to append the persons of
+         */
+        public void append(Builder other)
+        {
+            final int capacity = size + other.size;
+
+            if (capacity > ids.length)
+            {
+                resize(capacity);
+            }
+
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            System.arraycopy(other.fatherIds, 0, fatherIds, size, other.size);
+            System.arraycopy(other.motherIds, 0, motherIds, size, other.size);
+            System.arraycopy(other.relationIds, 0, relationIds, size, other.size);
+            System.arraycopy(other.partnerIds, 0, partnerIds, size, other.size);
+            System.arraycopy(other.relationTypes, 0, relationTypes, size, other.size);
+            System.arraycopy(other.sexes, 0, sexes, size, other.size);
+            System.arraycopy(other.marriageDates, 0, marriageDates, size, other.size);
+            System.arraycopy(other.birthDates, 0, birthDates, size, other.size);
+            System.arraycopy(other.deathDates, 0, deathDates, size, other.size);
+            size = capacity;
+        }
+
+        /**
+         * Builds the store. The builder should not be used afterwards.
+         *
+         * @param diagnostics diagnostics gathered while reading the persons
+         * @return the built store
+         */
+        public PersonStore build(LoadDiagnostics diagnostics)
+        {
+            return new PersonStore(this, diagnostics);
+        }
+
+        /**
+         * Resizes all arrays to the given capacity.
+         *
+         * @param capacity the new capacity
+         */
+        private void resize(int capacity)
+        {
+            ids = Arrays.copyOf(ids, capacity);
+            fatherIds = Arrays.copyOf(fatherIds, capacity);
+            motherIds = Arrays.copyOf(motherIds, capacity);
+            relationIds = Arrays.copyOf(relationIds, capacity);
+            partnerIds = Arrays.copyOf(partnerIds, capacity);
+            relationTypes = Arrays.copyOf(relationTypes, capacity);
+            sexes = Arrays.copyOf(sexes, capacity);
+            marriageDates = Arrays.copyOf(marriageDates, capacity);
+            birthDates = Arrays.copyOf(birthDates, capacity);
+            deathDates = Arrays.copyOf(deathDates, capacity);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.github.agadar.famtreestats.domain;
 
 /**
- * Container for the calculated statistics.
+ * Container for the calculated statistics: the exact sums and counts and the
+ * ages per year of age, and the averages and quantiles of them rounded for 
+ * display.
  * 
  * @author Agadar <https://github.com/Agadar/>
  */
@@ -28,63 +30,204 @@ public final class Statistics extends PeriodBound
     /** Average number of children per marriage. */
     public final int ChildenPerMarriage;
     
-    /** Number of births. */
+    /** Number of deaths. */
     public final int Deaths;
 
-    /** Number of deaths. */
+    /** Number of births. */
     public final int Births;
 
+    /** Median age at marriage, both sexes. */
+    public final int MedianAgeAtMarriageBoth;
+    
+    /** 10th percentile of the ages at marriage, both sexes. */
+    public final int P10AgeAtMarriageBoth;
+    
+    /** 90th percentile of the ages at marriage, both sexes. */
+    public final int P90AgeAtMarriageBoth;
+    
+    /** Median age at death, both sexes. */
+    public final int MedianAgeAtDeathBoth;
+    
+    /** 10th percentile of the ages at death, both sexes. */
+    public final int P10AgeAtDeathBoth;
+    
+    /** 90th percentile of the ages at death, both sexes. */
+    public final int P90AgeAtDeathBoth;
+
+    /** Ages at marriage in days, both sexes. */
+    public final Average AgesAtMarriageBoth;
+    
+    /** Ages at marriage in days, males. */
+    public final Average AgesAtMarriageMale;
+    
+    /** Ages at marriage in days, females. */
+    public final Average AgesAtMarriageFemale;
+    
+    /** Ages at death in days, both sexes. */
+    public final Average AgesAtDeathBoth;
+    
+    /** Ages at death in days, males. */
+    public final Average AgesAtDeathMale;
+    
+    /** Ages at death in days, females. */
+    public final Average AgesAtDeathFemale;
+    
+    /** Children per marriage: the number of children and of marriages. */
+    public final Average ChildrenPerMarriage;
+
+    /** Ages at marriage per year of age, both sexes. */
+    public final AgeHistogram YearsAtMarriageBoth;
+    
+    /** Ages at marriage per year of age, males. */
+    public final AgeHistogram YearsAtMarriageMale;
+    
+    /** Ages at marriage per year of age, females. */
+    public final AgeHistogram YearsAtMarriageFemale;
+    
+    /** Ages at death per year of age, both sexes. */
+    public final AgeHistogram YearsAtDeathBoth;
+    
+    /** Ages at death per year of age, males. */
+    public final AgeHistogram YearsAtDeathMale;
+    
+    /** Ages at death per year of age, females. */
+    public final AgeHistogram YearsAtDeathFemale;
+
     /**
      * Instantiates a new Statistics object.
      * 
      * @param YearFrom lower bound of the time period these stats cover (inclusive)
      * @param YearTo upper bound of the time period these stats cover (inclusive)
-     * @param AgeAtMarriageBoth average age at marriage, both sexes
-     * @param AgeAtMarriageMale average age at marriage, males
-     * @param AgeAtMarriageFemale average age at marriage, females
-     * @param AgeAtDeathBoth average age at death, both sexes
-     * @param AgeAtDeathMale average age at death, males
-     * @param AgeAtDeathFemale average age at death, females
-     * @param ChildenPerMarriage average number of children per marriage
+     * @param AgesAtMarriageBoth ages at marriage in days, both sexes
+     * @param AgesAtMarriageMale ages at marriage in days, males
+     * @param AgesAtMarriageFemale ages at marriage in days, females
+     * @param AgesAtDeathBoth ages at death in days, both sexes
+     * @param AgesAtDeathMale ages at death in days, males
+     * @param AgesAtDeathFemale ages at death in days, females
+     * @param ChildrenPerMarriage number of children and of marriages
      * @param Deaths number of deaths
      * @param Births number of births
      */
-    public Statistics(int YearFrom, int YearTo, int AgeAtMarriageBoth, int AgeAtMarriageMale,
-            int AgeAtMarriageFemale, int AgeAtDeathBoth, int AgeAtDeathMale,
-            int AgeAtDeathFemale, int ChildenPerMarriage, int Deaths, int Births)
+    public Statistics(int YearFrom, int YearTo, Average AgesAtMarriageBoth, 
+            Average AgesAtMarriageMale, Average AgesAtMarriageFemale, Average AgesAtDeathBoth,
+            Average AgesAtDeathMale, Average AgesAtDeathFemale, Average ChildrenPerMarriage, 
+            int Deaths, int Births)
     {
-        this(new PeriodYears(YearFrom, YearTo), AgeAtMarriageBoth, AgeAtMarriageMale,
-            AgeAtMarriageFemale, AgeAtDeathBoth, AgeAtDeathMale, AgeAtDeathFemale,
-            ChildenPerMarriage, Deaths, Births);
+        this(new PeriodYears(YearFrom, YearTo), AgesAtMarriageBoth, AgesAtMarriageMale,
+            AgesAtMarriageFemale, AgesAtDeathBoth, AgesAtDeathMale, AgesAtDeathFemale,
+            ChildrenPerMarriage, Deaths, Births);
     }
     
     /**
-     * Instantiates a new Statistics object.
+     * Instantiates a new Statistics object without ages per year of age, so
+     * that all quantiles are 0.
      * 
      * @param period the period this covers
-     * @param AgeAtMarriageBoth average age at marriage, both sexes
-     * @param AgeAtMarriageMale average age at marriage, males
-     * @param AgeAtMarriageFemale average age at marriage, females
-     * @param AgeAtDeathBoth average age at death, both sexes
-     * @param AgeAtDeathMale average age at death, males
-     * @param AgeAtDeathFemale average age at death, females
-     * @param ChildenPerMarriage average number of children per marriage
+     * @param AgesAtMarriageBoth ages at marriage in days, both sexes
+     * @param AgesAtMarriageMale ages at marriage in days, males
+     * @param AgesAtMarriageFemale ages at marriage in days, females
+     * @param AgesAtDeathBoth ages at death in days, both sexes
+     * @param AgesAtDeathMale ages at death in days, males
+     * @param AgesAtDeathFemale ages at death in days, females
+     * @param ChildrenPerMarriage number of children and of marriages
      * @param Deaths number of deaths
      * @param Births number of births
      */
-    public Statistics(PeriodYears period, int AgeAtMarriageBoth, int AgeAtMarriageMale,
-            int AgeAtMarriageFemale, int AgeAtDeathBoth, int AgeAtDeathMale,
-            int AgeAtDeathFemale, int ChildenPerMarriage, int Deaths, int Births)
+    public Statistics(PeriodYears period, Average AgesAtMarriageBoth, 
+            Average AgesAtMarriageMale, Average AgesAtMarriageFemale, Average AgesAtDeathBoth,
+            Average AgesAtDeathMale, Average AgesAtDeathFemale, Average ChildrenPerMarriage, 
+            int Deaths, int Births)
+    {
+        this(period, AgesAtMarriageBoth, AgesAtMarriageMale, AgesAtMarriageFemale, 
+            AgesAtDeathBoth, AgesAtDeathMale, AgesAtDeathFemale, ChildrenPerMarriage, Deaths,
+            Births, AgeHistogram.None, AgeHistogram.None, AgeHistogram.None, 
+            AgeHistogram.None, AgeHistogram.None, AgeHistogram.None);
+    }
+    
+    /**
+     * Instantiates a new Statistics object. The averages are rounded to whole
+     * years and children.
+     * 
+     * @param period the period this covers
+     * @param AgesAtMarriageBoth ages at marriage in days, both sexes
+     * @param AgesAtMarriageMale ages at marriage in days, males
+     * @param AgesAtMarriageFemale ages at marriage in days, females
+     * @param AgesAtDeathBoth ages at death in days, both sexes
+     * @param AgesAtDeathMale ages at death in days, males
+     * @param AgesAtDeathFemale ages at death in days, females
+     * @param ChildrenPerMarriage number of children and of marriages
+     * @param Deaths number of deaths
+     * @param Births number of births
+     * @param YearsAtMarriageBoth ages at marriage per year of age, both sexes
+     * @param YearsAtMarriageMale ages at marriage per year of age, males
+     * @param YearsAtMarriageFemale ages at marriage per year of age, females
+     * @param YearsAtDeathBoth ages at death per year of age, both sexes
+     * @param YearsAtDeathMale ages at death per year of age, males
+     * @param YearsAtDeathFemale ages at death per year of age, females
+     */
+    public Statistics(PeriodYears period, Average AgesAtMarriageBoth, 
+            Average AgesAtMarriageMale, Average AgesAtMarriageFemale, Average AgesAtDeathBoth,
+            Average AgesAtDeathMale, Average AgesAtDeathFemale, Average ChildrenPerMarriage, 
+            int Deaths, int Births, AgeHistogram YearsAtMarriageBoth, 
+            AgeHistogram YearsAtMarriageMale, AgeHistogram YearsAtMarriageFemale, 
+            AgeHistogram YearsAtDeathBoth, AgeHistogram YearsAtDeathMale, 
+            AgeHistogram YearsAtDeathFemale)
     {
         super(period);
-        this.AgeAtMarriageBoth = AgeAtMarriageBoth;
-        this.AgeAtMarriageMale = AgeAtMarriageMale;
-        this.AgeAtMarriageFemale = AgeAtMarriageFemale;
-        this.AgeAtDeathBoth = AgeAtDeathBoth;
-        this.AgeAtDeathMale = AgeAtDeathMale;
-        this.AgeAtDeathFemale = AgeAtDeathFemale;
-        this.ChildenPerMarriage = ChildenPerMarriage;
+        this.AgesAtMarriageBoth = AgesAtMarriageBoth;
+        this.AgesAtMarriageMale = AgesAtMarriageMale;
+        this.AgesAtMarriageFemale = AgesAtMarriageFemale;
+        this.AgesAtDeathBoth = AgesAtDeathBoth;
+        this.AgesAtDeathMale = AgesAtDeathMale;
+        this.AgesAtDeathFemale = AgesAtDeathFemale;
+        this.ChildrenPerMarriage = ChildrenPerMarriage;
+        this.AgeAtMarriageBoth = AgesAtMarriageBoth.roundedYears();
+        this.AgeAtMarriageMale = AgesAtMarriageMale.roundedYears();
+        this.AgeAtMarriageFemale = AgesAtMarriageFemale.roundedYears();
+        this.AgeAtDeathBoth = AgesAtDeathBoth.roundedYears();
+        this.AgeAtDeathMale = AgesAtDeathMale.roundedYears();
+        this.AgeAtDeathFemale = AgesAtDeathFemale.roundedYears();
+        this.ChildenPerMarriage = ChildrenPerMarriage.rounded();
         this.Deaths = Deaths;
         this.Births = Births;
+        this.YearsAtMarriageBoth = YearsAtMarriageBoth;
+        this.YearsAtMarriageMale = YearsAtMarriageMale;
+        this.YearsAtMarriageFemale = YearsAtMarriageFemale;
+        this.YearsAtDeathBoth = YearsAtDeathBoth;
+        this.YearsAtDeathMale = YearsAtDeathMale;
+        this.YearsAtDeathFemale = YearsAtDeathFemale;
+        this.MedianAgeAtMarriageBoth = YearsAtMarriageBoth.median();
+        this.P10AgeAtMarriageBoth = YearsAtMarriageBoth.quantile(0.1);
+        this.P90AgeAtMarriageBoth = YearsAtMarriageBoth.quantile(0.9);
+        this.MedianAgeAtDeathBoth = YearsAtDeathBoth.median();
+        this.P10AgeAtDeathBoth = YearsAtDeathBoth.quantile(0.1);
+        this.P90AgeAtDeathBoth = YearsAtDeathBoth.quantile(0.9);
+    }
+    
+    /**
+     * Gives the statistics of both this one's persons and the given one's, 
+     * covering the given period. Couples and children are added as they are,
+     * so a child registered in the other period than its parents' marriage 
+     * is not counted, unlike when the combined period is calculated.
+     * 
+     * @param other the statistics to combine with this one
+     * @param period the period the combined statistics cover
+     * @return the combined statistics
+     */
+    public Statistics plus(Statistics other, PeriodYears period)
+    {
+        return new Statistics(period, AgesAtMarriageBoth.plus(other.AgesAtMarriageBoth),
+                AgesAtMarriageMale.plus(other.AgesAtMarriageMale),
+                AgesAtMarriageFemale.plus(other.AgesAtMarriageFemale),
+                AgesAtDeathBoth.plus(other.AgesAtDeathBoth),
+                AgesAtDeathMale.plus(other.AgesAtDeathMale),
+                AgesAtDeathFemale.plus(other.AgesAtDeathFemale),
+                ChildrenPerMarriage.plus(other.ChildrenPerMarriage), Deaths + other.Deaths,
+                Births + other.Births, YearsAtMarriageBoth.plus(other.YearsAtMarriageBoth),
+                YearsAtMarriageMale.plus(other.YearsAtMarriageMale),
+                YearsAtMarriageFemale.plus(other.YearsAtMarriageFemale),
+                YearsAtDeathBoth.plus(other.YearsAtDeathBoth),
+                YearsAtDeathMale.plus(other.YearsAtDeathMale),
+                YearsAtDeathFemale.plus(other.YearsAtDeathFemale));
     }
 }
@@ -0,0 +1,342 @@
+package com.github.agadar.famtreestats.misc;
+
+import com.github.agadar.famtreestats.domain.PersonStore;
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free decoder for the dd-MM-yyyy and yyyy-MM-dd dates found in
+ * persons CSV-files. Works directly on char or byte ranges, never throws, and
+ * returns dates as epoch days, or PersonStore.NoDate if a date could not be
+ * decoded.
+ * <p>
+ * Decoding mirrors LocalDate.parse(...) with the corresponding patterns and
+ * the default (smart) resolver: surrounding whitespace is ignored, 'N-'
+ * markers are skipped, the year must have exactly four digits and be at least
+ * 1, and a day-of-month past the end of its month is set to the last day of
+ * that month.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class DateDecoder
+{
+    /** Pattern for dd-MM-yyyy. */
+    private final static String DayMonthYear = "dd-MM-yyyy";
+
+    /** Pattern for yyyy-MM-dd. */
+    private final static String YearMonthDay = "yyyy-MM-dd";
+
+    /** Number of days in a 400 year cycle. */
+    private final static int DaysPerCycle = 146097;
+
+    /** Number of days from year zero to 1970. */
+    private final static long DaysZeroTo1970 = (DaysPerCycle * 5L) - (30L * 365L + 7L);
+
+    private DateDecoder()
+    {
+    }
+
+    /**
+     * Decodes a dd-MM-yyyy date from the given range.
+     *
+     * @param text the text holding the date
+     * @param start start index of the range (inclusive)
+     * @param end end index of the range (exclusive)
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    public static int decodeDayMonthYear(CharSequence text, int start, int end)
+    {
+        return decode(text, start, end, DayMonthYear);
+    }
+
+    /**
+     * Decodes a yyyy-MM-dd date from the given range.
+     *
+     * @param text the text holding the date
+     * @param start start index of the range (inclusive)
+     * @param end end index of the range (exclusive)
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    public static int decodeYearMonthDay(CharSequence text, int start, int end)
+    {
+        return decode(text, start, end, YearMonthDay);
+    }
+
+    /**
+     * Decodes a dd-MM-yyyy date from the given range of ASCII-compatible bytes.
+     * The buffer's position is not changed.
+     *
+     * @param bytes the bytes holding the date
+     * @param start start index of the range (inclusive)
+     * @param end end index of the range (exclusive)
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    public static int decodeDayMonthYear(ByteBuffer bytes, int start, int end)
+    {
+        return decode(bytes, start, end, DayMonthYear);
+    }
+
+    /**
+     * Decodes a yyyy-MM-dd date from the given range of ASCII-compatible bytes.
+     * The buffer's position is not changed.
+     *
+     * @param bytes the bytes holding the date
+     * @param start start index of the range (inclusive)
+     * @param end end index of the range (exclusive)
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    public static int decodeYearMonthDay(ByteBuffer bytes, int start, int end)
+    {
+        return decode(bytes, start, end, YearMonthDay);
+    }
+
+    /**
+     * Returns the year of the given epoch day, without instantiating a LocalDate.
+     *
+     * @param epochDay the epoch day
+     * @return the year
+     */
+    public static int yearOf(int epochDay)
+    {
+        // Same algorithm as LocalDate.ofEpochDay(...), minus the month and day.
+        long zeroDay = epochDay + DaysZeroTo1970 - 60;
+        long adjust = 0;
+
+        if (zeroDay < 0)
+        {
+            final long adjustCycles = (zeroDay + 1) / DaysPerCycle - 1;
+            adjust = adjustCycles * 400;
+            zeroDay += -adjustCycles * DaysPerCycle;
+        }
+
+        long yearEst = (400 * zeroDay + 591) / DaysPerCycle;
+        long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+
+        if (doyEst < 0)
+        {
+            yearEst--;
+            doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        }
+
+        final int marchMonth0 = ((int) doyEst * 5 + 2) / 153;
+        return (int) (yearEst + adjust + marchMonth0 / 10);
+    }
+
+    /**
+     * Decodes a date from the given range, according to the given pattern.
+     *
+     * @param text the text holding the date
+     * @param start start index of the range (inclusive)
+     * @param end end index of the range (exclusive)
+     * @param pattern the pattern, consisting of 'd', 'M', 'y' and '-'
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    private static int decode(CharSequence text, int start, int end, String pattern)
+    {
+        // Trim whitespace.
+        while (start < end && text.charAt(start) <= ' ')
+        {
+            start++;
+        }
+
+        while (end > start && text.charAt(end - 1) <= ' ')
+        {
+            end--;
+        }
+
+        int position = 0;
+        int day = 0;
+        int month = 0;
+        int year = 0;
+
+        for (int i = start; i < end; i++)
+        {
+            final char c = text.charAt(i);
+
+            // Skip 'N-' markers.
+            if (c == 'N' && i + 1 < end && text.charAt(i + 1) == '-')
+            {
+                i++;
+                continue;
+            }
+
+            if (position == pattern.length())
+            {
+                return PersonStore.NoDate;
+            }
+
+            final char expected = pattern.charAt(position++);
+
+            if (expected == '-')
+            {
+                if (c != '-')
+                {
+                    return PersonStore.NoDate;
+                }
+
+                continue;
+            }
+
+            final int digit = c - '0';
+
+            if (digit < 0 || digit > 9)
+            {
+                return PersonStore.NoDate;
+            }
+
+            if (expected == 'd')
+            {
+                day = day * 10 + digit;
+            }
+            else if (expected == 'M')
+            {
+                month = month * 10 + digit;
+            }
+            else
+            {
+                year = year * 10 + digit;
+            }
+        }
+
+        return position == pattern.length() ? toEpochDay(year, month, day) : PersonStore.NoDate;
+    }
+
+    /**
+     * Decodes a date from the given range of bytes, according to the given
+     * pattern. Same as decode(CharSequence, ...), but for bytes.
+     *
+     * @param bytes the bytes holding the date
+     * @param start start index of the range (inclusive)
+     * @param end end index of the range (exclusive)
+     * @param pattern the pattern, consisting of 'd', 'M', 'y' and '-'
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    private static int decode(ByteBuffer bytes, int start, int end, String pattern)
+    {
+        // Trim whitespace.
+        while (start < end && (bytes.get(start) & 0xFF) <= ' ')
+        {
+            start++;
+        }
+
+        while (end > start && (bytes.get(end - 1) & 0xFF) <= ' ')
+        {
+            end--;
+        }
+
+        int position = 0;
+        int day = 0;
+        int month = 0;
+        int year = 0;
+
+        for (int i = start; i < end; i++)
+        {
+            final int c = bytes.get(i) & 0xFF;
+
+            // Skip 'N-' markers.
+            if (c == 'N' && i + 1 < end && bytes.get(i + 1) == '-')
+            {
+                i++;
+                continue;
+            }
+
+            if (position == pattern.length())
+            {
+                return PersonStore.NoDate;
+            }
+
+            final char expected = pattern.charAt(position++);
+
+            if (expected == '-')
+            {
+                if (c != '-')
+                {
+                    return PersonStore.NoDate;
+                }
+
+                continue;
+            }
+
+            final int digit = c - '0';
+
+            if (digit < 0 || digit > 9)
+            {
+                return PersonStore.NoDate;
+            }
+
+            if (expected == 'd')
+            {
+                day = day * 10 + digit;
+            }
+            else if (expected == 'M')
+            {
+                month = month * 10 + digit;
+            }
+            else
+            {
+                year = year * 10 + digit;
+            }
+        }
+
+        return position == pattern.length() ? toEpochDay(year, month, day) : PersonStore.NoDate;
+    }
+
+    /**
+     * Validates the given year, month and day and converts them to an epoch
+     * day. A day past the end of its month is set to the last day of the month.
+     *
+     * @param year the year
+     * @param month the month
+     * @param day the day-of-month
+     * @return the date as epoch day, or PersonStore.NoDate
+     */
+    private static int toEpochDay(int year, int month, int day)
+    {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31)
+        {
+            return PersonStore.NoDate;
+        }
+
+        final boolean leapYear = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+        day = Math.min(day, lengthOfMonth(month, leapYear));
+
+        // Same algorithm as LocalDate.toEpochDay().
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+
+        if (month > 2)
+        {
+            total--;
+
+            if (!leapYear)
+            {
+                total--;
+            }
+        }
+
+        return (int) (total - DaysZeroTo1970);
+    }
+
+    /**
+     * Returns the length of the given month.
+     *
+     * @param month the month
+     * @param leapYear whether the month is in a leap year
+     * @return the length of the month in days
+     */
+    private static int lengthOfMonth(int month, boolean leapYear)
+    {
+        switch (month)
+        {
+            case 2:
+                return leapYear ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
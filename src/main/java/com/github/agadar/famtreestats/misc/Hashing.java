@@ -0,0 +1,39 @@
+package com.github.agadar.famtreestats.misc;
+
+/**
+ * Hash functions for the primitive hash maps and sets. Id's are often
+ * sequential, so their bits are mixed before being masked to a slot.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class Hashing
+{
+    private Hashing()
+    {
+    }
+
+    /**
+     * Mixes the bits of the given value.
+     *
+     * @param value the value
+     * @return the mixed hash
+     */
+    static int mix(long value)
+    {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int) (hash ^ (hash >>> 16));
+    }
+
+    /**
+     * Mixes the bits of the given values.
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return the mixed hash
+     */
+    static int mix(long first, int second)
+    {
+        return mix(first * 31 + second);
+    }
+}
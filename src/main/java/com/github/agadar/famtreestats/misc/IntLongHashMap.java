@@ -0,0 +1,134 @@
+package com.github.agadar.famtreestats.misc;
+
+/**
+ * Open-addressing hash map from int keys to long values. Keys and values are
+ * kept in primitive arrays, so nothing is boxed or allocated per entry.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class IntLongHashMap
+{
+    /** Receives the entries of a map. */
+    public interface Visitor
+    {
+        /**
+         * Receives an entry.
+         *
+         * @param key the entry's key
+         * @param value the entry's value
+         */
+        void visit(int key, long value);
+    }
+
+    private final static int InitialCapacity = 16;
+
+    /** Number of entries. */
+    private int size = 0;
+
+    private int[] keys = new int[InitialCapacity];
+    private long[] values = new long[InitialCapacity];
+    private boolean[] used = new boolean[InitialCapacity];
+
+    /**
+     * Gives the value mapped to the given key.
+     *
+     * @param key the key
+     * @param missing the value to give if the key is not mapped
+     * @return the mapped value, or missing
+     */
+    public long get(int key, long missing)
+    {
+        final int slot = slotOf(keys, used, key);
+        return used[slot] ? values[slot] : missing;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(int key, long value)
+    {
+        int slot = slotOf(keys, used, key);
+
+        if (!used[slot])
+        {
+            if ((size + 1) << 1 > keys.length)
+            {
+                resize(keys.length << 1);
+                slot = slotOf(keys, used, key);
+            }
+
+            keys[slot] = key;
+            used[slot] = true;
+            size++;
+        }
+
+        values[slot] = value;
+    }
+
+    /**
+     * Gives the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Passes each entry to the given visitor.
+     *
+     * @param visitor the visitor to pass the entries to
+     */
+    public void forEach(Visitor visitor)
+    {
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (used[slot])
+            {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        final int[] newKeys = new int[capacity];
+        final long[] newValues = new long[capacity];
+        final boolean[] newUsed = new boolean[capacity];
+
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (used[slot])
+            {
+                final int newSlot = slotOf(newKeys, newUsed, keys[slot]);
+                newKeys[newSlot] = keys[slot];
+                newValues[newSlot] = values[slot];
+                newUsed[newSlot] = true;
+            }
+        }
+
+        keys = newKeys;
+        values = newValues;
+        used = newUsed;
+    }
+
+    /**
+     * Gives the slot holding the given key, or the free slot where it belongs.
+     */
+    private static int slotOf(int[] keys, boolean[] used, int key)
+    {
+        final int mask = keys.length - 1;
+        int slot = Hashing.mix(key) & mask;
+
+        while (used[slot] && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+}
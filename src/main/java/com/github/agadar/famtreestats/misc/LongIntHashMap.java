@@ -0,0 +1,135 @@
+package com.github.agadar.famtreestats.misc;
+
+/**
+ * Open-addressing hash map from long keys to int values. Keys and values are
+ * kept in primitive arrays, so nothing is boxed or allocated per entry.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class LongIntHashMap
+{
+    /** Receives the entries of a map. */
+    public interface Visitor
+    {
+        /**
+         * Receives an entry.
+         *
+         * @param key the entry's key
+         * @param value the entry's value
+         */
+        void visit(long key, int value);
+    }
+
+    private final static int InitialCapacity = 16;
+
+    /** Number of entries. */
+    private int size = 0;
+
+    private long[] keys = new long[InitialCapacity];
+    private int[] values = new int[InitialCapacity];
+    private boolean[] used = new boolean[InitialCapacity];
+
+    /**
+     * Gives the value mapped to the given key.
+     *
+     * @param key the key
+     * @param missing the value to give if the key is not mapped
+     * @return the mapped value, or missing
+     */
+    public int get(long key, int missing)
+    {
+        final int slot = slotOf(keys, used, key);
+        return used[slot] ? values[slot] : missing;
+    }
+
+    /**
+     * Adds the given amount to the value mapped to the given key, mapping the
+     * key to the amount if it is not mapped yet.
+     *
+     * @param key the key
+     * @param amount the amount to add
+     */
+    public void add(long key, int amount)
+    {
+        int slot = slotOf(keys, used, key);
+
+        if (!used[slot])
+        {
+            if ((size + 1) << 1 > keys.length)
+            {
+                resize(keys.length << 1);
+                slot = slotOf(keys, used, key);
+            }
+
+            keys[slot] = key;
+            used[slot] = true;
+            size++;
+        }
+
+        values[slot] += amount;
+    }
+
+    /**
+     * Gives the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Passes each entry to the given visitor.
+     *
+     * @param visitor the visitor to pass the entries to
+     */
+    public void forEach(Visitor visitor)
+    {
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (used[slot])
+            {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        final long[] newKeys = new long[capacity];
+        final int[] newValues = new int[capacity];
+        final boolean[] newUsed = new boolean[capacity];
+
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (used[slot])
+            {
+                final int newSlot = slotOf(newKeys, newUsed, keys[slot]);
+                newKeys[newSlot] = keys[slot];
+                newValues[newSlot] = values[slot];
+                newUsed[newSlot] = true;
+            }
+        }
+
+        keys = newKeys;
+        values = newValues;
+        used = newUsed;
+    }
+
+    /**
+     * Gives the slot holding the given key, or the free slot where it belongs.
+     */
+    private static int slotOf(long[] keys, boolean[] used, long key)
+    {
+        final int mask = keys.length - 1;
+        int slot = Hashing.mix(key) & mask;
+
+        while (used[slot] && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.agadar.famtreestats.misc;
+
+/**
+ * Open-addressing hash set of pairs of a long and an int. Both halves are kept
+ * in primitive arrays, so nothing is boxed or allocated per pair.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class LongIntPairHashSet
+{
+    /** Receives the pairs of a set. */
+    public interface Visitor
+    {
+        /**
+         * Receives a pair.
+         *
+         * @param first the pair's long
+         * @param second the pair's int
+         */
+        void visit(long first, int second);
+    }
+
+    private final static int InitialCapacity = 16;
+
+    /** Number of pairs. */
+    private int size = 0;
+
+    private long[] firsts = new long[InitialCapacity];
+    private int[] seconds = new int[InitialCapacity];
+    private boolean[] used = new boolean[InitialCapacity];
+
+    /**
+     * Adds the given pair, if it is not in this set yet.
+     *
+     * @param first the pair's long
+     * @param second the pair's int
+     * @return true if the pair was added, false if it already was in this set
+     */
+    public boolean add(long first, int second)
+    {
+        int slot = slotOf(firsts, seconds, used, first, second);
+
+        if (used[slot])
+        {
+            return false;
+        }
+
+        if ((size + 1) << 1 > firsts.length)
+        {
+            resize(firsts.length << 1);
+            slot = slotOf(firsts, seconds, used, first, second);
+        }
+
+        firsts[slot] = first;
+        seconds[slot] = second;
+        used[slot] = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * Gives the number of pairs.
+     *
+     * @return the number of pairs
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Passes each pair to the given visitor.
+     *
+     * @param visitor the visitor to pass the pairs to
+     */
+    public void forEach(Visitor visitor)
+    {
+        for (int slot = 0; slot < firsts.length; slot++)
+        {
+            if (used[slot])
+            {
+                visitor.visit(firsts[slot], seconds[slot]);
+            }
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        final long[] newFirsts = new long[capacity];
+        final int[] newSeconds = new int[capacity];
+        final boolean[] newUsed = new boolean[capacity];
+
+        for (int slot = 0; slot < firsts.length; slot++)
+        {
+            if (used[slot])
+            {
+                final int newSlot = slotOf(newFirsts, newSeconds, newUsed, firsts[slot],
+                        seconds[slot]);
+                newFirsts[newSlot] = firsts[slot];
+                newSeconds[newSlot] = seconds[slot];
+                newUsed[newSlot] = true;
+            }
+        }
+
+        firsts = newFirsts;
+        seconds = newSeconds;
+        used = newUsed;
+    }
+
+    /**
+     * Gives the slot holding the given pair, or the free slot where it belongs.
+     */
+    private static int slotOf(long[] firsts, int[] seconds, boolean[] used, long first,
+            int second)
+    {
+        final int mask = firsts.length - 1;
+        int slot = Hashing.mix(first, second) & mask;
+
+        while (used[slot] && (firsts[slot] != first || seconds[slot] != second))
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+}
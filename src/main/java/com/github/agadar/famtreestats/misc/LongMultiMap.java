@@ -0,0 +1,218 @@
+package com.github.agadar.famtreestats.misc;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash multimap from long keys to entries of a long value and
+ * an int tag, each with a count. Entries whose count drops to zero or below
+ * are removed. The entries of a key are linked through primitive arrays and
+ * removed entries are reused, so nothing is boxed or allocated per entry.
+ * Keys stay in the table once added, even if all of their entries are
+ * removed.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class LongMultiMap
+{
+    /** Receives the entries of a key. */
+    public interface Visitor
+    {
+        /**
+         * Receives an entry.
+         *
+         * @param value the entry's value
+         * @param tag the entry's tag
+         * @param count the entry's count
+         */
+        void visit(long value, int tag, int count);
+    }
+
+    private final static int InitialCapacity = 16;
+
+    /** Value of heads and nexts where there is no entry. */
+    private final static int NoEntry = -1;
+
+    /** Number of keys. */
+    private int size = 0;
+
+    private long[] keys = new long[InitialCapacity];
+    private int[] heads = new int[InitialCapacity];
+    private boolean[] used = new boolean[InitialCapacity];
+
+    /** Number of entries, including removed ones. */
+    private int entries = 0;
+
+    /** First removed entry, or NoEntry. */
+    private int free = NoEntry;
+
+    private long[] values = new long[InitialCapacity];
+    private int[] tags = new int[InitialCapacity];
+    private int[] counts = new int[InitialCapacity];
+    private int[] nexts = new int[InitialCapacity];
+
+    /**
+     * Adds the given amount to the count of the given entry of the given key,
+     * adding the entry if it is not there yet and removing it if its count
+     * drops to zero or below.
+     *
+     * @param key the key
+     * @param value the entry's value
+     * @param tag the entry's tag
+     * @param amount the amount to add
+     * @return the count of the entry before adding, or 0 if it was not there
+     */
+    public int add(long key, long value, int tag, int amount)
+    {
+        int slot = slotOf(keys, used, key);
+
+        if (!used[slot])
+        {
+            if ((size + 1) << 1 > keys.length)
+            {
+                resize(keys.length << 1);
+                slot = slotOf(keys, used, key);
+            }
+
+            keys[slot] = key;
+            heads[slot] = NoEntry;
+            used[slot] = true;
+            size++;
+        }
+
+        int previous = NoEntry;
+
+        for (int entry = heads[slot]; entry != NoEntry; entry = nexts[entry])
+        {
+            if (values[entry] == value && tags[entry] == tag)
+            {
+                final int count = counts[entry];
+                counts[entry] += amount;
+
+                if (counts[entry] <= 0)
+                {
+                    // Unlink the entry and reuse it later.
+                    if (previous == NoEntry)
+                    {
+                        heads[slot] = nexts[entry];
+                    }
+                    else
+                    {
+                        nexts[previous] = nexts[entry];
+                    }
+
+                    nexts[entry] = free;
+                    free = entry;
+                }
+
+                return count;
+            }
+
+            previous = entry;
+        }
+
+        if (amount > 0)
+        {
+            final int entry = newEntry();
+            values[entry] = value;
+            tags[entry] = tag;
+            counts[entry] = amount;
+            nexts[entry] = heads[slot];
+            heads[slot] = entry;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns whether the given key has any entries.
+     *
+     * @param key the key
+     * @return whether the key has entries
+     */
+    public boolean contains(long key)
+    {
+        final int slot = slotOf(keys, used, key);
+        return used[slot] && heads[slot] != NoEntry;
+    }
+
+    /**
+     * Passes each entry of the given key to the given visitor.
+     *
+     * @param key the key
+     * @param visitor the visitor to pass the entries to
+     */
+    public void forEach(long key, Visitor visitor)
+    {
+        final int slot = slotOf(keys, used, key);
+
+        if (used[slot])
+        {
+            for (int entry = heads[slot]; entry != NoEntry; entry = nexts[entry])
+            {
+                visitor.visit(values[entry], tags[entry], counts[entry]);
+            }
+        }
+    }
+
+    /**
+     * Gives a free entry, reusing a removed one if there is any.
+     */
+    private int newEntry()
+    {
+        if (free != NoEntry)
+        {
+            final int entry = free;
+            free = nexts[entry];
+            return entry;
+        }
+
+        if (entries == values.length)
+        {
+            final int capacity = values.length << 1;
+            values = Arrays.copyOf(values, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+        }
+
+        return entries++;
+    }
+
+    private void resize(int capacity)
+    {
+        final long[] newKeys = new long[capacity];
+        final int[] newHeads = new int[capacity];
+        final boolean[] newUsed = new boolean[capacity];
+
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (used[slot])
+            {
+                final int newSlot = slotOf(newKeys, newUsed, keys[slot]);
+                newKeys[newSlot] = keys[slot];
+                newHeads[newSlot] = heads[slot];
+                newUsed[newSlot] = true;
+            }
+        }
+
+        keys = newKeys;
+        heads = newHeads;
+        used = newUsed;
+    }
+
+    /**
+     * Gives the slot holding the given key, or the free slot where it belongs.
+     */
+    private static int slotOf(long[] keys, boolean[] used, long key)
+    {
+        final int mask = keys.length - 1;
+        int slot = Hashing.mix(key) & mask;
+
+        while (used[slot] && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+}
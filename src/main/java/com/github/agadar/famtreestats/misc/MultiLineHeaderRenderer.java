@@ -1,33 +1,34 @@
 package com.github.agadar.famtreestats.misc;
 
 import java.awt.Component;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.DefaultListModel;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JTable;
 import javax.swing.ListCellRenderer;
+import javax.swing.ListModel;
 import javax.swing.UIManager;
 import javax.swing.table.TableCellRenderer;
 
 /**
  * Used for multi-line column headers in Swing tables. Original code can be found
  * at http://www.java2s.com/Code/Java/Swing-Components/MultiLineHeaderExample.htm.
+ * Each header is split into lines only once, as headers are painted often.
  */
-public class MultiLineHeaderRenderer extends JList implements TableCellRenderer
+public class MultiLineHeaderRenderer extends JList<String> implements TableCellRenderer
 {
+    /** The lines of each header painted so far, by header. */
+    private final Map<String, ListModel<String>> Lines = new HashMap<>();
+
     public MultiLineHeaderRenderer()
     {
         setOpaque(true);
         setForeground(UIManager.getColor("TableHeader.foreground"));
         setBackground(UIManager.getColor("TableHeader.background"));
         setBorder(UIManager.getBorder("TableHeader.cellBorder"));
-        final ListCellRenderer renderer = getCellRenderer();
+        final ListCellRenderer<? super String> renderer = getCellRenderer();
         ((JLabel) renderer).setHorizontalAlignment(JLabel.CENTER);
         setCellRenderer(renderer);
     }
@@ -38,24 +39,25 @@ public class MultiLineHeaderRenderer extends JList implements TableCellRenderer
     {
         setFont(table.getFont());
         final String str = (value == null) ? "" : value.toString();
-        final BufferedReader br = new BufferedReader(new StringReader(str));
-        final List<Object> v = new ArrayList<>();
-        String line;
+        setModel(Lines.computeIfAbsent(str, MultiLineHeaderRenderer::linesOf));
+        return this;
+    }
 
-        try
-        {
-            while ((line = br.readLine()) != null)
-            {
-                v.add(line);
-            }
-        }
-        catch (IOException ex)
+    /**
+     * Splits the given header into lines.
+     *
+     * @param header the header
+     * @return the lines
+     */
+    private static ListModel<String> linesOf(String header)
+    {
+        final DefaultListModel<String> lines = new DefaultListModel<>();
+
+        for (String line : header.split("\r\n|\r|\n"))
         {
-            Logger.getLogger(MultiLineHeaderRenderer.class.getName())
-                    .log(Level.SEVERE, null, ex);
+            lines.addElement(line);
         }
-        
-        setListData(v.toArray());
-        return this;
+
+        return lines;
     }
 }
@@ -0,0 +1,66 @@
+package com.github.agadar.famtreestats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the year bounds the command line accepts.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class FamilyTreeStatsCLITest
+{
+    @Rule
+    public final TemporaryFolder Folder = new TemporaryFolder();
+
+    @Test
+    public void calculatesUpToLargeYear() throws IOException
+    {
+        final File output = new File(Folder.getRoot(), "statistics.csv");
+        assertEquals(0, FamilyTreeStatsCLI.run(new String[]
+        {
+            "--from", "1", "--to", "2000000000", "--interval", "1", "--no-snapshot", "--output",
+            output.getPath(), persons().getPath()
+        }));
+
+        final List<String> lines = Files.readAllLines(output.toPath());
+        assertEquals(5, lines.size());
+        assertEquals("1820;1820;", lines.get(1).substring(0, 10));
+        assertEquals("1875;1875;", lines.get(4).substring(0, 10));
+    }
+
+    @Test
+    public void rejectsYearsWithoutDates() throws IOException
+    {
+        assertEquals(2, FamilyTreeStatsCLI.run(new String[]
+        {
+            "--from", "10000", "--to", "2000000000", persons().getPath()
+        }));
+        assertEquals(2, FamilyTreeStatsCLI.run(new String[]
+        {
+            "--from", "1900", "--to", "1800", persons().getPath()
+        }));
+    }
+
+    /**
+     * Writes a file of a married couple and their child.
+     */
+    private File persons() throws IOException
+    {
+        final File file = Folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(
+                "TR_sortdatum;Geboorte;Overlijden;huw.type;Geslacht;Intern_nummer;ID_vader;"
+                        + "ID_moeder;RelatieID;PartnerID",
+                "1850-05-01;01-01-1820;;Huwelijk;M;1;;;1;2",
+                "1850-05-01;01-01-1823;;Huwelijk;V;2;;;1;1",
+                "1875-01-01;01-01-1850;;;M;3;1;2;;"), PersonsCsvReader.DefaultCharset);
+        return file;
+    }
+}
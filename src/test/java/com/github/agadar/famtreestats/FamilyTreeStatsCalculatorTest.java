@@ -0,0 +1,138 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.PeriodYears;
+import com.github.agadar.famtreestats.domain.Statistics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the number of children per marriage of relations registered to
+ * several couples against what the calculator gave before it was made
+ * parallel: the couple of the first row registering the relation counts.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class FamilyTreeStatsCalculatorTest
+{
+    /**
+     * Relation 1 is registered to couple 5 and 6 and, later in the file, to
+     * couple 1 and 2, in the same year. Relation 3 is registered to couple 30
+     * and 31 and, later in the file, to couple 11 and 12, in an earlier year.
+     */
+    private final static String[] Rows =
+    {
+        "TR_sortdatum;Geboorte;Overlijden;huw.type;Geslacht;Intern_nummer;ID_vader;ID_moeder;"
+                + "RelatieID;PartnerID",
+        "1850-05-01;01-01-1820;;Huwelijk;M;5;;;1;6",
+        "1850-06-01;01-01-1821;;Huwelijk;M;1;;;1;2",
+        "1850-06-01;01-01-1822;;Huwelijk;V;2;;;1;1",
+        "1850-05-01;01-01-1823;;Huwelijk;V;6;;;1;5",
+        "1855-01-01;01-01-1851;;;M;7;5;6;;",
+        "1856-01-01;01-01-1852;;;V;8;5;6;;",
+        "1857-01-01;01-01-1853;;;M;9;5;6;;",
+        "1858-01-01;01-01-1854;;;V;10;1;2;;",
+        "1871-03-01;01-01-1845;;Huwelijk;M;30;;;3;31",
+        "1870-03-01;01-01-1846;;Huwelijk;M;11;;;3;12",
+        "1872-03-01;01-01-1847;;Huwelijk;M;60;;;4;61",
+        "1873-01-01;01-01-1850;;;M;40;30;31;;",
+        "1874-01-01;01-01-1851;;;V;41;30;31;;",
+        "1875-01-01;01-01-1852;;;M;42;30;31;;",
+        "1876-01-01;01-01-1853;;;V;43;30;31;;",
+        "1877-01-01;01-01-1854;;;M;50;11;12;;",
+        "1878-01-01;01-01-1855;;;V;51;11;12;;",
+        "1877-01-01;01-01-1856;;;M;62;60;61;;",
+        "1878-01-01;01-01-1857;;;V;63;60;61;;"
+    };
+
+    /** Children per marriage of the rows per period, as calculated before. */
+    private final static String Expected = "1850-1859 3, 1870-1879 3";
+
+    @Rule
+    public final TemporaryFolder Folder = new TemporaryFolder();
+
+    @Test
+    public void countsFirstRegisteredCouple() throws IOException
+    {
+        final FamilyTreeStatsCalculator calculator = new FamilyTreeStatsCalculator(
+                write(Arrays.asList(Rows)), new LoadProgress(), false);
+        assertEquals(3, calculator.calculate().ChildenPerMarriage);
+        assertEquals(3, calculator.calculate(1850, 1879).ChildenPerMarriage);
+        assertEquals(Expected, describe(calculator.calculate(1850, 1879, 10)));
+    }
+
+    @Test
+    public void streamsFirstRegisteredCouple() throws IOException
+    {
+        assertEquals(Expected, describe(FamilyTreeStatsCalculator.calculateStreaming(
+                write(Arrays.asList(Rows)), 1850, 1879, 10)));
+    }
+
+    @Test
+    public void updatesFirstRegisteredCouple() throws IOException
+    {
+        // Leave out partner 1 and change partner 30, then put both back.
+        final List<String> rows = new ArrayList<>(Arrays.asList(Rows));
+        rows.remove(2);
+        rows.set(8, rows.get(8).replace("01-01-1845", "01-01-1844"));
+        final FamilyTreeStatsCalculator calculator = new FamilyTreeStatsCalculator(write(rows),
+                new LoadProgress(), false);
+        calculator.update(write(Arrays.asList(Rows)), new LoadProgress(), false);
+        assertEquals(Expected, describe(calculator.calculate(1850, 1879, 10)));
+
+        // Move partner 5 behind partner 1, which makes couple 1 and 2 the first.
+        rows.clear();
+        rows.addAll(Arrays.asList(Rows));
+        rows.add(3, rows.remove(1).replace("01-01-1820", "01-01-1819"));
+        final File moved = write(rows);
+        calculator.update(moved, new LoadProgress(), false);
+        assertEquals(describe(new FamilyTreeStatsCalculator(moved, new LoadProgress(), false)
+                .calculate(1850, 1879, 10)), describe(calculator.calculate(1850, 1879, 10)));
+        assertEquals("1850-1859 1, 1870-1879 3", describe(calculator.calculate(1850, 1879,
+                10)));
+    }
+
+    @Test
+    public void calculatesUpToLargeYears() throws IOException
+    {
+        final FamilyTreeStatsCalculator calculator = new FamilyTreeStatsCalculator(
+                write(Arrays.asList(Rows)), new LoadProgress(), false);
+        assertEquals(Expected, describe(calculator.calculate(1850, 2000000000, 10)));
+        assertEquals(describe(calculator.calculate(1, 3000, 1)),
+                describe(calculator.calculate(1, Integer.MAX_VALUE, 1)));
+        assertEquals(Integer.MAX_VALUE, calculator.calculate(1, Integer.MAX_VALUE).Period.YearTo);
+        assertEquals("1870-2000000000 3", describe(calculator.calculate(0, 0,
+                Collections.<Integer>emptyList(), Arrays.asList(new PeriodYears(1870, 2000000000),
+                        new PeriodYears(2000000001, Integer.MAX_VALUE)))
+                .get(FamilyTreeStatsCalculator.CustomPeriods)));
+    }
+
+    /**
+     * Writes the given rows to a new file.
+     */
+    private File write(List<String> rows) throws IOException
+    {
+        final File file = Folder.newFile();
+        Files.write(file.toPath(), rows, PersonsCsvReader.DefaultCharset);
+        return file;
+    }
+
+    /**
+     * Describes the children per marriage of the given statistics.
+     */
+    private static String describe(List<Statistics> stats)
+    {
+        return stats.stream().map(statistics -> statistics.Period.YearFrom + "-"
+                + statistics.Period.YearTo + " " + statistics.ChildenPerMarriage)
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.Cache;
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.domain.Statistics;
+import com.github.agadar.famtreestats.enums.RelationType;
+import com.github.agadar.famtreestats.enums.Sex;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Test;
+
+/**
+ * Checks that merging caches and aggregators is associative and commutative,
+ * as their merge(...) methods promise.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class PeriodAggregatorTest
+{
+    /** Number of parts the persons are split into. */
+    private final static int Parts = 3;
+
+    @Test
+    public void mergesAggregatorsInAnyOrder()
+    {
+        final List<List<int[]>> parts = split(persons(7), 11);
+        final String expected = describe(aggregate(concat(parts)));
+
+        for (int[] order : orders())
+        {
+            // Merge (a + b) + c.
+            final PeriodAggregator left = aggregate(parts.get(order[0]));
+            left.merge(aggregate(parts.get(order[1])));
+            left.merge(aggregate(parts.get(order[2])));
+            assertEquals(expected, describe(left));
+
+            // Merge a + (b + c).
+            final PeriodAggregator right = aggregate(parts.get(order[1]));
+            right.merge(aggregate(parts.get(order[2])));
+            final PeriodAggregator merged = aggregate(parts.get(order[0]));
+            merged.merge(right);
+            assertEquals(expected, describe(merged));
+        }
+    }
+
+    @Test
+    public void mergesCachesInAnyOrder()
+    {
+        final List<List<int[]>> parts = split(persons(13), 17);
+        final String expected = describe(cache(concat(parts)));
+        assertNotEquals("0/0", cache(concat(parts)).calculateStatistics().ChildrenPerMarriage
+                .toString());
+
+        for (int[] order : orders())
+        {
+            final Cache left = cache(parts.get(order[0]));
+            left.merge(cache(parts.get(order[1])));
+            left.merge(cache(parts.get(order[2])));
+            assertEquals(expected, describe(left));
+
+            final Cache right = cache(parts.get(order[1]));
+            right.merge(cache(parts.get(order[2])));
+            final Cache merged = cache(parts.get(order[0]));
+            merged.merge(right);
+            assertEquals(expected, describe(merged));
+        }
+    }
+
+    /**
+     * Gives all orders of the parts.
+     */
+    private static int[][] orders()
+    {
+        return new int[][]
+        {
+            { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 }, { 1, 2, 0 }, { 2, 0, 1 }, { 2, 1, 0 }
+        };
+    }
+
+    /**
+     * Aggregates the given persons per 25 years from 1600 to 1899.
+     */
+    private static PeriodAggregator aggregate(List<int[]> persons)
+    {
+        final PeriodAggregator aggregator = new PeriodAggregator(1600, 1899, 25, null);
+        persons.forEach(person -> handle(aggregator, person));
+        return aggregator;
+    }
+
+    /**
+     * Processes the given persons into a single cache.
+     */
+    private static Cache cache(List<int[]> persons)
+    {
+        final Cache cache = new Cache(1, 9999);
+
+        for (int[] person : persons)
+        {
+            PeriodAggregator.process(cache, cache, cache, person[10], person[0], person[1],
+                    person[2], person[3], person[4], RelationType.values()[person[5]],
+                    Sex.values()[person[6]], person[7], person[8], person[9]);
+        }
+
+        return cache;
+    }
+
+    private static void handle(PersonHandler handler, int[] person)
+    {
+        handler.handle(person[10], person[0], person[1], person[2], person[3], person[4],
+                RelationType.values()[person[5]], Sex.values()[person[6]], person[7],
+                person[8], person[9]);
+    }
+
+    /**
+     * Describes the statistics of the given aggregator.
+     */
+    private static String describe(PeriodAggregator aggregator)
+    {
+        return aggregator.getStatistics().stream().map(PeriodAggregatorTest::describe)
+                .collect(Collectors.joining("\n")) + "\ndefault "
+                + describe(aggregator.getDefaultStatistics());
+    }
+
+    private static String describe(Cache cache)
+    {
+        return describe(cache.calculateStatistics());
+    }
+
+    private static String describe(Statistics statistics)
+    {
+        return (statistics.Period == null ? "none" : statistics.Period.YearFrom + "-"
+                + statistics.Period.YearTo) + " " + statistics.AgesAtMarriageBoth + " "
+                + statistics.AgesAtMarriageMale + " " + statistics.AgesAtMarriageFemale + " "
+                + statistics.AgesAtDeathBoth + " " + statistics.AgesAtDeathMale + " "
+                + statistics.AgesAtDeathFemale + " " + statistics.ChildrenPerMarriage + " "
+                + statistics.Deaths + " " + statistics.Births + " "
+                + statistics.YearsAtMarriageBoth + " " + statistics.YearsAtDeathBoth;
+    }
+
+    /**
+     * Generates couples, their children and some rows with bad data, each
+     * person as id, father id, mother id, relation id, partner id, relation
+     * type ordinal, sex ordinal, marriage date, birth date, death date and
+     * the position of its row.
+     */
+    private static List<int[]> persons(long seed)
+    {
+        final Random random = new Random(seed);
+        final List<int[]> persons = new ArrayList<>();
+        final List<int[]> couples = new ArrayList<>();
+        int id = 1;
+
+        for (int relationId = 1; relationId <= 600; relationId++)
+        {
+            final int husband = id++;
+            final int wife = id++;
+            final int marriage = dateOf(random, 1600, 1899);
+            final int type = random.nextInt(10) == 0 ? RelationType.LivingTogether.ordinal()
+                    : RelationType.Marriage.ordinal();
+            persons.add(person(random, husband, relationId, wife, type, Sex.Male, marriage));
+            persons.add(person(random, wife, relationId, husband, type, Sex.Female, marriage));
+            couples.add(new int[] { husband, wife, marriage });
+        }
+
+        for (int i = 0; i < 2000; i++)
+        {
+            final int[] couple = couples.get(random.nextInt(couples.size()));
+            final int[] child = person(random, id++, PersonStore.NoId, PersonStore.NoId,
+                    RelationType.Single.ordinal(), random.nextBoolean() ? Sex.Male : Sex.Female,
+                    random.nextInt(10) < 7 ? couple[2] : dateOf(random, 1600, 1899));
+            child[1] = couple[0];
+            child[2] = couple[1];
+            persons.add(child);
+        }
+
+        // Rows of persons listed twice, and of relations registered to others.
+        for (int i = 0; i < 100; i++)
+        {
+            persons.add(persons.get(random.nextInt(persons.size())).clone());
+            final int[] other = persons.get(random.nextInt(1200)).clone();
+            other[4] = 1 + random.nextInt(id);
+            persons.add(other);
+        }
+
+        for (int row = 0; row < persons.size(); row++)
+        {
+            persons.get(row)[10] = row;
+        }
+
+        return persons;
+    }
+
+    private static int[] person(Random random, int id, int relationId, int partnerId,
+            int type, Sex sex, int marriage)
+    {
+        final int birth = random.nextInt(20) == 0 ? PersonStore.NoDate
+                : dateOf(random, 1560, 1880);
+        final int death = random.nextInt(10) == 0 ? PersonStore.NoDate
+                : birth == PersonStore.NoDate ? dateOf(random, 1600, 1899)
+                : birth + random.nextInt(90 * 365);
+        return new int[]
+        {
+            id, PersonStore.NoId, PersonStore.NoId, relationId, partnerId, type,
+            sex.ordinal(), random.nextInt(20) == 0 ? PersonStore.NoDate : marriage, birth, death,
+            0
+        };
+    }
+
+    private static int dateOf(Random random, int yearFrom, int yearTo)
+    {
+        final long from = LocalDate.of(yearFrom, 1, 1).toEpochDay();
+        final long to = LocalDate.of(yearTo, 12, 31).toEpochDay();
+        return (int) (from + random.nextInt((int) (to - from + 1)));
+    }
+
+    /**
+     * Shuffles the given persons and splits them into Parts parts.
+     */
+    private static List<List<int[]>> split(List<int[]> persons, long seed)
+    {
+        Collections.shuffle(persons, new Random(seed));
+        final List<List<int[]>> parts = new ArrayList<>();
+
+        for (int part = 0; part < Parts; part++)
+        {
+            parts.add(new ArrayList<>(persons.subList(persons.size() * part / Parts,
+                    persons.size() * (part + 1) / Parts)));
+        }
+
+        return parts;
+    }
+
+    private static List<int[]> concat(List<List<int[]>> parts)
+    {
+        final List<int[]> persons = new ArrayList<>();
+        parts.forEach(persons::addAll);
+        return persons;
+    }
+}
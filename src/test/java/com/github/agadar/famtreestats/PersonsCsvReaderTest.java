@@ -0,0 +1,115 @@
+package com.github.agadar.famtreestats;
+
+import com.github.agadar.famtreestats.domain.PersonStore;
+import com.github.agadar.famtreestats.enums.Column;
+import com.github.agadar.famtreestats.misc.DateDecoderTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the values PersonsCsvReader decodes against the String.split(...),
+ * Integer.parseInt(...) and LocalDate.parse(...) path it replaced.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class PersonsCsvReaderTest
+{
+    /** Representative and edge-case id's. */
+    private final static String[] Ids =
+    {
+        "0", "1", "42", " 42 ", "\t42", "007", "+7", "-3", "-1", "2147483647", "2147483648",
+        "-2147483648", "-2147483649", "99999999999999999999", "", " ", "12a", "a12", "1 2",
+        "--1", "+-1", "+", "-", "1.0", "1e3", "0x1F"
+    };
+
+    /** Representative and edge-case dd-MM-yyyy dates. */
+    private final static String[] DayMonthYearDates =
+    {
+        "12-03-1990", "N-12-03-1990", " 12-03-1990 ", "31-02-1990", "29-02-1900", "32-01-1990",
+        "1-3-1990", "01-03-19900", "01-03-0000", "", "N-", "1990-03-12", "12-03-1990x"
+    };
+
+    /** Representative and edge-case yyyy-MM-dd dates. */
+    private final static String[] YearMonthDayDates =
+    {
+        "1990-03-12", "N-1990-03-12", " 1990-03-12 ", "1990-02-31", "1990-13-01", "90-03-12",
+        "19900-03-12", "", "N-", "12-03-1990", "1990-03-12x"
+    };
+
+    @Rule
+    public final TemporaryFolder Folder = new TemporaryFolder();
+
+    @Test
+    public void decodesValuesLikeBefore() throws IOException
+    {
+        final List<String> lines = new ArrayList<>();
+        lines.add(Arrays.stream(Column.values()).map(Column::getColumnName)
+                .collect(Collectors.joining(";")));
+        final int rows = Ids.length * DayMonthYearDates.length;
+
+        for (int row = 0; row < rows; row++)
+        {
+            final String[] values = new String[Column.values().length];
+            Arrays.fill(values, "");
+            values[Column.IdSelf.ordinal()] = String.valueOf(row + 1);
+            values[Column.IdFather.ordinal()] = Ids[row % Ids.length];
+            values[Column.IdMother.ordinal()] = Ids[(row / Ids.length) % Ids.length];
+            values[Column.DateBirth.ordinal()] = DayMonthYearDates[row % DayMonthYearDates.length];
+            values[Column.DateDeath.ordinal()] = DayMonthYearDates[
+                    (row / DayMonthYearDates.length) % DayMonthYearDates.length];
+            values[Column.DateMarriage.ordinal()] = YearMonthDayDates[
+                    row % YearMonthDayDates.length];
+            lines.add(String.join(";", values));
+        }
+
+        final File file = Folder.newFile("persons.csv");
+        Files.write(file.toPath(), lines, PersonsCsvReader.DefaultCharset);
+        final List<int[]> decoded = new ArrayList<>();
+        PersonsCsvReader.read(file, (position, id, fatherId, motherId, relationId, partnerId,
+                relationType, sex, marriageDate, birthDate, deathDate) -> decoded.add(new int[]
+        {
+            fatherId, motherId, birthDate, deathDate, marriageDate
+        }));
+
+        assertEquals(rows, decoded.size());
+
+        for (int row = 0; row < rows; row++)
+        {
+            final String[] values = lines.get(row + 1).split(";", -1);
+            final int[] person = decoded.get(row);
+            final String at = "row " + (row + 1) + ": " + lines.get(row + 1);
+            assertEquals(at, parseId(values[Column.IdFather.ordinal()]), person[0]);
+            assertEquals(at, parseId(values[Column.IdMother.ordinal()]), person[1]);
+            assertEquals(at, DateDecoderTest.parse(values[Column.DateBirth.ordinal()],
+                    DateDecoderTest.DayMonthYearFormat), person[2]);
+            assertEquals(at, DateDecoderTest.parse(values[Column.DateDeath.ordinal()],
+                    DateDecoderTest.DayMonthYearFormat), person[3]);
+            assertEquals(at, DateDecoderTest.parse(values[Column.DateMarriage.ordinal()],
+                    DateDecoderTest.YearMonthDayFormat), person[4]);
+        }
+    }
+
+    /**
+     * Parses the given id the way id's were parsed before PersonsCsvReader.
+     */
+    private static int parseId(String id)
+    {
+        try
+        {
+            return Integer.parseInt(id.trim());
+        }
+        catch (NumberFormatException ex)
+        {
+            return PersonStore.NoId;
+        }
+    }
+}
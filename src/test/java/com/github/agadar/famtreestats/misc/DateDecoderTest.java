@@ -0,0 +1,131 @@
+package com.github.agadar.famtreestats.misc;
+
+import com.github.agadar.famtreestats.domain.PersonStore;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Checks DateDecoder against the LocalDate.parse(...) path it replaced.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class DateDecoderTest
+{
+    /** Format birth and death dates were parsed with. */
+    public final static DateTimeFormatter DayMonthYearFormat =
+            DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    /** Format marriage dates were parsed with. */
+    public final static DateTimeFormatter YearMonthDayFormat =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    /** Representative and edge-case dd-MM-yyyy dates. */
+    private final static String[] DayMonthYearDates =
+    {
+        "12-03-1990", "01-01-0001", "31-12-9999", "N-12-03-1990", "12-N-03-1990",
+        "N-N-12-03-1990", "12-03-N-1990", "NN-12-03-1990", "N--12-03-1990", "12-03-1990N-",
+        " 12-03-1990 ", "\t12-03-1990", "N- 12-03-1990", "31-02-1990", "30-02-1990",
+        "29-02-1900", "29-02-2000", "29-02-2016", "31-04-2016", "31-06-1750", "32-01-1990",
+        "00-01-1990", "01-00-1990", "01-13-1990", "1-3-1990", "01-3-1990", "01-03-90",
+        "01-03-19900", "01-03-0000", "01-03-+1990", "01-03--1990", "01/03/1990",
+        "01-03-1990x", "x01-03-1990", "01 -03-1990", "", " ", "N-", "N", "-", "abc",
+        "1990-03-12", "01-03-1990-", "--", "99-99-9999"
+    };
+
+    /** Representative and edge-case yyyy-MM-dd dates. */
+    private final static String[] YearMonthDayDates =
+    {
+        "1990-03-12", "0001-01-01", "9999-12-31", "N-1990-03-12", "1990-N-03-12",
+        " 1990-03-12 ", "1990-02-31", "1900-02-29", "2000-02-29", "2016-04-31",
+        "1990-01-32", "1990-01-00", "1990-00-01", "1990-13-01", "1990-3-12", "90-03-12",
+        "19900-03-12", "0000-03-12", "+1990-03-12", "-1990-03-12", "1990/03/12",
+        "1990-03-12x", "", "N-", "12-03-1990", "1990-03-12-", "1990--03-12"
+    };
+
+    @Test
+    public void decodesDayMonthYearLikeLocalDate()
+    {
+        for (String date : DayMonthYearDates)
+        {
+            assertDecodes(date, DayMonthYearFormat);
+        }
+    }
+
+    @Test
+    public void decodesYearMonthDayLikeLocalDate()
+    {
+        for (String date : YearMonthDayDates)
+        {
+            assertDecodes(date, YearMonthDayFormat);
+        }
+    }
+
+    @Test
+    public void decodesRandomDatesLikeLocalDate()
+    {
+        final Random random = new Random(3);
+
+        for (int i = 0; i < 100000; i++)
+        {
+            final int day = random.nextInt(33);
+            final int month = random.nextInt(14);
+            final int year = random.nextInt(10000);
+            assertDecodes(String.format("%02d-%02d-%04d", day, month, year), DayMonthYearFormat);
+            assertDecodes(String.format("%04d-%02d-%02d", year, month, day), YearMonthDayFormat);
+        }
+    }
+
+    @Test
+    public void givesYearOfEpochDay()
+    {
+        for (int day = -800000; day < 3000000; day += 97)
+        {
+            assertEquals(LocalDate.ofEpochDay(day).getYear(), DateDecoder.yearOf(day));
+        }
+    }
+
+    /**
+     * Asserts that the char and byte decoders give the same as the
+     * LocalDate.parse(...) path for the given date.
+     */
+    private static void assertDecodes(String date, DateTimeFormatter format)
+    {
+        final int expected = parse(date, format);
+        final boolean dayMonthYear = format == DayMonthYearFormat;
+
+        // Decode from within a larger range, as the reader does.
+        final String line = "1;" + date + ";2";
+        final int start = 2;
+        final int end = start + date.length();
+        final ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(date, expected, dayMonthYear
+                ? DateDecoder.decodeDayMonthYear(line, start, end)
+                : DateDecoder.decodeYearMonthDay(line, start, end));
+        assertEquals(date, expected, dayMonthYear
+                ? DateDecoder.decodeDayMonthYear(bytes, start, end)
+                : DateDecoder.decodeYearMonthDay(bytes, start, end));
+    }
+
+    /**
+     * Parses the given date the way dates were parsed before DateDecoder.
+     */
+    public static int parse(String date, DateTimeFormatter format)
+    {
+        try
+        {
+            // Some dates are prefixed with 'N-', so that needs to be removed.
+            return (int) LocalDate.parse(date.trim().replaceAll("N-", ""), format).toEpochDay();
+        }
+        catch (DateTimeParseException ex)
+        {
+            return PersonStore.NoDate;
+        }
+    }
+}